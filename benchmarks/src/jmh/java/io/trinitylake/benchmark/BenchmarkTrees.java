@@ -0,0 +1,128 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.benchmark;
+
+import io.trinitylake.FileLocations;
+import io.trinitylake.LakeHouseDef;
+import io.trinitylake.ObjectKeys;
+import io.trinitylake.storage.Storage;
+import io.trinitylake.tree.MutableTreeNode;
+import io.trinitylake.tree.NodeFileWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.arrow.memory.BufferAllocator;
+
+/** Builds TrinityLake trees in local storage for benchmarks. */
+final class BenchmarkTrees {
+
+  static final String NAMESPACE = "ns";
+
+  private BenchmarkTrees() {}
+
+  static String tableName(int index) {
+    return String.format("t%08d", index);
+  }
+
+  /**
+   * Writes a full tree of the given depth as root version 0, where each leaf holds {@code N - 1}
+   * tables and each internal node has {@code N} children.
+   *
+   * @return the keys of all the tables in the tree, in key order
+   */
+  static List<byte[]> writeFullTree(
+      Storage storage, LakeHouseDef def, BufferAllocator allocator, int depth) {
+    NodeFileWriter writer = new NodeFileWriter(allocator, def.order());
+    int numLeaves = (int) Math.pow(def.order(), depth - 1);
+    List<byte[]> keys = new ArrayList<>();
+    List<byte[]> firstKeys = new ArrayList<>();
+    List<MutableTreeNode> level = new ArrayList<>();
+    for (int leaf = 0; leaf < numLeaves; leaf++) {
+      MutableTreeNode node = new MutableTreeNode();
+      for (int i = 0; i < def.order() - 1; i++) {
+        String tableName = tableName(keys.size());
+        byte[] key = ObjectKeys.tableKey(NAMESPACE, tableName, def);
+        node.addEntry(key, tableName + ".binpb");
+        keys.add(key);
+      }
+
+      firstKeys.add(node.keys().get(0));
+      level.add(node);
+    }
+
+    while (level.size() > 1) {
+      List<byte[]> parentFirstKeys = new ArrayList<>();
+      List<MutableTreeNode> parents = new ArrayList<>();
+      for (int start = 0; start < level.size(); start += def.order()) {
+        MutableTreeNode parent = new MutableTreeNode();
+        for (int i = start; i < Math.min(start + def.order(), level.size()); i++) {
+          String location = FileLocations.newNodeFilePath();
+          write(storage, writer, location, level.get(i));
+          if (i == start) {
+            parent.addChild(location);
+          } else {
+            parent.addChild(firstKeys.get(i), location);
+          }
+        }
+
+        parentFirstKeys.add(firstKeys.get(start));
+        parents.add(parent);
+      }
+
+      firstKeys = parentFirstKeys;
+      level = parents;
+    }
+
+    write(storage, writer, FileLocations.rootNodeFilePath(0), level.get(0));
+    return keys;
+  }
+
+  static void write(Storage storage, NodeFileWriter writer, String location, MutableTreeNode node) {
+    try (WritableByteChannel channel = storage.create(location)) {
+      writer.write(node, channel);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  static void deleteRecursively(Path path) throws IOException {
+    if (!Files.exists(path)) {
+      return;
+    }
+
+    Files.walkFileTree(
+        path,
+        new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+              throws IOException {
+            Files.delete(file);
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+            Files.delete(dir);
+            return FileVisitResult.CONTINUE;
+          }
+        });
+  }
+}
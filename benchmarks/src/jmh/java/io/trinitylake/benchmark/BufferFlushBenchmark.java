@@ -0,0 +1,152 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.benchmark;
+
+import io.trinitylake.FileLocations;
+import io.trinitylake.LakeHouseDef;
+import io.trinitylake.storage.LocalStorage;
+import io.trinitylake.tree.BufferFlusher;
+import io.trinitylake.tree.BufferMessage;
+import io.trinitylake.tree.NodeFileReader;
+import io.trinitylake.tree.NodeFileWriter;
+import io.trinitylake.tree.TreeNode;
+import io.trinitylake.tree.TreeUpdate;
+import io.trinitylake.util.ThreadPools;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Inserting a message into the write buffer of the root node, and flushing a full root write
+ * buffer down to all the children of a two-level tree.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BufferFlushBenchmark {
+
+  private static final int ORDER = 32;
+
+  @Param({"100", "1000"})
+  private int bufferedMessages;
+
+  private Path rootPath;
+  private Path outputPath;
+  private LocalStorage storage;
+  private LocalStorage output;
+  private BufferAllocator allocator;
+  private NodeFileReader reader;
+  private NodeFileWriter writer;
+  private ExecutorService executor;
+  private TreeNode root;
+  private List<BufferMessage> insert;
+  private BufferFlusher bufferingFlusher;
+  private BufferFlusher fullFlusher;
+
+  @Setup
+  public void before() throws IOException {
+    rootPath = Files.createTempDirectory("trinitylake-flush-");
+    storage = new LocalStorage(rootPath);
+    LakeHouseDef def = LakeHouseDef.builder("benchmark").order(ORDER).build();
+    allocator = new RootAllocator();
+    reader = new NodeFileReader(allocator, ORDER);
+    writer = new NodeFileWriter(allocator, ORDER);
+    executor = ThreadPools.newBoundedIoExecutor("benchmark", 16, true);
+
+    List<byte[]> keys = BenchmarkTrees.writeFullTree(storage, def, allocator, 2);
+    List<BufferMessage> messages = new ArrayList<>(bufferedMessages);
+    for (int i = 0; i < bufferedMessages; i++) {
+      byte[] key = keys.get((int) ((long) i * keys.size() / bufferedMessages));
+      messages.add(BufferMessage.set(key, "updated_" + i + ".binpb"));
+    }
+
+    bufferingFlusher =
+        new BufferFlusher(this::load, ORDER, Long.MAX_VALUE, FileLocations::newNodeFilePath);
+    fullFlusher = new BufferFlusher(this::load, ORDER, 0, FileLocations::newNodeFilePath);
+    try (TreeNode base = load(FileLocations.rootNodeFilePath(0))) {
+      TreeUpdate buffered = bufferingFlusher.apply(base, messages);
+      BenchmarkTrees.write(storage, writer, FileLocations.rootNodeFilePath(1), buffered.root());
+    }
+
+    root = load(FileLocations.rootNodeFilePath(1));
+    insert = Collections.singletonList(BufferMessage.set(keys.get(0), "inserted.binpb"));
+  }
+
+  @Setup(Level.Iteration)
+  public void beforeIteration() throws IOException {
+    outputPath = Files.createTempDirectory("trinitylake-flush-output-");
+    output = new LocalStorage(outputPath);
+  }
+
+  @TearDown(Level.Iteration)
+  public void afterIteration() throws IOException {
+    output.close();
+    BenchmarkTrees.deleteRecursively(outputPath);
+  }
+
+  @TearDown
+  public void after() throws IOException {
+    root.close();
+    executor.shutdown();
+    allocator.close();
+    storage.close();
+    BenchmarkTrees.deleteRecursively(rootPath);
+  }
+
+  @Benchmark
+  public TreeUpdate writeBufferInsert() {
+    return bufferingFlusher.apply(root, insert);
+  }
+
+  @Benchmark
+  public TreeUpdate fullFlush() {
+    TreeUpdate update = fullFlusher.apply(root, Collections.emptyList());
+    update.writeNewNodes(
+        (location, node) -> BenchmarkTrees.write(output, writer, location, node), executor);
+    return update;
+  }
+
+  private TreeNode load(String location) {
+    try (SeekableByteChannel channel = storage.openRead(location)) {
+      return reader.read(channel);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.benchmark;
+
+import io.trinitylake.LakeHouseDef;
+import io.trinitylake.ObjectKeys;
+import io.trinitylake.storage.LocalStorage;
+import io.trinitylake.tree.BufferMessage;
+import io.trinitylake.tree.MutableTreeNode;
+import io.trinitylake.tree.NodeFileReader;
+import io.trinitylake.tree.NodeFileWriter;
+import io.trinitylake.tree.TreeNode;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encoding a node into a node file, and decoding a node file from local storage, for a full leaf
+ * node and for a full internal node with a write buffer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class NodeFileBenchmark {
+
+  private static final String NODE_FILE = "node.ipc";
+
+  @Param({"leaf", "internal"})
+  private String nodeType;
+
+  @Param({"1000"})
+  private int bufferedMessages;
+
+  private Path rootPath;
+  private LocalStorage storage;
+  private BufferAllocator allocator;
+  private NodeFileWriter writer;
+  private NodeFileReader reader;
+  private MutableTreeNode node;
+  private ByteArrayOutputStream encoded;
+
+  @Setup
+  public void before() throws IOException {
+    LakeHouseDef def = LakeHouseDef.builder("benchmark").build();
+    node = new MutableTreeNode();
+    if ("leaf".equals(nodeType)) {
+      for (int i = 0; i < def.order() - 1; i++) {
+        String tableName = BenchmarkTrees.tableName(i);
+        node.addEntry(
+            ObjectKeys.tableKey(BenchmarkTrees.NAMESPACE, tableName, def), tableName + ".binpb");
+      }
+    } else {
+      node.addChild("child_0.ipc");
+      for (int i = 1; i < def.order(); i++) {
+        byte[] separator =
+            ObjectKeys.tableKey(BenchmarkTrees.NAMESPACE, BenchmarkTrees.tableName(i), def);
+        node.addChild(separator, "child_" + i + ".ipc");
+      }
+
+      for (int i = 0; i < bufferedMessages; i++) {
+        String tableName = BenchmarkTrees.tableName(i);
+        node.addMessage(
+            BufferMessage.set(
+                ObjectKeys.tableKey(BenchmarkTrees.NAMESPACE, tableName, def),
+                tableName + "_updated.binpb"));
+      }
+    }
+
+    rootPath = Files.createTempDirectory("trinitylake-node-file-");
+    storage = new LocalStorage(rootPath);
+    allocator = new RootAllocator();
+    writer = new NodeFileWriter(allocator, def.order());
+    reader = new NodeFileReader(allocator, def.order());
+    BenchmarkTrees.write(storage, writer, NODE_FILE, node);
+    encoded = new ByteArrayOutputStream();
+  }
+
+  @TearDown
+  public void after() throws IOException {
+    allocator.close();
+    storage.close();
+    BenchmarkTrees.deleteRecursively(rootPath);
+  }
+
+  @Benchmark
+  public int encode() {
+    encoded.reset();
+    writer.write(node, Channels.newChannel(encoded));
+    return encoded.size();
+  }
+
+  @Benchmark
+  public int decode() throws IOException {
+    try (SeekableByteChannel channel = storage.openRead(NODE_FILE);
+        TreeNode treeNode = reader.read(channel)) {
+      return treeNode.numKeys() + treeNode.numMessages();
+    }
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.benchmark;
+
+import io.trinitylake.FileLocations;
+import io.trinitylake.RootVersionResolver;
+import io.trinitylake.storage.LocalStorage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Resolving the latest root version when the latest hint is behind by a number of versions. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class RootResolutionBenchmark {
+
+  private static final long HINT_VERSION = 10;
+
+  @Param({"0", "10", "1000", "10000"})
+  private long staleVersions;
+
+  private Path rootPath;
+  private LocalStorage storage;
+  private RootVersionResolver resolver;
+
+  @Setup
+  public void before() throws IOException {
+    rootPath = Files.createTempDirectory("trinitylake-resolution-");
+    storage = new LocalStorage(rootPath);
+    for (long version = 0; version <= HINT_VERSION + staleVersions; version++) {
+      storage.create(FileLocations.rootNodeFilePath(version)).close();
+    }
+
+    try (WritableByteChannel channel = storage.overwrite(FileLocations.LATEST_HINT_FILE)) {
+      channel.write(
+          ByteBuffer.wrap(Long.toString(HINT_VERSION).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    resolver = new RootVersionResolver(storage);
+  }
+
+  @TearDown
+  public void after() throws IOException {
+    storage.close();
+    BenchmarkTrees.deleteRecursively(rootPath);
+  }
+
+  @Benchmark
+  public long resolveLatestVersion() {
+    return resolver.resolve().version();
+  }
+}
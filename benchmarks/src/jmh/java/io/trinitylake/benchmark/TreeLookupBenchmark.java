@@ -0,0 +1,92 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.benchmark;
+
+import io.trinitylake.LakeHouse;
+import io.trinitylake.LakeHouseDef;
+import io.trinitylake.LakeHouseProperties;
+import io.trinitylake.storage.LocalStorage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Point lookup of a table by its object key, in trees of different depths. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class TreeLookupBenchmark {
+
+  private static final int ORDER = 32;
+
+  @Param({"1", "2", "3"})
+  private int depth;
+
+  @Param({"true", "false"})
+  private boolean nodeCacheEnabled;
+
+  private Path rootPath;
+  private LakeHouse lakeHouse;
+  private List<byte[]> keys;
+  private int next = 0;
+
+  @Setup
+  public void before() throws IOException {
+    rootPath = Files.createTempDirectory("trinitylake-lookup-");
+    LocalStorage storage = new LocalStorage(rootPath);
+    LakeHouseDef def = LakeHouseDef.builder("benchmark").order(ORDER).build();
+    try (BufferAllocator allocator = new RootAllocator()) {
+      keys = BenchmarkTrees.writeFullTree(storage, def, allocator, depth);
+    }
+
+    lakeHouse =
+        new LakeHouse(
+            storage,
+            def,
+            Collections.singletonMap(
+                LakeHouseProperties.NODE_CACHE_ENABLED, Boolean.toString(nodeCacheEnabled)));
+  }
+
+  @TearDown
+  public void after() throws IOException {
+    lakeHouse.close();
+    BenchmarkTrees.deleteRecursively(rootPath);
+  }
+
+  @Benchmark
+  public String pointLookup() {
+    // stride through the keys so that consecutive lookups go to different leaves
+    next = (next + 7919) % keys.size();
+    return lakeHouse.get(0, keys.get(next));
+  }
+}
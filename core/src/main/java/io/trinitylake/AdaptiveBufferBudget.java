@@ -0,0 +1,213 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake;
+
+import io.trinitylake.tree.BufferBudget;
+import io.trinitylake.tree.BufferMessage;
+import io.trinitylake.util.ValidationUtil;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A {@link BufferBudget} that tunes the write buffer budget of each namespace by its observed ratio
+ * of writes to reads, see {@link LakeHouseProperties#WRITE_BUFFER_ADAPTIVE_ENABLED}.
+ *
+ * <p>The keys of a namespace and all its tables share the encoded namespace name as prefix, so
+ * they form one key range. The budget of a namespace is the write buffer size of the LakeHouse
+ * definition multiplied by the fraction of writes among its observed operations, and never less
+ * than the minimum ratio of the write buffer size. Write-heavy namespaces keep their messages
+ * buffered to batch more of them per node file rewrite, and read-heavy ones get their messages
+ * flushed down to the leaves early, so that their lookups search fewer write buffers. Namespaces
+ * with fewer observations than the minimum keep the whole write buffer.
+ *
+ * <p>The counters are approximate and take a fixed amount of memory. They are kept in a
+ * set-associative table keyed by a 64-bit hash of the namespace prefix, so recording an operation
+ * does not allocate. When the set of a new namespace is full, the least observed namespace of the
+ * set is evicted. All counters are halved after every given number of observations, so the budget
+ * follows the recent workload, and namespaces that are no longer observed, including the ones that
+ * do not exist, eventually free their slot.
+ */
+class AdaptiveBufferBudget implements BufferBudget {
+
+  private static final int WAYS = 4;
+
+  private final long bufferSizeBytes;
+  private final double minRatio;
+  private final long minObservations;
+  private final long decayObservations;
+  private final int prefixSize;
+  private final int setMask;
+  private final AtomicLongArray hashes;
+  private final AtomicLongArray reads;
+  private final AtomicLongArray writes;
+  private final AtomicLong observations = new AtomicLong();
+
+  AdaptiveBufferBudget(
+      LakeHouseDef lakeHouseDef,
+      double minRatio,
+      long minObservations,
+      int maxNamespaces,
+      long decayObservations) {
+    ValidationUtil.checkArgument(
+        maxNamespaces > 0, "Max namespaces must be positive, but got %s", maxNamespaces);
+    ValidationUtil.checkArgument(
+        decayObservations > 0,
+        "Decay observations must be positive, but got %s",
+        decayObservations);
+    this.bufferSizeBytes = lakeHouseDef.writeBufferSizeBytes();
+    this.minRatio = minRatio;
+    this.minObservations = minObservations;
+    this.decayObservations = decayObservations;
+    this.prefixSize = Math.toIntExact(1 + lakeHouseDef.namespaceNameMaxSizeBytes());
+    int numSets = Integer.highestOneBit(Math.max(1, (maxNamespaces + WAYS - 1) / WAYS));
+    this.setMask = numSets - 1;
+    this.hashes = new AtomicLongArray(numSets * WAYS);
+    this.reads = new AtomicLongArray(numSets * WAYS);
+    this.writes = new AtomicLongArray(numSets * WAYS);
+  }
+
+  void recordRead(byte[] key) {
+    record(key, reads);
+  }
+
+  void recordWrite(byte[] key) {
+    record(key, writes);
+  }
+
+  @Override
+  public long bufferSizeBytes(byte[] key) {
+    return budget(namespaceHash(key));
+  }
+
+  /** Checks the bytes of the messages of each namespace against the budget of the namespace. */
+  @Override
+  public boolean exceeds(List<BufferMessage> messages) {
+    Map<Long, Long> namespaceBytes = new HashMap<>();
+    for (BufferMessage message : messages) {
+      namespaceBytes.merge(namespaceHash(message.key()), message.sizeInBytes(), Long::sum);
+    }
+
+    for (Map.Entry<Long, Long> namespace : namespaceBytes.entrySet()) {
+      if (namespace.getValue() > budget(namespace.getKey())) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  private long budget(long hash) {
+    int slot = find(hash);
+    if (slot < 0) {
+      return bufferSizeBytes;
+    }
+
+    long numWrites = writes.get(slot);
+    long total = numWrites + reads.get(slot);
+    if (total < minObservations) {
+      return bufferSizeBytes;
+    }
+
+    return (long) (bufferSizeBytes * Math.max(minRatio, (double) numWrites / total));
+  }
+
+  private void record(byte[] key, AtomicLongArray counters) {
+    long hash = namespaceHash(key);
+    int slot = find(hash);
+    if (slot < 0) {
+      slot = claim(hash);
+    }
+
+    if (slot >= 0) {
+      counters.incrementAndGet(slot);
+    }
+
+    if (observations.incrementAndGet() % decayObservations == 0) {
+      decay();
+    }
+  }
+
+  private int find(long hash) {
+    int first = firstSlot(hash);
+    for (int slot = first; slot < first + WAYS; slot++) {
+      if (hashes.get(slot) == hash) {
+        return slot;
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * Takes the free or the least observed slot of the set of a namespace, or returns -1 if another
+   * namespace takes it at the same time, in which case the observation is dropped.
+   */
+  private int claim(long hash) {
+    int first = firstSlot(hash);
+    int victim = first;
+    long victimObservations = Long.MAX_VALUE;
+    for (int slot = first; slot < first + WAYS; slot++) {
+      long slotObservations = hashes.get(slot) == 0 ? -1 : reads.get(slot) + writes.get(slot);
+      if (slotObservations < victimObservations) {
+        victim = slot;
+        victimObservations = slotObservations;
+      }
+    }
+
+    long evicted = hashes.get(victim);
+    if (!hashes.compareAndSet(victim, evicted, hash)) {
+      return -1;
+    }
+
+    reads.set(victim, 0);
+    writes.set(victim, 0);
+    return victim;
+  }
+
+  private void decay() {
+    for (int slot = 0; slot < hashes.length(); slot++) {
+      long hash = hashes.get(slot);
+      if (hash != 0
+          && reads.updateAndGet(slot, count -> count >> 1)
+                  + writes.updateAndGet(slot, count -> count >> 1)
+              == 0) {
+        hashes.compareAndSet(slot, hash, 0);
+      }
+    }
+  }
+
+  private int firstSlot(long hash) {
+    return ((int) (hash >>> 32) & setMask) * WAYS;
+  }
+
+  /** FNV-1a hash of the namespace prefix of a key, mixed by the MurmurHash3 finalizer, never 0. */
+  private long namespaceHash(byte[] key) {
+    long hash = 0xcbf29ce484222325L;
+    int length = Math.min(prefixSize, key.length);
+    for (int i = 0; i < length; i++) {
+      hash ^= key[i] & 0xFF;
+      hash *= 0x100000001b3L;
+    }
+
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash != 0 ? hash : 1;
+  }
+}
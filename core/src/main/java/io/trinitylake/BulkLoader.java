@@ -0,0 +1,285 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake;
+
+import io.trinitylake.exception.CommitFailedException;
+import io.trinitylake.exception.StorageFileAlreadyExistsException;
+import io.trinitylake.tree.BufferMessage;
+import io.trinitylake.tree.KeyProbe;
+import io.trinitylake.tree.MutableTreeNode;
+import io.trinitylake.tree.TreeBuilder;
+import io.trinitylake.tree.TreeEntry;
+import io.trinitylake.tree.TreeNode;
+import io.trinitylake.tree.TreeOperations;
+import io.trinitylake.util.ByteArrayUtil;
+import io.trinitylake.util.CloseableIterator;
+import io.trinitylake.util.ExternalSorter;
+import io.trinitylake.util.ValidationUtil;
+import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Loads many namespaces and tables into a {@link LakeHouse} as a single root version, by building
+ * a new tree bottom-up instead of applying one message per object through the write buffers.
+ *
+ * <p>The added objects are sorted by key with an {@link ExternalSorter}, which spills sorted runs
+ * to local files beyond the sort buffer size of the LakeHouse properties, and merged with the live
+ * entries of the latest version, with the added objects winning for the same key. The merged
+ * entries are packed into a new tree by a {@link TreeBuilder}. All the node files of the new tree
+ * are written before the root node file, and the new tree has no write buffer message.
+ *
+ * <p>If another commit creates the next version first, the built tree is not thrown away: its root
+ * is written as a regular node file, and the changes committed since the base version are applied
+ * to it as write buffer messages, like a retried transaction, see {@link
+ * LakeHouseProperties#COMMIT_NUM_RETRIES}. The objects added to the loader win over the concurrent
+ * changes to the same objects.
+ *
+ * <p>A loader can only be committed once, and must be closed to delete its spilled runs if it is
+ * not committed.
+ */
+public class BulkLoader implements Closeable {
+
+  private static final byte[] USER_KEY_PREFIX = new byte[] {' '};
+  private static final Comparator<TreeEntry> KEY_ORDER =
+      (left, right) -> ByteArrayUtil.compare(left.key(), right.key());
+
+  private final LakeHouse lakeHouse;
+  private final LakeHouseDef lakeHouseDef;
+  private final ExternalSorter sorter;
+  private boolean committed = false;
+  private boolean closed = false;
+
+  BulkLoader(LakeHouse lakeHouse) {
+    this.lakeHouse = lakeHouse;
+    this.lakeHouseDef = lakeHouse.definition();
+    this.sorter = lakeHouse.newBulkLoadSorter();
+  }
+
+  /** Sets the location of the definition file of a namespace. */
+  public BulkLoader addNamespace(String namespaceName, String definitionLocation) {
+    checkNotCommitted();
+    sorter.add(ObjectKeys.namespaceKey(namespaceName, lakeHouseDef), bytes(definitionLocation));
+    return this;
+  }
+
+  /** Sets the location of the definition file of a table. */
+  public BulkLoader addTable(String namespaceName, String tableName, String definitionLocation) {
+    checkNotCommitted();
+    sorter.add(
+        ObjectKeys.tableKey(namespaceName, tableName, lakeHouseDef), bytes(definitionLocation));
+    return this;
+  }
+
+  /**
+   * Builds the new tree from the latest version and commits it as the next version.
+   *
+   * @return the committed version
+   * @throws CommitFailedException if the commit still fails after all retries
+   * @throws IllegalStateException if the loader is already committed or closed
+   */
+  public long commit() {
+    checkNotCommitted();
+    // the sorted objects can only be read once, so even a failed commit cannot be committed again
+    this.committed = true;
+    long baseVersion = lakeHouse.latestVersion();
+    MutableTreeNode newRoot;
+    // the sorter keeps the order of a key's entries, so that the last added one wins
+    try (CloseableIterator<TreeEntry> added =
+            CloseableIterator.transform(
+                sorter.sorted(),
+                record ->
+                    new TreeEntry(
+                        record.key(), new String(record.value(), StandardCharsets.UTF_8)));
+        TreeNode root = lakeHouse.readNode(FileLocations.rootNodeFilePath(baseVersion));
+        CloseableIterator<TreeEntry> existing = lakeHouse.scan(baseVersion, USER_KEY_PREFIX)) {
+      newRoot = lakeHouse.newTreeBuilder().build(new MergingIterator(added, existing));
+      root.toMutable().systemValues().forEach(newRoot::putSystemValue);
+    }
+
+    long version = baseVersion + 1;
+    try {
+      lakeHouse.writeRoot(version, newRoot);
+      return version;
+    } catch (StorageFileAlreadyExistsException e) {
+      return retry(baseVersion, newRoot, e);
+    }
+  }
+
+  /**
+   * Commits the built tree onto the latest version, after another commit created the next version
+   * of the base version. The built root is written once as a regular node file, so that all the
+   * attempts reuse the built tree.
+   */
+  private long retry(
+      long baseVersion, MutableTreeNode builtRoot, StorageFileAlreadyExistsException conflict) {
+    builtRoot.systemValues().clear();
+    String builtRootLocation = lakeHouse.writeNewNode(builtRoot);
+    StorageFileAlreadyExistsException lastConflict = conflict;
+    int attempt = 1;
+    for (; attempt <= lakeHouse.commitNumRetries(); attempt++) {
+      long latestVersion = lakeHouse.latestVersion();
+      try (TreeNode built = lakeHouse.readNode(builtRootLocation);
+          TreeNode latestRoot = lakeHouse.readNode(FileLocations.rootNodeFilePath(latestVersion));
+          CloseableIterator<TreeEntry> base = lakeHouse.scan(baseVersion, USER_KEY_PREFIX);
+          CloseableIterator<TreeEntry> latest = lakeHouse.scan(latestVersion, USER_KEY_PREFIX)) {
+        List<BufferMessage> changes =
+            concurrentChanges(
+                base,
+                latest,
+                key -> TreeOperations.get(lakeHouse::readNode, built, new KeyProbe(key)));
+        lakeHouse.commitApplied(
+            latestVersion + 1, built, changes, latestRoot.toMutable().systemValues());
+        return latestVersion + 1;
+      } catch (StorageFileAlreadyExistsException e) {
+        lastConflict = e;
+      }
+    }
+
+    throw new CommitFailedException(
+        lastConflict, "Bulk load failed to commit after %s attempts", attempt);
+  }
+
+  /**
+   * Returns the changes between the live entries of a base version and of a later version, as
+   * messages in key order, except for the changes of the keys whose values the built tree changes.
+   *
+   * @param base live entries of the base version in key order
+   * @param latest live entries of the later version in key order
+   * @param built value of a key in the tree built from the base version, or null
+   */
+  static List<BufferMessage> concurrentChanges(
+      Iterator<TreeEntry> base, Iterator<TreeEntry> latest, Function<byte[], String> built) {
+    List<BufferMessage> changes = new ArrayList<>();
+    EntryCursor baseEntries = new EntryCursor(base);
+    EntryCursor latestEntries = new EntryCursor(latest);
+    while (baseEntries.current != null || latestEntries.current != null) {
+      byte[] key = smallestKey(baseEntries.current, latestEntries.current);
+      String baseValue = baseEntries.take(key);
+      String latestValue = latestEntries.take(key);
+      if (!Objects.equals(baseValue, latestValue)
+          && Objects.equals(baseValue, built.apply(key))) {
+        changes.add(
+            latestValue != null ? BufferMessage.set(key, latestValue) : BufferMessage.delete(key));
+      }
+    }
+
+    return changes;
+  }
+
+  private static byte[] smallestKey(TreeEntry left, TreeEntry right) {
+    if (left == null) {
+      return right.key();
+    }
+
+    return right == null || KEY_ORDER.compare(left, right) <= 0 ? left.key() : right.key();
+  }
+
+  private void checkNotCommitted() {
+    ValidationUtil.checkState(!closed, "Bulk loader is closed");
+    ValidationUtil.checkState(!committed, "Bulk loader is already committed");
+  }
+
+  @Override
+  public void close() {
+    this.closed = true;
+    sorter.close();
+  }
+
+  private static byte[] bytes(String location) {
+    return location.getBytes(StandardCharsets.UTF_8);
+  }
+
+  /** The current entry of an iterator over entries in key order. */
+  private static class EntryCursor {
+    private final Iterator<TreeEntry> entries;
+    private TreeEntry current;
+
+    EntryCursor(Iterator<TreeEntry> entries) {
+      this.entries = entries;
+      this.current = entries.hasNext() ? entries.next() : null;
+    }
+
+    /** Returns the value of the current entry and moves to the next one if it has the key. */
+    String take(byte[] key) {
+      if (current == null || !Arrays.equals(current.key(), key)) {
+        return null;
+      }
+
+      String value = current.value();
+      this.current = entries.hasNext() ? entries.next() : null;
+      return value;
+    }
+  }
+
+  /**
+   * Merges the added entries with the existing ones in key order, keeping only the last added
+   * entry of a key, which wins over the existing entry of the key.
+   */
+  private static class MergingIterator implements Iterator<TreeEntry> {
+    private final Iterator<TreeEntry> added;
+    private final Iterator<TreeEntry> existing;
+    private TreeEntry nextAdded;
+    private TreeEntry nextExisting;
+
+    MergingIterator(Iterator<TreeEntry> added, Iterator<TreeEntry> existing) {
+      this.added = added;
+      this.existing = existing;
+      this.nextAdded = added.hasNext() ? added.next() : null;
+      this.nextExisting = existing.hasNext() ? existing.next() : null;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return nextAdded != null || nextExisting != null;
+    }
+
+    @Override
+    public TreeEntry next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+
+      int compare =
+          nextAdded == null
+              ? 1
+              : nextExisting == null ? -1 : KEY_ORDER.compare(nextAdded, nextExisting);
+      if (compare > 0) {
+        TreeEntry entry = nextExisting;
+        this.nextExisting = existing.hasNext() ? existing.next() : null;
+        return entry;
+      }
+
+      if (compare == 0) {
+        this.nextExisting = existing.hasNext() ? existing.next() : null;
+      }
+
+      TreeEntry entry = nextAdded;
+      this.nextAdded = added.hasNext() ? added.next() : null;
+      while (nextAdded != null && KEY_ORDER.compare(entry, nextAdded) == 0) {
+        entry = nextAdded;
+        this.nextAdded = added.hasNext() ? added.next() : null;
+      }
+
+      return entry;
+    }
+  }
+}
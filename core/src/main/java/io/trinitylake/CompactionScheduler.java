@@ -0,0 +1,211 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake;
+
+import io.trinitylake.exception.StorageFileAlreadyExistsException;
+import io.trinitylake.tree.SubtreeReadStats;
+import io.trinitylake.tree.TreeNode;
+import io.trinitylake.tree.TreeOperations;
+import io.trinitylake.util.PropertyUtil;
+import io.trinitylake.util.RateLimiter;
+import io.trinitylake.util.ThreadPools;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Incrementally compacts the subtrees under the children of the root node of a {@link LakeHouse}
+ * in the background, see {@link LakeHouseProperties#COMPACTION_SCHEDULER_ENABLED}.
+ *
+ * <p>Each run ranks the subtrees by their pressure, which is the larger of the bytes of their
+ * buffered messages over {@link LakeHouseProperties#COMPACTION_SCHEDULER_MIN_BUFFER_OCCUPANCY} of
+ * the write buffer size, and of their read amplification observed by the lookups of the LakeHouse
+ * over {@link LakeHouseProperties#COMPACTION_SCHEDULER_MIN_READ_AMPLIFICATION}. The subtrees with
+ * a pressure of at least 1 are compacted from the highest pressure down, as long as the bytes of
+ * their messages fit in the byte rate limit, and are committed together as a single root version
+ * within the commit rate limit.
+ *
+ * <p>A compaction commit never retries: if a user transaction commits the same version first, the
+ * run is abandoned and the subtrees are ranked again by the next run. The rate limits are only
+ * spent by committed runs, the permits of an abandoned run are given back.
+ */
+public class CompactionScheduler implements Closeable {
+
+  private final LakeHouse lakeHouse;
+  private final SubtreeReadStats readStats;
+  private final double minBufferBytes;
+  private final double minReadAmplification;
+  private final RateLimiter byteLimiter;
+  private final RateLimiter commitLimiter;
+  private final AtomicLong numFailedRuns = new AtomicLong();
+  private ScheduledExecutorService executor = null;
+
+  CompactionScheduler(LakeHouse lakeHouse, SubtreeReadStats readStats) {
+    Map<String, String> properties = lakeHouse.properties();
+    this.lakeHouse = lakeHouse;
+    this.readStats = readStats;
+    this.minBufferBytes =
+        lakeHouse.definition().writeBufferSizeBytes()
+            * PropertyUtil.propertyAsDouble(
+                properties,
+                LakeHouseProperties.COMPACTION_SCHEDULER_MIN_BUFFER_OCCUPANCY,
+                LakeHouseProperties.COMPACTION_SCHEDULER_MIN_BUFFER_OCCUPANCY_DEFAULT);
+    this.minReadAmplification =
+        PropertyUtil.propertyAsDouble(
+            properties,
+            LakeHouseProperties.COMPACTION_SCHEDULER_MIN_READ_AMPLIFICATION,
+            LakeHouseProperties.COMPACTION_SCHEDULER_MIN_READ_AMPLIFICATION_DEFAULT);
+    this.byteLimiter =
+        new RateLimiter(
+            PropertyUtil.propertyAsLong(
+                properties,
+                LakeHouseProperties.COMPACTION_SCHEDULER_MAX_BYTES_PER_SECOND,
+                LakeHouseProperties.COMPACTION_SCHEDULER_MAX_BYTES_PER_SECOND_DEFAULT),
+            1,
+            TimeUnit.SECONDS);
+    this.commitLimiter =
+        new RateLimiter(
+            PropertyUtil.propertyAsInt(
+                properties,
+                LakeHouseProperties.COMPACTION_SCHEDULER_MAX_COMMITS_PER_MINUTE,
+                LakeHouseProperties.COMPACTION_SCHEDULER_MAX_COMMITS_PER_MINUTE_DEFAULT),
+            1,
+            TimeUnit.MINUTES);
+  }
+
+  /** Starts running the scheduler periodically in a background thread. */
+  synchronized void start() {
+    long intervalMs =
+        PropertyUtil.propertyAsLong(
+            lakeHouse.properties(),
+            LakeHouseProperties.COMPACTION_SCHEDULER_INTERVAL_MS,
+            LakeHouseProperties.COMPACTION_SCHEDULER_INTERVAL_MS_DEFAULT);
+    this.executor = ThreadPools.newScheduledExecutor("trinitylake-compaction");
+    executor.scheduleWithFixedDelay(
+        this::runInBackground, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Ranks the subtrees of the latest version and compacts the ones under pressure within the rate
+   * limits.
+   *
+   * @return the committed version, or -1 if nothing is compacted
+   */
+  public synchronized long runOnce() {
+    if (!commitLimiter.tryAcquire(1)) {
+      return -1;
+    }
+
+    long acquiredBytes = 0;
+    boolean committed = false;
+    try {
+      long baseVersion = lakeHouse.latestVersion();
+      Set<String> subtrees = new HashSet<>();
+      try (TreeNode root = lakeHouse.readNode(FileLocations.rootNodeFilePath(baseVersion))) {
+        if (root.isLeaf()) {
+          return -1;
+        }
+
+        Map<String, Long> bufferBytes =
+            TreeOperations.subtreeBufferBytes(lakeHouse::readNode, root);
+        readStats.retain(bufferBytes.keySet());
+        for (Subtree subtree : rank(bufferBytes)) {
+          if (!byteLimiter.tryAcquire(subtree.bufferBytes)) {
+            break;
+          }
+
+          acquiredBytes += subtree.bufferBytes;
+          subtrees.add(subtree.location);
+        }
+      }
+
+      if (subtrees.isEmpty()) {
+        return -1;
+      }
+
+      long version = lakeHouse.compact(baseVersion, subtrees);
+      committed = true;
+      subtrees.forEach(readStats::reset);
+      return version;
+    } catch (StorageFileAlreadyExistsException e) {
+      return -1;
+    } finally {
+      if (!committed) {
+        // nothing is written, so the permits are given back for the next run
+        byteLimiter.release(acquiredBytes);
+        commitLimiter.release(1);
+      }
+    }
+  }
+
+  /** Number of background runs that failed with an exception. */
+  public long numFailedRuns() {
+    return numFailedRuns.get();
+  }
+
+  /** Subtrees with a pressure of at least 1 and buffered messages, from the highest pressure. */
+  private List<Subtree> rank(Map<String, Long> bufferBytes) {
+    List<Subtree> ranked = new ArrayList<>();
+    for (Map.Entry<String, Long> entry : bufferBytes.entrySet()) {
+      long bytes = entry.getValue();
+      double pressure =
+          Math.max(
+              minBufferBytes > 0 ? bytes / minBufferBytes : Double.MAX_VALUE,
+              minReadAmplification > 0
+                  ? readStats.readAmplification(entry.getKey()) / minReadAmplification
+                  : Double.MAX_VALUE);
+      if (bytes > 0 && pressure >= 1) {
+        ranked.add(new Subtree(entry.getKey(), bytes, pressure));
+      }
+    }
+
+    ranked.sort((left, right) -> Double.compare(right.pressure, left.pressure));
+    return ranked;
+  }
+
+  private void runInBackground() {
+    try {
+      runOnce();
+    } catch (RuntimeException e) {
+      // a failed run must not cancel the next ones, the subtrees are ranked again by the next run
+      numFailedRuns.incrementAndGet();
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+
+  private static class Subtree {
+    private final String location;
+    private final long bufferBytes;
+    private final double pressure;
+
+    Subtree(String location, long bufferBytes, double pressure) {
+      this.location = location;
+      this.bufferBytes = bufferBytes;
+      this.pressure = pressure;
+    }
+  }
+}
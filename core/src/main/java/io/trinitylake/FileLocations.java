@@ -0,0 +1,67 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake;
+
+import io.trinitylake.util.ValidationUtil;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.UUID;
+
+/** File locations relative to the LakeHouse root location, see the location specification. */
+public class FileLocations {
+
+  public static final String LATEST_HINT_FILE = "_latest_hint";
+
+  private static final int ROOT_NODE_VERSION_BITS = 32;
+  private static final long MAX_ROOT_NODE_VERSION = (1L << ROOT_NODE_VERSION_BITS) - 1;
+
+  private static final Base64.Encoder NODE_FILE_NAME_ENCODER =
+      Base64.getUrlEncoder().withoutPadding();
+
+  private FileLocations() {}
+
+  /**
+   * Returns the root node file name of a version, which is the 32-bit binary representation of
+   * the version reversed, e.g. {@code _00100110000000000000000000000000.ipc} for version 100.
+   */
+  public static String rootNodeFilePath(long version) {
+    ValidationUtil.checkArgument(
+        version >= 0 && version <= MAX_ROOT_NODE_VERSION,
+        "Root node version must be between 0 and %s, but got %s",
+        MAX_ROOT_NODE_VERSION,
+        version);
+    StringBuilder path = new StringBuilder(ROOT_NODE_VERSION_BITS + 5).append('_');
+    for (int bit = 0; bit < ROOT_NODE_VERSION_BITS; bit++) {
+      path.append((version >>> bit & 1) == 1 ? '1' : '0');
+    }
+
+    return path.append(".ipc").toString();
+  }
+
+  /**
+   * Generates a new non-root node file name, which is a base64 encoded random UUID, e.g. {@code
+   * b8tRS7h4TJ2Vt43Dp85v2A.ipc}.
+   */
+  public static String newNodeFilePath() {
+    UUID uuid = UUID.randomUUID();
+    ByteBuffer bytes = ByteBuffer.allocate(16);
+    bytes.putLong(uuid.getMostSignificantBits());
+    bytes.putLong(uuid.getLeastSignificantBits());
+    return NODE_FILE_NAME_ENCODER.encodeToString(bytes.array()) + ".ipc";
+  }
+
+  public static long maxRootNodeVersion() {
+    return MAX_ROOT_NODE_VERSION;
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake;
+
+import io.trinitylake.tree.BufferMessage;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces transactions committed concurrently in the same process into a single root version.
+ *
+ * <p>The first transaction that arrives when no group is open becomes the leader of a new group.
+ * The leader waits for the group window, then commits the messages of all the transactions that
+ * arrived in the meantime with a single root node file write, and all of them get the same
+ * committed version. Transactions that change a key also changed by an earlier transaction of the
+ * group conflict with it, and are committed by the leader in a following version instead.
+ */
+class GroupCommitter {
+
+  private final Committer committer;
+  private final long windowNanos;
+  private final AtomicLong commitCount = new AtomicLong();
+  private final AtomicLong transactionCount = new AtomicLong();
+
+  private List<PendingTransaction> pending = new ArrayList<>();
+  private boolean groupOpen = false;
+
+  /**
+   * @param committer commits messages on top of a base version
+   * @param windowMillis time the leader of a group waits for other transactions to join
+   */
+  GroupCommitter(Committer committer, long windowMillis) {
+    this.committer = committer;
+    this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+  }
+
+  /** Commits the transaction as part of a group, and returns the committed version. */
+  long commit(Transaction transaction) {
+    PendingTransaction pendingTransaction = new PendingTransaction(transaction);
+    boolean leader;
+    synchronized (this) {
+      pending.add(pendingTransaction);
+      leader = !groupOpen;
+      groupOpen = true;
+    }
+
+    if (leader) {
+      lead();
+    }
+
+    try {
+      return pendingTransaction.result.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+
+      throw e;
+    }
+  }
+
+  /** Number of root versions committed. */
+  long commitCount() {
+    return commitCount.get();
+  }
+
+  /** Number of transactions committed. */
+  long transactionCount() {
+    return transactionCount.get();
+  }
+
+  private void lead() {
+    waitForWindow();
+    List<PendingTransaction> group;
+    synchronized (this) {
+      group = pending;
+      pending = new ArrayList<>();
+      groupOpen = false;
+    }
+
+    while (!group.isEmpty()) {
+      List<PendingTransaction> deferred = new ArrayList<>();
+      List<PendingTransaction> nonConflicting = new ArrayList<>();
+      Set<ByteBuffer> keys = new HashSet<>();
+      for (PendingTransaction transaction : group) {
+        if (transaction.conflictsWith(keys)) {
+          deferred.add(transaction);
+        } else {
+          transaction.addKeysTo(keys);
+          nonConflicting.add(transaction);
+        }
+      }
+
+      commitGroup(nonConflicting);
+      group = deferred;
+    }
+  }
+
+  private void commitGroup(List<PendingTransaction> group) {
+    long baseVersion = 0;
+    List<BufferMessage> messages = new ArrayList<>();
+    for (PendingTransaction pendingTransaction : group) {
+      baseVersion = Math.max(baseVersion, pendingTransaction.transaction.beginVersion());
+      messages.addAll(pendingTransaction.transaction.messages());
+    }
+
+    try {
+      long version = committer.commit(baseVersion, messages);
+      commitCount.incrementAndGet();
+      transactionCount.addAndGet(group.size());
+      group.forEach(pendingTransaction -> pendingTransaction.result.complete(version));
+    } catch (RuntimeException e) {
+      group.forEach(pendingTransaction -> pendingTransaction.result.completeExceptionally(e));
+    }
+  }
+
+  private void waitForWindow() {
+    long deadline = System.nanoTime() + windowNanos;
+    long remaining = windowNanos;
+    while (remaining > 0) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(remaining);
+      } catch (InterruptedException e) {
+        // commit what has been collected so far
+        Thread.currentThread().interrupt();
+        return;
+      }
+
+      remaining = deadline - System.nanoTime();
+    }
+  }
+
+  /** Commits messages as the next version of a base version. */
+  @FunctionalInterface
+  interface Committer {
+    long commit(long baseVersion, List<BufferMessage> messages);
+  }
+
+  private static class PendingTransaction {
+    private final Transaction transaction;
+    private final CompletableFuture<Long> result = new CompletableFuture<>();
+
+    PendingTransaction(Transaction transaction) {
+      this.transaction = transaction;
+    }
+
+    boolean conflictsWith(Set<ByteBuffer> keys) {
+      for (BufferMessage message : transaction.messages()) {
+        if (keys.contains(ByteBuffer.wrap(message.key()))) {
+          return true;
+        }
+      }
+
+      return false;
+    }
+
+    void addKeysTo(Set<ByteBuffer> keys) {
+      for (BufferMessage message : transaction.messages()) {
+        keys.add(ByteBuffer.wrap(message.key()));
+      }
+    }
+  }
+}
@@ -13,4 +13,842 @@
  */
 package io.trinitylake;
 
-public class LakeHouse {}
+import io.trinitylake.exception.CommitFailedException;
+import io.trinitylake.exception.ObjectNotFoundException;
+import io.trinitylake.exception.StorageFileAlreadyExistsException;
+import io.trinitylake.exception.StorageFileNotFoundException;
+import io.trinitylake.storage.Storage;
+import io.trinitylake.tree.BufferFlusher;
+import io.trinitylake.tree.BufferMessage;
+import io.trinitylake.tree.KeyProbe;
+import io.trinitylake.tree.MutableTreeNode;
+import io.trinitylake.tree.NodeCache;
+import io.trinitylake.tree.NodeFileRangeReader;
+import io.trinitylake.tree.NodeFileReader;
+import io.trinitylake.tree.NodeFileWriter;
+import io.trinitylake.tree.NodeLoader;
+import io.trinitylake.tree.PinnedNodes;
+import io.trinitylake.tree.SubtreeReadStats;
+import io.trinitylake.tree.TreeBuilder;
+import io.trinitylake.tree.TreeEntry;
+import io.trinitylake.tree.TreeNode;
+import io.trinitylake.tree.TreeOperations;
+import io.trinitylake.tree.TreeUpdate;
+import io.trinitylake.util.ByteArrayUtil;
+import io.trinitylake.util.CloseableIterator;
+import io.trinitylake.util.ExternalSorter;
+import io.trinitylake.util.PropertyUtil;
+import io.trinitylake.util.ThreadPools;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+
+/** A Trinity LakeHouse stored at the root location of a {@link Storage}. */
+public class LakeHouse implements Closeable {
+
+  private final Storage storage;
+  private final LakeHouseDef lakeHouseDef;
+  private final ThreadLocal<ObjectKeyEncoder> keyEncoders;
+  private final Map<String, String> properties;
+  private final BufferAllocator allocator;
+  private final NodeCache nodeCache;
+  private final NodeFileReader nodeFileReader;
+  private final boolean nodeFileMmapEnabled;
+  private final NodeFileRangeReader nodeFileRangeReader;
+  private final NodeFileWriter nodeFileWriter;
+  private final AdaptiveBufferBudget bufferBudget;
+  private final BufferFlusher bufferFlusher;
+  private final int commitWriteParallelism;
+  private final ExecutorService commitExecutor;
+  private final ExecutorService readExecutor;
+  private final NodeLoader nodeLoader = new LakeHouseNodeLoader();
+  private final boolean scanPrefetchEnabled;
+  private final int scanPrefetchNumNodes;
+  private final int commitNumRetries;
+  private final int compactionParallelism;
+  private final SubtreeReadStats readStats;
+  private final CompactionScheduler compactionScheduler;
+  private final boolean commitRebaseEnabled;
+  private final GroupCommitter groupCommitter;
+  private final RootVersionResolver rootVersionResolver;
+  private final int pinnedLevels;
+  private final int bulkLoadSortBufferSizeBytes;
+  private final int bulkLoadSortMergeFanIn;
+  private final Path bulkLoadSpillDir;
+  private final AtomicReference<PinnedVersion> pinnedNodes = new AtomicReference<>();
+  private final ReentrantLock pinnedNodesRefreshLock = new ReentrantLock();
+
+  public LakeHouse(Storage storage, LakeHouseDef lakeHouseDef) {
+    this(storage, lakeHouseDef, Collections.emptyMap());
+  }
+
+  public LakeHouse(Storage storage, LakeHouseDef lakeHouseDef, Map<String, String> properties) {
+    this.storage = storage;
+    this.lakeHouseDef = lakeHouseDef;
+    this.keyEncoders = ThreadLocal.withInitial(() -> new ObjectKeyEncoder(lakeHouseDef));
+    this.properties = Collections.unmodifiableMap(new HashMap<>(properties));
+    this.allocator = new RootAllocator();
+    this.nodeCache =
+        PropertyUtil.propertyAsBoolean(
+                properties,
+                LakeHouseProperties.NODE_CACHE_ENABLED,
+                LakeHouseProperties.NODE_CACHE_ENABLED_DEFAULT)
+            ? NodeCache.shared()
+            : null;
+    // cached nodes are shared across LakeHouses, so they must not use the allocator of this one
+    BufferAllocator nodeAllocator = nodeCache != null ? nodeCache.allocator() : allocator;
+    this.nodeFileReader = new NodeFileReader(nodeAllocator, lakeHouseDef.order());
+    this.nodeFileMmapEnabled =
+        PropertyUtil.propertyAsBoolean(
+            properties,
+            LakeHouseProperties.NODE_FILE_MMAP_ENABLED,
+            LakeHouseProperties.NODE_FILE_MMAP_ENABLED_DEFAULT);
+    this.nodeFileRangeReader =
+        PropertyUtil.propertyAsBoolean(
+                properties,
+                LakeHouseProperties.NODE_FILE_RANGED_READS_ENABLED,
+                LakeHouseProperties.NODE_FILE_RANGED_READS_ENABLED_DEFAULT)
+            ? new NodeFileRangeReader(
+                allocator,
+                lakeHouseDef.order(),
+                PropertyUtil.propertyAsInt(
+                    properties,
+                    LakeHouseProperties.NODE_FILE_RANGED_READS_TAIL_SIZE_BYTES,
+                    LakeHouseProperties.NODE_FILE_RANGED_READS_TAIL_SIZE_BYTES_DEFAULT))
+            : null;
+    this.nodeFileWriter =
+        new NodeFileWriter(
+            allocator,
+            lakeHouseDef.order(),
+            PropertyUtil.propertyAsBoolean(
+                    properties,
+                    LakeHouseProperties.NODE_FILE_BLOOM_FILTER_ENABLED,
+                    LakeHouseProperties.NODE_FILE_BLOOM_FILTER_ENABLED_DEFAULT)
+                ? PropertyUtil.propertyAsDouble(
+                    properties,
+                    LakeHouseProperties.NODE_FILE_BLOOM_FILTER_FPP,
+                    LakeHouseProperties.NODE_FILE_BLOOM_FILTER_FPP_DEFAULT)
+                : 0,
+            PropertyUtil.propertyAsBoolean(
+                properties,
+                LakeHouseProperties.NODE_FILE_KEY_PREFIX_ENABLED,
+                LakeHouseProperties.NODE_FILE_KEY_PREFIX_ENABLED_DEFAULT));
+    this.bufferBudget =
+        PropertyUtil.propertyAsBoolean(
+                properties,
+                LakeHouseProperties.WRITE_BUFFER_ADAPTIVE_ENABLED,
+                LakeHouseProperties.WRITE_BUFFER_ADAPTIVE_ENABLED_DEFAULT)
+            ? new AdaptiveBufferBudget(
+                lakeHouseDef,
+                PropertyUtil.propertyAsDouble(
+                    properties,
+                    LakeHouseProperties.WRITE_BUFFER_ADAPTIVE_MIN_RATIO,
+                    LakeHouseProperties.WRITE_BUFFER_ADAPTIVE_MIN_RATIO_DEFAULT),
+                PropertyUtil.propertyAsLong(
+                    properties,
+                    LakeHouseProperties.WRITE_BUFFER_ADAPTIVE_MIN_OBSERVATIONS,
+                    LakeHouseProperties.WRITE_BUFFER_ADAPTIVE_MIN_OBSERVATIONS_DEFAULT),
+                PropertyUtil.propertyAsInt(
+                    properties,
+                    LakeHouseProperties.WRITE_BUFFER_ADAPTIVE_MAX_NAMESPACES,
+                    LakeHouseProperties.WRITE_BUFFER_ADAPTIVE_MAX_NAMESPACES_DEFAULT),
+                PropertyUtil.propertyAsLong(
+                    properties,
+                    LakeHouseProperties.WRITE_BUFFER_ADAPTIVE_DECAY_OBSERVATIONS,
+                    LakeHouseProperties.WRITE_BUFFER_ADAPTIVE_DECAY_OBSERVATIONS_DEFAULT))
+            : null;
+    this.bufferFlusher =
+        new BufferFlusher(
+            this::readNode,
+            lakeHouseDef.order(),
+            lakeHouseDef.writeBufferSizeBytes(),
+            FileLocations::newNodeFilePath,
+            bufferBudget);
+    this.commitWriteParallelism =
+        PropertyUtil.propertyAsInt(
+            properties,
+            LakeHouseProperties.COMMIT_WRITE_PARALLELISM,
+            LakeHouseProperties.COMMIT_WRITE_PARALLELISM_DEFAULT);
+    this.commitExecutor =
+        ThreadPools.newBoundedIoExecutor(
+            "trinitylake-commit",
+            commitWriteParallelism,
+            PropertyUtil.propertyAsBoolean(
+                properties,
+                LakeHouseProperties.COMMIT_VIRTUAL_THREADS_ENABLED,
+                LakeHouseProperties.COMMIT_VIRTUAL_THREADS_ENABLED_DEFAULT));
+    this.readExecutor =
+        ThreadPools.newBoundedIoExecutor(
+            "trinitylake-read",
+            PropertyUtil.propertyAsInt(
+                properties,
+                LakeHouseProperties.READ_PARALLELISM,
+                LakeHouseProperties.READ_PARALLELISM_DEFAULT),
+            true);
+    this.scanPrefetchEnabled =
+        PropertyUtil.propertyAsBoolean(
+            properties,
+            LakeHouseProperties.SCAN_PREFETCH_ENABLED,
+            LakeHouseProperties.SCAN_PREFETCH_ENABLED_DEFAULT);
+    this.scanPrefetchNumNodes =
+        PropertyUtil.propertyAsInt(
+            properties,
+            LakeHouseProperties.SCAN_PREFETCH_NUM_NODES,
+            LakeHouseProperties.SCAN_PREFETCH_NUM_NODES_DEFAULT);
+    this.commitNumRetries =
+        PropertyUtil.propertyAsInt(
+            properties,
+            LakeHouseProperties.COMMIT_NUM_RETRIES,
+            LakeHouseProperties.COMMIT_NUM_RETRIES_DEFAULT);
+    this.compactionParallelism =
+        PropertyUtil.propertyAsInt(
+            properties,
+            LakeHouseProperties.COMPACTION_PARALLELISM,
+            LakeHouseProperties.COMPACTION_PARALLELISM_DEFAULT);
+    this.commitRebaseEnabled =
+        PropertyUtil.propertyAsBoolean(
+            properties,
+            LakeHouseProperties.COMMIT_REBASE_ENABLED,
+            LakeHouseProperties.COMMIT_REBASE_ENABLED_DEFAULT);
+    this.groupCommitter =
+        PropertyUtil.propertyAsBoolean(
+                properties,
+                LakeHouseProperties.COMMIT_GROUP_ENABLED,
+                LakeHouseProperties.COMMIT_GROUP_ENABLED_DEFAULT)
+            ? new GroupCommitter(
+                this::commit,
+                PropertyUtil.propertyAsLong(
+                    properties,
+                    LakeHouseProperties.COMMIT_GROUP_WINDOW_MS,
+                    LakeHouseProperties.COMMIT_GROUP_WINDOW_MS_DEFAULT))
+            : null;
+    this.rootVersionResolver = new RootVersionResolver(storage);
+    this.pinnedLevels =
+        PropertyUtil.propertyAsBoolean(
+                properties,
+                LakeHouseProperties.PINNED_NODES_ENABLED,
+                LakeHouseProperties.PINNED_NODES_ENABLED_DEFAULT)
+            ? PropertyUtil.propertyAsInt(
+                properties,
+                LakeHouseProperties.PINNED_NODES_LEVELS,
+                LakeHouseProperties.PINNED_NODES_LEVELS_DEFAULT)
+            : -1;
+    this.bulkLoadSortBufferSizeBytes =
+        PropertyUtil.propertyAsInt(
+            properties,
+            LakeHouseProperties.BULK_LOAD_SORT_BUFFER_SIZE_BYTES,
+            LakeHouseProperties.BULK_LOAD_SORT_BUFFER_SIZE_BYTES_DEFAULT);
+    this.bulkLoadSortMergeFanIn =
+        PropertyUtil.propertyAsInt(
+            properties,
+            LakeHouseProperties.BULK_LOAD_SORT_MERGE_FAN_IN,
+            LakeHouseProperties.BULK_LOAD_SORT_MERGE_FAN_IN_DEFAULT);
+    this.bulkLoadSpillDir =
+        Paths.get(
+            PropertyUtil.propertyAsString(
+                properties,
+                LakeHouseProperties.BULK_LOAD_SPILL_DIR,
+                LakeHouseProperties.BULK_LOAD_SPILL_DIR_DEFAULT));
+    if (PropertyUtil.propertyAsBoolean(
+        properties,
+        LakeHouseProperties.COMPACTION_SCHEDULER_ENABLED,
+        LakeHouseProperties.COMPACTION_SCHEDULER_ENABLED_DEFAULT)) {
+      this.readStats = new SubtreeReadStats();
+      this.compactionScheduler = new CompactionScheduler(this, readStats);
+      compactionScheduler.start();
+    } else {
+      this.readStats = null;
+      this.compactionScheduler = null;
+    }
+  }
+
+  public Storage storage() {
+    return storage;
+  }
+
+  public LakeHouseDef definition() {
+    return lakeHouseDef;
+  }
+
+  public Map<String, String> properties() {
+    return properties;
+  }
+
+  /** Resolves the latest version of the tree root node. */
+  public long latestVersion() {
+    return rootVersionResolver.resolve().version();
+  }
+
+  public RootVersionResolver rootVersionResolver() {
+    return rootVersionResolver;
+  }
+
+  /** Returns the location of the namespace definition file at the latest version. */
+  public String loadNamespace(String namespaceName) {
+    // the lookup does not keep the key, so it is encoded into the scratch array of the thread
+    String location = get(latestVersion(), keyEncoders.get().namespaceKey(namespaceName));
+    if (location == null) {
+      throw new ObjectNotFoundException("Namespace does not exist: %s", namespaceName);
+    }
+
+    return location;
+  }
+
+  /** Returns the location of the table definition file at the latest version. */
+  public String loadTable(String namespaceName, String tableName) {
+    String location = get(latestVersion(), keyEncoders.get().tableKey(namespaceName, tableName));
+    if (location == null) {
+      throw new ObjectNotFoundException("Table does not exist: %s.%s", namespaceName, tableName);
+    }
+
+    return location;
+  }
+
+  /**
+   * Finds the value location of a key in the given version of the tree.
+   *
+   * @return the value location, or null if the key does not exist
+   */
+  public String get(long version, byte[] key) {
+    if (bufferBudget != null) {
+      bufferBudget.recordRead(key);
+    }
+
+    KeyProbe probe = new KeyProbe(key);
+    PinnedNodes pinned = pinnedNodes(version);
+    if (pinned != null) {
+      try {
+        return TreeOperations.get(
+            pinned.loader(this::readNode), pinned.root(), probe, readStats);
+      } finally {
+        pinned.close();
+      }
+    }
+
+    try (TreeNode root = readNode(FileLocations.rootNodeFilePath(version))) {
+      return TreeOperations.get(this::readNode, root, probe, readStats);
+    }
+  }
+
+  /**
+   * Lists the names of the namespaces at the latest version in name order.
+   *
+   * <p>The tables of a namespace are not scanned: the names are found by seeking from the root
+   * past the table keys of each namespace, so the returned iterator holds the root node and must
+   * be closed if it is not fully consumed.
+   */
+  public CloseableIterator<String> listNamespaces() {
+    return new NamespaceIterator(readNode(FileLocations.rootNodeFilePath(latestVersion())));
+  }
+
+  /**
+   * Lists the names of the tables of a namespace at the latest version in name order.
+   *
+   * <p>The names are streamed from a scan of the key range of the namespace, so the returned
+   * iterator must be closed if it is not fully consumed.
+   */
+  public CloseableIterator<String> listTables(String namespaceName) {
+    CloseableIterator<TreeEntry> entries =
+        scan(latestVersion(), ObjectKeys.tablePrefix(namespaceName, lakeHouseDef));
+    return CloseableIterator.transform(
+        CloseableIterator.filter(
+            entries, entry -> ObjectKeys.isTableKey(entry.key(), lakeHouseDef)),
+        entry -> ObjectKeys.tableName(entry.key(), lakeHouseDef));
+  }
+
+  /**
+   * Scans the keys starting with a prefix in the given version of the tree in key order, see
+   * {@link TreeOperations#scan}.
+   *
+   * @return the live entries with the prefix, which must be closed if not fully consumed
+   */
+  public CloseableIterator<TreeEntry> scan(long version, byte[] keyPrefix) {
+    try (TreeNode root = readNode(FileLocations.rootNodeFilePath(version))) {
+      return TreeOperations.scan(
+          nodeLoader,
+          root,
+          keyPrefix,
+          ByteArrayUtil.prefixEnd(keyPrefix),
+          scanPrefetchEnabled ? readExecutor : null,
+          scanPrefetchNumNodes);
+    }
+  }
+
+  /**
+   * Creates a loader of many namespaces and tables that are committed together as a single version
+   * with a tree built bottom-up, see {@link BulkLoader}.
+   */
+  public BulkLoader newBulkLoader() {
+    return new BulkLoader(this);
+  }
+
+  /** Begins a write transaction at the latest version. */
+  public Transaction beginTransaction() {
+    return new Transaction(lakeHouseDef, latestVersion());
+  }
+
+  /**
+   * Commits a transaction as the next version of its begin version, see the commit atomicity
+   * section of the transaction specification.
+   *
+   * <p>The new non-root node files are written in parallel, and the root node file is only written
+   * after all of them are written. If another commit already created the next version, the commit
+   * is retried against the latest version, either by rebasing the applied changes onto the new
+   * root or by applying the changes again, see {@link LakeHouseProperties#COMMIT_REBASE_ENABLED}.
+   * Changes of a retried commit win over the concurrent changes to the same objects.
+   *
+   * <p>When group commit is enabled, the transaction might be committed together with other
+   * transactions in the same version, see {@link LakeHouseProperties#COMMIT_GROUP_ENABLED}.
+   *
+   * @return the committed version, or the begin version if the transaction has no change
+   * @throws CommitFailedException if the commit still fails after all retries
+   */
+  public long commit(Transaction transaction) {
+    if (transaction.messages().isEmpty()) {
+      return transaction.beginVersion();
+    }
+
+    if (bufferBudget != null) {
+      transaction.messages().forEach(message -> bufferBudget.recordWrite(message.key()));
+    }
+
+    if (groupCommitter != null) {
+      return groupCommitter.commit(transaction);
+    }
+
+    return commit(transaction.beginVersion(), transaction.messages());
+  }
+
+  private long commit(long beginVersion, List<BufferMessage> messages) {
+    long baseVersion = beginVersion;
+    TreeUpdate update = null;
+    for (int attempt = 0; ; attempt++) {
+      try (TreeNode root = readNode(FileLocations.rootNodeFilePath(baseVersion))) {
+        update =
+            update != null && commitRebaseEnabled
+                ? bufferFlusher.rebase(update, root, messages)
+                : bufferFlusher.apply(root, messages);
+      }
+
+      update.writeNewNodes(this::writeNode, commitExecutor);
+      long version = baseVersion + 1;
+      try {
+        writeRoot(version, update.root());
+        return version;
+      } catch (StorageFileAlreadyExistsException e) {
+        if (attempt >= commitNumRetries) {
+          throw new CommitFailedException(
+              e, "Version %s is already committed, failed after %s attempts", version, attempt + 1);
+        }
+
+        baseVersion = latestVersion();
+      }
+    }
+  }
+
+  /**
+   * Flushes the messages in the write buffers of all the nodes of the latest version down to the
+   * leaves, and commits the compacted tree as the next version, see {@link
+   * BufferFlusher#compact}. Lookups against the compacted version only find values in leaves.
+   *
+   * <p>A compaction cannot be rebased, so if another commit creates the next version first, the
+   * compaction starts over from the latest version.
+   *
+   * @return the committed version, or the latest version if all write buffers are already empty
+   * @throws CommitFailedException if the commit still fails after all retries
+   */
+  public long compact() {
+    for (int attempt = 0; ; attempt++) {
+      long baseVersion = latestVersion();
+      try {
+        return compact(baseVersion, null);
+      } catch (StorageFileAlreadyExistsException e) {
+        if (attempt >= commitNumRetries) {
+          throw new CommitFailedException(
+              e,
+              "Version %s is already committed, failed after %s attempts",
+              baseVersion + 1,
+              attempt + 1);
+        }
+      }
+    }
+  }
+
+  /**
+   * Compacts the given subtrees of a version and commits the result as the next version, without
+   * retrying, see {@link BufferFlusher#compact(TreeNode, Set, ForkJoinPool)}.
+   *
+   * @param subtrees node file locations of the children of the root to compact, or null for all
+   * @return the committed version, or the base version if the subtrees have no message to flush
+   * @throws StorageFileAlreadyExistsException if the next version is already committed
+   */
+  long compact(long baseVersion, Set<String> subtrees) {
+    ForkJoinPool pool = new ForkJoinPool(compactionParallelism);
+    try {
+      TreeUpdate update;
+      try (TreeNode root = readNode(FileLocations.rootNodeFilePath(baseVersion))) {
+        update = bufferFlusher.compact(root, subtrees, pool);
+      }
+
+      if (update == null) {
+        return baseVersion;
+      }
+
+      update.writeNewNodes(this::writeNode, commitExecutor);
+      long version = baseVersion + 1;
+      writeRoot(version, update.root());
+      return version;
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /** The background compaction scheduler, or null if it is not enabled. */
+  public CompactionScheduler compactionScheduler() {
+    return compactionScheduler;
+  }
+
+  /** Total size in bytes of the currently pinned node files, or 0 if no node is pinned. */
+  public long pinnedSizeInBytes() {
+    PinnedVersion pinned = pinnedNodes.get();
+    return pinned != null ? pinned.nodes.sizeInBytes() : 0;
+  }
+
+  /** Number of currently pinned nodes. */
+  public int pinnedNodeCount() {
+    PinnedVersion pinned = pinnedNodes.get();
+    return pinned != null ? pinned.nodes.numNodes() : 0;
+  }
+
+  /**
+   * Returns the pinned nodes of the given version, which the caller must close after use, or null
+   * if nodes are not pinned for the version. Pinned nodes only move forward to newer versions, so
+   * lookups against older versions go through the regular read path.
+   *
+   * <p>Lookups never wait for a refresh: the first lookup of a newer version loads its pinned
+   * nodes and swaps them in, while the concurrent lookups go through the regular read path.
+   */
+  private PinnedNodes pinnedNodes(long version) {
+    if (pinnedLevels < 0) {
+      return null;
+    }
+
+    PinnedVersion pinned = pinnedNodes.get();
+    while (pinned != null && pinned.version == version) {
+      if (pinned.nodes.tryRetain()) {
+        return pinned.nodes;
+      }
+
+      // released by a concurrent refresh to a newer version
+      pinned = pinnedNodes.get();
+    }
+
+    if (pinned != null && pinned.version > version) {
+      return null;
+    }
+
+    if (!pinnedNodesRefreshLock.tryLock()) {
+      return null;
+    }
+
+    try {
+      return refreshPinnedNodes(version);
+    } finally {
+      pinnedNodesRefreshLock.unlock();
+    }
+  }
+
+  /** Loads the pinned nodes of a newer version, called while holding the refresh lock. */
+  private PinnedNodes refreshPinnedNodes(long version) {
+    PinnedVersion current = pinnedNodes.get();
+    if (current != null && current.version >= version) {
+      // refreshed since the caller checked
+      return current.version == version && current.nodes.tryRetain() ? current.nodes : null;
+    }
+
+    PinnedNodes previous = current != null && current.nodes.tryRetain() ? current.nodes : null;
+    PinnedNodes refreshed;
+    try {
+      refreshed =
+          PinnedNodes.load(
+              this::readNode, FileLocations.rootNodeFilePath(version), pinnedLevels, previous);
+    } finally {
+      if (previous != null) {
+        previous.close();
+      }
+    }
+
+    if (!pinnedNodes.compareAndSet(current, new PinnedVersion(version, refreshed))) {
+      // the LakeHouse is closed concurrently
+      refreshed.close();
+      return null;
+    }
+
+    if (current != null) {
+      current.nodes.close();
+    }
+
+    return refreshed.retain();
+  }
+
+  TreeNode readNode(String location) {
+    // partially read nodes load the rest from the storage of this LakeHouse, so are not shared
+    if (nodeCache != null && nodeFileRangeReader == null) {
+      return nodeCache.get(storage.root() + location, () -> readNodeFile(location));
+    }
+
+    return readNodeFile(location);
+  }
+
+  private TreeNode readNodeFile(String location) {
+    Path localPath = nodeFileMmapEnabled ? storage.localPath(location) : null;
+    if (localPath != null) {
+      try (FileChannel channel = FileChannel.open(localPath, StandardOpenOption.READ)) {
+        return nodeFileReader.map(channel);
+      } catch (NoSuchFileException e) {
+        throw new StorageFileNotFoundException(e, "File does not exist: %s", location);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Failed to map node file " + location, e);
+      }
+    }
+
+    if (nodeFileRangeReader != null) {
+      return nodeFileRangeReader.read(storage, location);
+    }
+
+    try (SeekableByteChannel channel = storage.openRead(location)) {
+      return nodeFileReader.read(channel);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to close node file " + location, e);
+    }
+  }
+
+  private CompletableFuture<TreeNode> readNodeAsync(String location, Executor executor) {
+    if (nodeCache != null && nodeFileRangeReader == null) {
+      return nodeCache.getAsync(
+          storage.root() + location, () -> readNodeFileAsync(location, executor));
+    }
+
+    return readNodeFileAsync(location, executor);
+  }
+
+  private CompletableFuture<TreeNode> readNodeFileAsync(String location, Executor executor) {
+    if (nodeFileMmapEnabled || nodeFileRangeReader != null) {
+      // mapping does not fetch anything, and ranged reads depend on the previous ones
+      return CompletableFuture.supplyAsync(() -> readNodeFile(location), executor);
+    }
+
+    return nodeFileReader.readAsync(storage, location, executor);
+  }
+
+  /** Creates a builder of trees whose non-root node files are written by this LakeHouse. */
+  TreeBuilder newTreeBuilder() {
+    return new TreeBuilder(
+        lakeHouseDef.order(),
+        this::writeNode,
+        commitExecutor,
+        FileLocations::newNodeFilePath,
+        2 * commitWriteParallelism);
+  }
+
+  /** Creates a sorter of the objects added to a bulk load. */
+  ExternalSorter newBulkLoadSorter() {
+    return new ExternalSorter(
+        bulkLoadSortBufferSizeBytes, bulkLoadSortMergeFanIn, bulkLoadSpillDir);
+  }
+
+  int commitNumRetries() {
+    return commitNumRetries;
+  }
+
+  /** Writes a non-root node file at a new location, and returns the location. */
+  String writeNewNode(MutableTreeNode node) {
+    String location = FileLocations.newNodeFilePath();
+    writeNode(location, node);
+    return location;
+  }
+
+  /**
+   * Applies messages to the tree of a node, and commits the new tree as the given version with the
+   * given system values, without retrying.
+   *
+   * @throws StorageFileAlreadyExistsException if the version is already committed
+   */
+  void commitApplied(
+      long version, TreeNode node, List<BufferMessage> messages, Map<String, String> systemValues) {
+    TreeUpdate update = bufferFlusher.apply(node, messages);
+    update.root().systemValues().clear();
+    systemValues.forEach(update.root()::putSystemValue);
+    update.writeNewNodes(this::writeNode, commitExecutor);
+    writeRoot(version, update.root());
+  }
+
+  /**
+   * Writes the root node file of a version, which commits the version.
+   *
+   * @throws StorageFileAlreadyExistsException if the version is already committed
+   */
+  void writeRoot(long version, MutableTreeNode root) {
+    writeNode(FileLocations.rootNodeFilePath(version), root);
+    writeLatestHint(version);
+  }
+
+  private void writeNode(String location, MutableTreeNode node) {
+    try (WritableByteChannel channel = storage.create(location)) {
+      nodeFileWriter.write(node, channel);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to close node file " + location, e);
+    }
+  }
+
+  private void writeLatestHint(long version) {
+    try (WritableByteChannel channel = storage.overwrite(FileLocations.LATEST_HINT_FILE)) {
+      channel.write(ByteBuffer.wrap(Long.toString(version).getBytes(StandardCharsets.UTF_8)));
+    } catch (IOException | UncheckedIOException e) {
+      // the hint is written with best effort, readers always search for newer versions
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (compactionScheduler != null) {
+      compactionScheduler.close();
+    }
+
+    commitExecutor.shutdown();
+    readExecutor.shutdown();
+    PinnedVersion pinned = pinnedNodes.getAndSet(null);
+    if (pinned != null) {
+      pinned.nodes.close();
+    }
+
+    storage.close();
+    allocator.close();
+  }
+
+  /** The pinned nodes of a root version. */
+  private static class PinnedVersion {
+    private final long version;
+    private final PinnedNodes nodes;
+
+    PinnedVersion(long version, PinnedNodes nodes) {
+      this.version = version;
+      this.nodes = nodes;
+    }
+  }
+
+  /**
+   * Iterates over the namespace names of a tree by seeking to the first key at or after a
+   * position, starting at the first user key. The table keys of a namespace sort before its
+   * namespace key, so a seek that lands on a table key moves to the end of the table keys of the
+   * namespace, and a seek that lands on a namespace key moves past all the keys of the namespace.
+   * Each namespace therefore takes at most two seeks, regardless of its number of tables.
+   */
+  private class NamespaceIterator implements CloseableIterator<String> {
+    private final TreeNode root;
+    private final int namespacePrefixSizeBytes;
+    private final byte[] end = ByteArrayUtil.prefixEnd(new byte[] {' '});
+    private byte[] position = new byte[] {' '};
+    private String next = null;
+    private boolean closed = false;
+
+    NamespaceIterator(TreeNode root) {
+      this.root = root;
+      this.namespacePrefixSizeBytes = Math.toIntExact(1 + lakeHouseDef.namespaceNameMaxSizeBytes());
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (next == null && position != null) {
+        TreeEntry entry = seek(position);
+        if (entry == null) {
+          this.position = null;
+        } else if (ObjectKeys.isNamespaceKey(entry.key(), lakeHouseDef)) {
+          this.next = ObjectKeys.namespaceName(entry.key(), lakeHouseDef);
+          this.position = successor(entry.key(), namespacePrefixSizeBytes);
+        } else if (ObjectKeys.isTableKey(entry.key(), lakeHouseDef)) {
+          // the namespace key, if any, is right after the table keys of the namespace
+          this.position = successor(entry.key(), namespacePrefixSizeBytes + 1);
+        } else {
+          this.position = Arrays.copyOf(entry.key(), entry.key().length + 1);
+        }
+      }
+
+      if (position == null) {
+        // exhausted, release the root without waiting for the caller to close
+        close();
+      }
+
+      return next != null;
+    }
+
+    @Override
+    public String next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+
+      String namespaceName = next;
+      this.next = null;
+      return namespaceName;
+    }
+
+    @Override
+    public void close() {
+      this.position = null;
+      if (!closed) {
+        this.closed = true;
+        root.close();
+      }
+    }
+
+    private TreeEntry seek(byte[] start) {
+      // only the first entry is read, so nothing is prefetched
+      try (CloseableIterator<TreeEntry> entries =
+          TreeOperations.scan(nodeLoader, root, start, end, null, 0)) {
+        return entries.hasNext() ? entries.next() : null;
+      }
+    }
+
+    private byte[] successor(byte[] key, int prefixSizeBytes) {
+      return ByteArrayUtil.prefixEnd(Arrays.copyOf(key, Math.min(key.length, prefixSizeBytes)));
+    }
+  }
+
+  /** Loads nodes through the node cache and the asynchronous reads of the storage. */
+  private class LakeHouseNodeLoader implements NodeLoader {
+    @Override
+    public TreeNode load(String location) {
+      return readNode(location);
+    }
+
+    @Override
+    public CompletableFuture<TreeNode> loadAsync(String location, Executor executor) {
+      return readNodeAsync(location, executor);
+    }
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake;
+
+import io.trinitylake.util.ValidationUtil;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/** The LakeHouse definition, see the LakeHouse specification for the meaning of each field. */
+public class LakeHouseDef {
+
+  private final String name;
+  private final int majorFormatVersion;
+  private final int order;
+  private final long namespaceNameMaxSizeBytes;
+  private final long tableNameMaxSizeBytes;
+  private final long fileNameMaxSizeBytes;
+  private final long nodeFileMaxSizeBytes;
+  private final Map<String, String> properties;
+
+  private LakeHouseDef(Builder builder) {
+    this.name = builder.name;
+    this.majorFormatVersion = builder.majorFormatVersion;
+    this.order = builder.order;
+    this.namespaceNameMaxSizeBytes = builder.namespaceNameMaxSizeBytes;
+    this.tableNameMaxSizeBytes = builder.tableNameMaxSizeBytes;
+    this.fileNameMaxSizeBytes = builder.fileNameMaxSizeBytes;
+    this.nodeFileMaxSizeBytes = builder.nodeFileMaxSizeBytes;
+    this.properties = Collections.unmodifiableMap(new HashMap<>(builder.properties));
+  }
+
+  public static Builder builder(String name) {
+    return new Builder(name);
+  }
+
+  public String name() {
+    return name;
+  }
+
+  public int majorFormatVersion() {
+    return majorFormatVersion;
+  }
+
+  public int order() {
+    return order;
+  }
+
+  public long namespaceNameMaxSizeBytes() {
+    return namespaceNameMaxSizeBytes;
+  }
+
+  public long tableNameMaxSizeBytes() {
+    return tableNameMaxSizeBytes;
+  }
+
+  public long fileNameMaxSizeBytes() {
+    return fileNameMaxSizeBytes;
+  }
+
+  public long nodeFileMaxSizeBytes() {
+    return nodeFileMaxSizeBytes;
+  }
+
+  public Map<String, String> properties() {
+    return properties;
+  }
+
+  /**
+   * Size of the write buffer of each node, which is the node file size minus the estimated size of
+   * the {@code N} node pointer rows, see the node file size section of the storage specification.
+   */
+  public long writeBufferSizeBytes() {
+    return nodeFileMaxSizeBytes
+        - nodePointerRowsSizeBytes(
+            order, namespaceNameMaxSizeBytes, tableNameMaxSizeBytes, fileNameMaxSizeBytes);
+  }
+
+  private static long nodePointerRowsSizeBytes(
+      int order,
+      long namespaceNameMaxSizeBytes,
+      long tableNameMaxSizeBytes,
+      long fileNameMaxSizeBytes) {
+    // 1 initial byte and 4 bytes for schema ID
+    return order * (namespaceNameMaxSizeBytes + tableNameMaxSizeBytes + fileNameMaxSizeBytes + 5);
+  }
+
+  public static class Builder {
+    private final String name;
+    private int majorFormatVersion = 0;
+    private int order = 128;
+    private long namespaceNameMaxSizeBytes = 100;
+    private long tableNameMaxSizeBytes = 100;
+    private long fileNameMaxSizeBytes = 200;
+    private long nodeFileMaxSizeBytes = 1048576;
+    private final Map<String, String> properties = new HashMap<>();
+
+    private Builder(String name) {
+      this.name = ValidationUtil.checkNotNull(name, "LakeHouse name must be provided");
+    }
+
+    public Builder majorFormatVersion(int majorFormatVersion) {
+      this.majorFormatVersion = majorFormatVersion;
+      return this;
+    }
+
+    public Builder order(int order) {
+      this.order = order;
+      return this;
+    }
+
+    public Builder namespaceNameMaxSizeBytes(long namespaceNameMaxSizeBytes) {
+      this.namespaceNameMaxSizeBytes = namespaceNameMaxSizeBytes;
+      return this;
+    }
+
+    public Builder tableNameMaxSizeBytes(long tableNameMaxSizeBytes) {
+      this.tableNameMaxSizeBytes = tableNameMaxSizeBytes;
+      return this;
+    }
+
+    public Builder fileNameMaxSizeBytes(long fileNameMaxSizeBytes) {
+      this.fileNameMaxSizeBytes = fileNameMaxSizeBytes;
+      return this;
+    }
+
+    public Builder nodeFileMaxSizeBytes(long nodeFileMaxSizeBytes) {
+      this.nodeFileMaxSizeBytes = nodeFileMaxSizeBytes;
+      return this;
+    }
+
+    public Builder properties(Map<String, String> properties) {
+      this.properties.putAll(properties);
+      return this;
+    }
+
+    public LakeHouseDef build() {
+      ValidationUtil.checkArgument(order >= 2, "Tree order must be at least 2, but got %s", order);
+      ValidationUtil.checkArgument(
+          namespaceNameMaxSizeBytes > 0 && tableNameMaxSizeBytes > 0 && fileNameMaxSizeBytes > 0,
+          "Maximum object name and file name sizes must be positive");
+      long pointerRowsSize =
+          nodePointerRowsSizeBytes(
+              order, namespaceNameMaxSizeBytes, tableNameMaxSizeBytes, fileNameMaxSizeBytes);
+      ValidationUtil.checkArgument(
+          pointerRowsSize < nodeFileMaxSizeBytes,
+          "Node file size %s must be larger than the size of the node pointer rows %s",
+          nodeFileMaxSizeBytes,
+          pointerRowsSize);
+      return new LakeHouseDef(this);
+    }
+  }
+}
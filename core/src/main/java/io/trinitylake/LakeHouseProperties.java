@@ -0,0 +1,264 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake;
+
+/**
+ * Client side properties of a {@link LakeHouse}, which are not part of the LakeHouse definition.
+ */
+public class LakeHouseProperties {
+
+  /**
+   * Whether to cache decoded node files in the process-wide {@link io.trinitylake.tree.NodeCache}.
+   */
+  public static final String NODE_CACHE_ENABLED = "node-cache.enabled";
+
+  public static final boolean NODE_CACHE_ENABLED_DEFAULT = true;
+
+  /**
+   * Whether to memory map node files instead of reading them into memory, when the storage is
+   * backed by a local or POSIX-mounted file system, see {@link
+   * io.trinitylake.storage.Storage#localPath(String)}.
+   */
+  public static final String NODE_FILE_MMAP_ENABLED = "node-file.mmap.enabled";
+
+  public static final boolean NODE_FILE_MMAP_ENABLED_DEFAULT = false;
+
+  /**
+   * Whether to read node files through ranged reads of only the parts needed for lookups, see
+   * {@link io.trinitylake.tree.NodeFileRangeReader}. Nodes read this way are not cached in the
+   * shared node cache, because they keep reading from the storage of the LakeHouse.
+   */
+  public static final String NODE_FILE_RANGED_READS_ENABLED = "node-file.ranged-reads.enabled";
+
+  public static final boolean NODE_FILE_RANGED_READS_ENABLED_DEFAULT = false;
+
+  /** Number of bytes fetched from the end of a node file by the first ranged read. */
+  public static final String NODE_FILE_RANGED_READS_TAIL_SIZE_BYTES =
+      "node-file.ranged-reads.tail-size-bytes";
+
+  public static final int NODE_FILE_RANGED_READS_TAIL_SIZE_BYTES_DEFAULT =
+      io.trinitylake.tree.NodeFileRangeReader.TAIL_READ_SIZE_DEFAULT;
+
+  /**
+   * Whether to write a Bloom filter over the keys of the write buffer of each node file, so that
+   * lookups can skip scanning write buffers that do not have a message for the key.
+   */
+  public static final String NODE_FILE_BLOOM_FILTER_ENABLED = "node-file.bloom-filter.enabled";
+
+  public static final boolean NODE_FILE_BLOOM_FILTER_ENABLED_DEFAULT = true;
+
+  /** False positive probability of the write buffer Bloom filters. */
+  public static final String NODE_FILE_BLOOM_FILTER_FPP = "node-file.bloom-filter.fpp";
+
+  public static final double NODE_FILE_BLOOM_FILTER_FPP_DEFAULT =
+      io.trinitylake.tree.NodeFileWriter.BLOOM_FILTER_FPP_DEFAULT;
+
+  /**
+   * Whether to write the common prefix of the keys of a node file once in its schema metadata
+   * instead of in every key, see the key prefix section of the storage specification. Node files
+   * written with it can only be read by readers that support the key prefix.
+   */
+  public static final String NODE_FILE_KEY_PREFIX_ENABLED = "node-file.key-prefix.enabled";
+
+  public static final boolean NODE_FILE_KEY_PREFIX_ENABLED_DEFAULT = false;
+
+  /**
+   * Whether to keep the root node and the first levels below it resident and decoded. The pinned
+   * nodes are refreshed when a lookup is done against a newer root version.
+   */
+  public static final String PINNED_NODES_ENABLED = "pinned-nodes.enabled";
+
+  public static final boolean PINNED_NODES_ENABLED_DEFAULT = false;
+
+  /**
+   * Number of levels below the root node to keep resident when pinned nodes are enabled. The
+   * default pins the root node and its children, which is up to {@code 1 + order} nodes.
+   */
+  public static final String PINNED_NODES_LEVELS = "pinned-nodes.levels";
+
+  public static final int PINNED_NODES_LEVELS_DEFAULT = 1;
+
+  /** Maximum number of node files written at the same time by a commit. */
+  public static final String COMMIT_WRITE_PARALLELISM = "commit.write-parallelism";
+
+  public static final int COMMIT_WRITE_PARALLELISM_DEFAULT = 16;
+
+  /** Whether to write node files in virtual threads when running on JDK 21 or later. */
+  public static final String COMMIT_VIRTUAL_THREADS_ENABLED = "commit.virtual-threads.enabled";
+
+  public static final boolean COMMIT_VIRTUAL_THREADS_ENABLED_DEFAULT = true;
+
+  /** Number of times to retry a commit after another commit created the same root version. */
+  public static final String COMMIT_NUM_RETRIES = "commit.retry.num-retries";
+
+  public static final int COMMIT_NUM_RETRIES_DEFAULT = 4;
+
+  /**
+   * Whether to retry a commit by rebasing its already applied changes onto the new root, reusing
+   * the node files written by the failed attempt when possible. When disabled, the changes are
+   * applied again from the new root.
+   */
+  public static final String COMMIT_REBASE_ENABLED = "commit.rebase.enabled";
+
+  public static final boolean COMMIT_REBASE_ENABLED_DEFAULT = true;
+
+  /**
+   * Whether to coalesce transactions committed concurrently by the same LakeHouse into a single
+   * root version, when they do not change the same objects.
+   */
+  public static final String COMMIT_GROUP_ENABLED = "commit.group.enabled";
+
+  public static final boolean COMMIT_GROUP_ENABLED_DEFAULT = false;
+
+  /** Time in milliseconds a group commit waits for other transactions to join the group. */
+  public static final String COMMIT_GROUP_WINDOW_MS = "commit.group.window-ms";
+
+  public static final long COMMIT_GROUP_WINDOW_MS_DEFAULT = 10;
+
+  /**
+   * Whether scans load the next child nodes of each node on the scan path asynchronously, while
+   * the entries under the current child are being consumed.
+   */
+  public static final String SCAN_PREFETCH_ENABLED = "scan.prefetch.enabled";
+
+  public static final boolean SCAN_PREFETCH_ENABLED_DEFAULT = true;
+
+  /** Maximum number of child nodes of each node on the scan path that are loaded ahead. */
+  public static final String SCAN_PREFETCH_NUM_NODES = "scan.prefetch.num-nodes";
+
+  public static final int SCAN_PREFETCH_NUM_NODES_DEFAULT = 4;
+
+  /** Maximum number of node files read in the background at the same time. */
+  public static final String READ_PARALLELISM = "read.parallelism";
+
+  public static final int READ_PARALLELISM_DEFAULT = 16;
+
+  /** Maximum number of subtrees compacted at the same time by {@link LakeHouse#compact()}. */
+  public static final String COMPACTION_PARALLELISM = "compaction.parallelism";
+
+  public static final int COMPACTION_PARALLELISM_DEFAULT = 16;
+
+  /**
+   * Whether to run a {@link CompactionScheduler} in the background, which compacts the subtrees of
+   * the root node with the fullest write buffers or the highest observed read amplification.
+   */
+  public static final String COMPACTION_SCHEDULER_ENABLED = "compaction.scheduler.enabled";
+
+  public static final boolean COMPACTION_SCHEDULER_ENABLED_DEFAULT = false;
+
+  /** Time in milliseconds between two runs of the compaction scheduler. */
+  public static final String COMPACTION_SCHEDULER_INTERVAL_MS = "compaction.scheduler.interval-ms";
+
+  public static final long COMPACTION_SCHEDULER_INTERVAL_MS_DEFAULT = 60_000;
+
+  /**
+   * Minimum bytes of buffered messages of a subtree, as a ratio of the write buffer size of the
+   * LakeHouse definition, for the subtree to be compacted.
+   */
+  public static final String COMPACTION_SCHEDULER_MIN_BUFFER_OCCUPANCY =
+      "compaction.scheduler.min-buffer-occupancy";
+
+  public static final double COMPACTION_SCHEDULER_MIN_BUFFER_OCCUPANCY_DEFAULT = 0.5;
+
+  /**
+   * Minimum average number of non-empty write buffers searched by the lookups of a subtree for the
+   * subtree to be compacted.
+   */
+  public static final String COMPACTION_SCHEDULER_MIN_READ_AMPLIFICATION =
+      "compaction.scheduler.min-read-amplification";
+
+  public static final double COMPACTION_SCHEDULER_MIN_READ_AMPLIFICATION_DEFAULT = 2.0;
+
+  /**
+   * Maximum bytes of buffered messages compacted per second by the compaction scheduler. The limit
+   * is charged with the bytes of the messages flushed by a compaction, not with the bytes of the
+   * node files it reads and rewrites, which also include the pointer rows and the entries of the
+   * rewritten nodes.
+   */
+  public static final String COMPACTION_SCHEDULER_MAX_BYTES_PER_SECOND =
+      "compaction.scheduler.max-bytes-per-second";
+
+  public static final long COMPACTION_SCHEDULER_MAX_BYTES_PER_SECOND_DEFAULT = 8L * 1024 * 1024;
+
+  /**
+   * Maximum number of root versions committed per minute by the compaction scheduler, which bounds
+   * its contention with user transactions on the creation of root node files.
+   */
+  public static final String COMPACTION_SCHEDULER_MAX_COMMITS_PER_MINUTE =
+      "compaction.scheduler.max-commits-per-minute";
+
+  public static final int COMPACTION_SCHEDULER_MAX_COMMITS_PER_MINUTE_DEFAULT = 2;
+
+  /**
+   * Whether to tune the write buffer budget of each namespace by its observed ratio of writes to
+   * reads within the write buffer size of the LakeHouse definition, see {@link
+   * io.trinitylake.tree.BufferBudget}. Read-heavy namespaces get their messages flushed to the
+   * leaves earlier, and write-heavy ones keep them buffered longer.
+   */
+  public static final String WRITE_BUFFER_ADAPTIVE_ENABLED = "write-buffer.adaptive.enabled";
+
+  public static final boolean WRITE_BUFFER_ADAPTIVE_ENABLED_DEFAULT = false;
+
+  /** Minimum write buffer budget of a namespace, as a ratio of the write buffer size. */
+  public static final String WRITE_BUFFER_ADAPTIVE_MIN_RATIO = "write-buffer.adaptive.min-ratio";
+
+  public static final double WRITE_BUFFER_ADAPTIVE_MIN_RATIO_DEFAULT = 0.1;
+
+  /** Minimum number of reads and writes of a namespace before its budget is tuned. */
+  public static final String WRITE_BUFFER_ADAPTIVE_MIN_OBSERVATIONS =
+      "write-buffer.adaptive.min-observations";
+
+  public static final long WRITE_BUFFER_ADAPTIVE_MIN_OBSERVATIONS_DEFAULT = 100;
+
+  /**
+   * Maximum number of namespaces whose reads and writes are counted, beyond which the least
+   * observed namespaces are evicted and keep the whole write buffer.
+   */
+  public static final String WRITE_BUFFER_ADAPTIVE_MAX_NAMESPACES =
+      "write-buffer.adaptive.max-namespaces";
+
+  public static final int WRITE_BUFFER_ADAPTIVE_MAX_NAMESPACES_DEFAULT = 4096;
+
+  /**
+   * Number of reads and writes of all namespaces after which the counts of each namespace are
+   * halved, so that the budgets follow changes of the workload.
+   */
+  public static final String WRITE_BUFFER_ADAPTIVE_DECAY_OBSERVATIONS =
+      "write-buffer.adaptive.decay-observations";
+
+  public static final long WRITE_BUFFER_ADAPTIVE_DECAY_OBSERVATIONS_DEFAULT = 1_000_000;
+
+  /**
+   * Size of the off-heap buffer sorting the objects added to a {@link BulkLoader}, whose sorted
+   * runs are spilled to local files when full.
+   */
+  public static final String BULK_LOAD_SORT_BUFFER_SIZE_BYTES = "bulk-load.sort-buffer-size-bytes";
+
+  public static final int BULK_LOAD_SORT_BUFFER_SIZE_BYTES_DEFAULT = 64 * 1024 * 1024;
+
+  /**
+   * Maximum number of sorted runs a {@link BulkLoader} merges at once, which bounds the number of
+   * open run files. More runs are merged into larger runs in multiple passes.
+   */
+  public static final String BULK_LOAD_SORT_MERGE_FAN_IN = "bulk-load.sort-merge-fan-in";
+
+  public static final int BULK_LOAD_SORT_MERGE_FAN_IN_DEFAULT = 64;
+
+  /** Local directory of the sorted runs spilled by a {@link BulkLoader}. */
+  public static final String BULK_LOAD_SPILL_DIR = "bulk-load.spill-dir";
+
+  public static final String BULK_LOAD_SPILL_DIR_DEFAULT = System.getProperty("java.io.tmpdir");
+
+  private LakeHouseProperties() {}
+}
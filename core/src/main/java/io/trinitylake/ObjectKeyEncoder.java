@@ -0,0 +1,193 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake;
+
+import io.trinitylake.util.ValidationUtil;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Encodes object ID keys into reusable byte arrays, and decodes the object names of keys as slices
+ * of the key buffer, see the key encoding specification.
+ *
+ * <p>Unlike {@link ObjectKeys}, the encoder writes the UTF-8 bytes of object names, the padding and
+ * the encoded schema ID directly into its scratch arrays, so encoding a key on a lookup path does
+ * not allocate. The array returned by {@link #namespaceKey(String)} or {@link #tableKey(String,
+ * String)} is overwritten by the next call of the same method, and an encoder must not be shared
+ * between threads.
+ */
+public class ObjectKeyEncoder {
+
+  private static final byte[] NAMESPACE_SCHEMA_ID = encodedSchemaId(ObjectKeys.NAMESPACE_SCHEMA_ID);
+  private static final byte[] TABLE_SCHEMA_ID = encodedSchemaId(ObjectKeys.TABLE_SCHEMA_ID);
+
+  private final int namespaceNameMaxSizeBytes;
+  private final int tableNameMaxSizeBytes;
+  private final byte[] namespaceKey;
+  private final byte[] tableKey;
+
+  public ObjectKeyEncoder(LakeHouseDef lakeHouseDef) {
+    this.namespaceNameMaxSizeBytes = Math.toIntExact(lakeHouseDef.namespaceNameMaxSizeBytes());
+    this.tableNameMaxSizeBytes = Math.toIntExact(lakeHouseDef.tableNameMaxSizeBytes());
+    this.namespaceKey = new byte[ObjectKeys.namespaceKeySizeBytes(lakeHouseDef)];
+    this.tableKey = new byte[ObjectKeys.tableKeySizeBytes(lakeHouseDef)];
+  }
+
+  /** Encodes a namespace key into the scratch array of this encoder and returns it. */
+  public byte[] namespaceKey(String namespaceName) {
+    writeNamespaceKey(namespaceName, namespaceNameMaxSizeBytes, namespaceKey, 0);
+    return namespaceKey;
+  }
+
+  /** Encodes a table key into the scratch array of this encoder and returns it. */
+  public byte[] tableKey(String namespaceName, String tableName) {
+    writeTableKey(
+        namespaceName, tableName, namespaceNameMaxSizeBytes, tableNameMaxSizeBytes, tableKey, 0);
+    return tableKey;
+  }
+
+  /** Returns the encoded namespace name of a namespace or table key, without the leading space. */
+  public ByteBuffer namespaceName(ByteBuffer key) {
+    return nameSlice(key, 1, namespaceNameMaxSizeBytes);
+  }
+
+  /** Returns the encoded table name of a table key, without the leading space. */
+  public ByteBuffer tableName(ByteBuffer key) {
+    ValidationUtil.checkArgument(key.remaining() == tableKey.length, "Not a table key");
+    return nameSlice(key, namespaceNameMaxSizeBytes + 2, tableNameMaxSizeBytes);
+  }
+
+  /** Writes a namespace key at the given offset of the target, returning the end offset. */
+  static int writeNamespaceKey(
+      String namespaceName, int namespaceNameMaxSizeBytes, byte[] target, int offset) {
+    int end = writeObjectName(namespaceName, namespaceNameMaxSizeBytes, target, offset);
+    return write(NAMESPACE_SCHEMA_ID, target, end);
+  }
+
+  /** Writes a table key at the given offset of the target, returning the end offset. */
+  static int writeTableKey(
+      String namespaceName,
+      String tableName,
+      int namespaceNameMaxSizeBytes,
+      int tableNameMaxSizeBytes,
+      byte[] target,
+      int offset) {
+    int end = writeObjectName(namespaceName, namespaceNameMaxSizeBytes, target, offset);
+    end = writeObjectName(tableName, tableNameMaxSizeBytes, target, end);
+    return write(TABLE_SCHEMA_ID, target, end);
+  }
+
+  /** Writes a space and the right-padded UTF-8 bytes of an object name. */
+  static int writeObjectName(String name, int maxSizeBytes, byte[] target, int offset) {
+    ValidationUtil.checkArgument(
+        name != null && !name.isEmpty(), "Object name must not be null or empty");
+    int sizeBytes = utf8Length(name);
+    ValidationUtil.checkArgument(
+        sizeBytes <= maxSizeBytes,
+        "Object name %s has %s bytes, exceeding the maximum size of %s bytes",
+        name,
+        sizeBytes,
+        maxSizeBytes);
+
+    int position = offset;
+    target[position++] = ' ';
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      ValidationUtil.checkArgument(
+          c > ' ' && c != 0x7F, "Object name %s contains an illegal character at %s", name, i);
+      if (c < 0x80) {
+        target[position++] = (byte) c;
+      } else if (c < 0x800) {
+        target[position++] = (byte) (0xC0 | (c >> 6));
+        target[position++] = (byte) (0x80 | (c & 0x3F));
+      } else if (isSurrogatePair(name, i)) {
+        int codePoint = Character.toCodePoint(c, name.charAt(++i));
+        target[position++] = (byte) (0xF0 | (codePoint >> 18));
+        target[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+        target[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+        target[position++] = (byte) (0x80 | (codePoint & 0x3F));
+      } else if (Character.isSurrogate(c)) {
+        // same replacement as String#getBytes for a malformed surrogate
+        target[position++] = '?';
+      } else {
+        target[position++] = (byte) (0xE0 | (c >> 12));
+        target[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        target[position++] = (byte) (0x80 | (c & 0x3F));
+      }
+    }
+
+    int end = offset + 1 + maxSizeBytes;
+    while (position < end) {
+      target[position++] = ' ';
+    }
+
+    return end;
+  }
+
+  private static int utf8Length(String name) {
+    int length = 0;
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if (c < 0x80) {
+        length += 1;
+      } else if (c < 0x800) {
+        length += 2;
+      } else if (isSurrogatePair(name, i)) {
+        length += 4;
+        i++;
+      } else if (Character.isSurrogate(c)) {
+        length += 1;
+      } else {
+        length += 3;
+      }
+    }
+
+    return length;
+  }
+
+  private static boolean isSurrogatePair(String name, int index) {
+    return Character.isHighSurrogate(name.charAt(index))
+        && index + 1 < name.length()
+        && Character.isLowSurrogate(name.charAt(index + 1));
+  }
+
+  private static int write(byte[] bytes, byte[] target, int offset) {
+    System.arraycopy(bytes, 0, target, offset, bytes.length);
+    return offset + bytes.length;
+  }
+
+  /**
+   * Slices an encoded object name out of a key up to its first padding space, sharing the content
+   * of the key buffer.
+   */
+  private static ByteBuffer nameSlice(ByteBuffer key, int offset, int maxSizeBytes) {
+    int start = key.position() + offset;
+    int length = 0;
+    while (length < maxSizeBytes && key.get(start + length) != ' ') {
+      length++;
+    }
+
+    ByteBuffer slice = key.duplicate();
+    slice.position(start);
+    slice.limit(start + length);
+    return slice.slice();
+  }
+
+  private static byte[] encodedSchemaId(int schemaId) {
+    return Base64.getEncoder()
+        .encodeToString(new byte[] {(byte) schemaId})
+        .getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake;
+
+import io.trinitylake.util.ValidationUtil;
+import java.nio.charset.StandardCharsets;
+
+/** Encodes object ID keys of a TrinityLake tree, see the key encoding specification. */
+public class ObjectKeys {
+
+  public static final String LAKEHOUSE = "lakehouse";
+
+  public static final int NAMESPACE_SCHEMA_ID = 1;
+  public static final int TABLE_SCHEMA_ID = 3;
+
+  private static final int ENCODED_SCHEMA_ID_SIZE = 4;
+
+  private ObjectKeys() {}
+
+  public static byte[] namespaceKey(String namespaceName, LakeHouseDef lakeHouseDef) {
+    byte[] key = new byte[namespaceKeySizeBytes(lakeHouseDef)];
+    ObjectKeyEncoder.writeNamespaceKey(
+        namespaceName, Math.toIntExact(lakeHouseDef.namespaceNameMaxSizeBytes()), key, 0);
+    return key;
+  }
+
+  public static byte[] tableKey(String namespaceName, String tableName, LakeHouseDef lakeHouseDef) {
+    byte[] key = new byte[tableKeySizeBytes(lakeHouseDef)];
+    ObjectKeyEncoder.writeTableKey(
+        namespaceName,
+        tableName,
+        Math.toIntExact(lakeHouseDef.namespaceNameMaxSizeBytes()),
+        Math.toIntExact(lakeHouseDef.tableNameMaxSizeBytes()),
+        key,
+        0);
+    return key;
+  }
+
+  public static int namespaceKeySizeBytes(LakeHouseDef lakeHouseDef) {
+    return Math.toIntExact(1 + lakeHouseDef.namespaceNameMaxSizeBytes() + ENCODED_SCHEMA_ID_SIZE);
+  }
+
+  public static int tableKeySizeBytes(LakeHouseDef lakeHouseDef) {
+    return Math.toIntExact(
+        2
+            + lakeHouseDef.namespaceNameMaxSizeBytes()
+            + lakeHouseDef.tableNameMaxSizeBytes()
+            + ENCODED_SCHEMA_ID_SIZE);
+  }
+
+  /** Common prefix of the keys of a namespace and all its tables. */
+  public static byte[] namespacePrefix(String namespaceName, LakeHouseDef lakeHouseDef) {
+    int maxSizeBytes = Math.toIntExact(lakeHouseDef.namespaceNameMaxSizeBytes());
+    byte[] prefix = new byte[1 + maxSizeBytes];
+    ObjectKeyEncoder.writeObjectName(namespaceName, maxSizeBytes, prefix, 0);
+    return prefix;
+  }
+
+  /** Common prefix of the keys of all the tables of a namespace. */
+  public static byte[] tablePrefix(String namespaceName, LakeHouseDef lakeHouseDef) {
+    int maxSizeBytes = Math.toIntExact(lakeHouseDef.namespaceNameMaxSizeBytes());
+    byte[] prefix = new byte[2 + maxSizeBytes];
+    ObjectKeyEncoder.writeObjectName(namespaceName, maxSizeBytes, prefix, 0);
+    prefix[1 + maxSizeBytes] = ' ';
+    return prefix;
+  }
+
+  public static boolean isNamespaceKey(byte[] key, LakeHouseDef lakeHouseDef) {
+    return key.length == namespaceKeySizeBytes(lakeHouseDef);
+  }
+
+  public static boolean isTableKey(byte[] key, LakeHouseDef lakeHouseDef) {
+    return key.length == tableKeySizeBytes(lakeHouseDef);
+  }
+
+  /** Decodes the namespace name of a namespace or table key. */
+  public static String namespaceName(byte[] key, LakeHouseDef lakeHouseDef) {
+    return decodeObjectName(key, 1, Math.toIntExact(lakeHouseDef.namespaceNameMaxSizeBytes()));
+  }
+
+  /** Decodes the table name of a table key. */
+  public static String tableName(byte[] key, LakeHouseDef lakeHouseDef) {
+    ValidationUtil.checkArgument(isTableKey(key, lakeHouseDef), "Not a table key");
+    int namespaceSize = Math.toIntExact(lakeHouseDef.namespaceNameMaxSizeBytes());
+    return decodeObjectName(
+        key, namespaceSize + 2, Math.toIntExact(lakeHouseDef.tableNameMaxSizeBytes()));
+  }
+
+  private static String decodeObjectName(byte[] key, int offset, int maxSizeBytes) {
+    // names cannot contain spaces, so the name ends at the first padding space
+    int length = 0;
+    while (length < maxSizeBytes && key[offset + length] != ' ') {
+      length++;
+    }
+
+    return new String(key, offset, length, StandardCharsets.UTF_8);
+  }
+}
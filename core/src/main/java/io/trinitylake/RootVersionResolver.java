@@ -0,0 +1,175 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake;
+
+import io.trinitylake.exception.StorageFileNotFoundException;
+import io.trinitylake.storage.Storage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resolves the latest version of the tree root node, see the read isolation section of the
+ * transaction specification.
+ *
+ * <p>Root node files always exist for a contiguous range of versions, so instead of probing
+ * versions after the latest hint one by one, the resolver gallops forward with exponentially
+ * increasing steps (hint+1, hint+2, hint+4, ...) until a version is not found, and then binary
+ * searches the gap between the last found and the first missing version. A hint that is stale by
+ * {@code d} versions takes {@code O(log d)} probes instead of {@code d}.
+ */
+public class RootVersionResolver {
+
+  private final Storage storage;
+  private final AtomicLong totalResolutions = new AtomicLong();
+  private final AtomicLong totalProbes = new AtomicLong();
+  private final AtomicLong maxProbes = new AtomicLong();
+
+  public RootVersionResolver(Storage storage) {
+    this.storage = storage;
+  }
+
+  public Resolution resolve() {
+    Prober prober = new Prober();
+    long hint = readLatestHint();
+    Gap gap;
+    if (prober.exists(hint)) {
+      gap = gallop(prober, hint);
+    } else if (hint > 0 && prober.exists(0)) {
+      // the hint is ahead of the latest version, search below it
+      gap = new Gap(0, hint);
+    } else {
+      throw new StorageFileNotFoundException(
+          "Root node file of version 0 does not exist in %s", storage.root());
+    }
+
+    long found = gap.found;
+    long missing = gap.missing;
+    while (missing - found > 1) {
+      long mid = found + (missing - found) / 2;
+      if (prober.exists(mid)) {
+        found = mid;
+      } else {
+        missing = mid;
+      }
+    }
+
+    totalResolutions.incrementAndGet();
+    totalProbes.addAndGet(prober.probes);
+    maxProbes.accumulateAndGet(prober.probes, Math::max);
+    return new Resolution(found, prober.probes);
+  }
+
+  /** Number of resolutions done by this resolver. */
+  public long totalResolutions() {
+    return totalResolutions.get();
+  }
+
+  /** Number of root node file existence probes done by all resolutions of this resolver. */
+  public long totalProbes() {
+    return totalProbes.get();
+  }
+
+  /** Largest number of root node file existence probes done by a single resolution. */
+  public long maxProbes() {
+    return maxProbes.get();
+  }
+
+  /**
+   * Gallops forward from the existing version {@code found}, and returns the gap between the last
+   * version found to exist and the first version found to be missing.
+   */
+  private static Gap gallop(Prober prober, long found) {
+    long step = 1;
+    long last = found;
+    while (last < FileLocations.maxRootNodeVersion()) {
+      long candidate = Math.min(found + step, FileLocations.maxRootNodeVersion());
+      if (!prober.exists(candidate)) {
+        return new Gap(last, candidate);
+      }
+
+      last = candidate;
+      step <<= 1;
+    }
+
+    return new Gap(last, last + 1);
+  }
+
+  private long readLatestHint() {
+    if (!storage.exists(FileLocations.LATEST_HINT_FILE)) {
+      return 0;
+    }
+
+    try (SeekableByteChannel channel = storage.openRead(FileLocations.LATEST_HINT_FILE)) {
+      ByteArrayOutputStream content = new ByteArrayOutputStream();
+      ByteBuffer buffer = ByteBuffer.allocate(64);
+      while (channel.read(buffer) >= 0) {
+        buffer.flip();
+        content.write(buffer.array(), 0, buffer.limit());
+        buffer.clear();
+      }
+
+      long hint = Long.parseLong(new String(content.toByteArray(), StandardCharsets.UTF_8).trim());
+      return hint >= 0 && hint <= FileLocations.maxRootNodeVersion() ? hint : 0;
+    } catch (StorageFileNotFoundException | NumberFormatException e) {
+      // the hint is written with best effort, fall back to search from the first version
+      return 0;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read " + FileLocations.LATEST_HINT_FILE, e);
+    }
+  }
+
+  /** The resolved latest version, and the number of probes it took to resolve it. */
+  public static class Resolution {
+    private final long version;
+    private final int probes;
+
+    private Resolution(long version, int probes) {
+      this.version = version;
+      this.probes = probes;
+    }
+
+    public long version() {
+      return version;
+    }
+
+    public int probes() {
+      return probes;
+    }
+  }
+
+  /** Versions around the latest version: {@code found} exists and {@code missing} does not. */
+  private static class Gap {
+    private final long found;
+    private final long missing;
+
+    Gap(long found, long missing) {
+      this.found = found;
+      this.missing = missing;
+    }
+  }
+
+  private class Prober {
+    private int probes = 0;
+
+    boolean exists(long version) {
+      probes++;
+      return storage.exists(FileLocations.rootNodeFilePath(version));
+    }
+  }
+}
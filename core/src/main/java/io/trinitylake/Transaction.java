@@ -0,0 +1,75 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake;
+
+import io.trinitylake.tree.BufferMessage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A write transaction against a LakeHouse, started at the version of the tree root that was the
+ * latest when the transaction began, see the read isolation section of the transaction
+ * specification.
+ *
+ * <p>Changes are recorded as write buffer messages, and are only visible to others after the
+ * transaction is committed through {@link LakeHouse#commit(Transaction)}.
+ */
+public class Transaction {
+
+  private final LakeHouseDef lakeHouseDef;
+  private final long beginVersion;
+  private final List<BufferMessage> messages = new ArrayList<>();
+
+  Transaction(LakeHouseDef lakeHouseDef, long beginVersion) {
+    this.lakeHouseDef = lakeHouseDef;
+    this.beginVersion = beginVersion;
+  }
+
+  /** Version of the tree root this transaction started from. */
+  public long beginVersion() {
+    return beginVersion;
+  }
+
+  /** Sets the location of the definition file of a namespace. */
+  public Transaction setNamespace(String namespaceName, String definitionLocation) {
+    messages.add(
+        BufferMessage.set(
+            ObjectKeys.namespaceKey(namespaceName, lakeHouseDef), definitionLocation));
+    return this;
+  }
+
+  public Transaction dropNamespace(String namespaceName) {
+    messages.add(BufferMessage.delete(ObjectKeys.namespaceKey(namespaceName, lakeHouseDef)));
+    return this;
+  }
+
+  /** Sets the location of the definition file of a table. */
+  public Transaction setTable(String namespaceName, String tableName, String definitionLocation) {
+    byte[] key = ObjectKeys.tableKey(namespaceName, tableName, lakeHouseDef);
+    messages.add(BufferMessage.set(key, definitionLocation));
+    return this;
+  }
+
+  public Transaction dropTable(String namespaceName, String tableName) {
+    messages.add(
+        BufferMessage.delete(ObjectKeys.tableKey(namespaceName, tableName, lakeHouseDef)));
+    return this;
+  }
+
+  /** Changes of this transaction, in the order they are made. */
+  public List<BufferMessage> messages() {
+    return Collections.unmodifiableList(messages);
+  }
+}
@@ -0,0 +1,224 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.storage;
+
+import io.trinitylake.exception.StorageFileAlreadyExistsException;
+import io.trinitylake.exception.StorageFileNotFoundException;
+import io.trinitylake.util.ValidationUtil;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * Storage on a local file system, or any file system mounted as a POSIX file system.
+ *
+ * <p>New files are written to a temporary file in the same directory, and published when the
+ * channel is closed with {@link Files#createLink}, which is a {@code link} call that fails if the
+ * file already exists, so only one writer wins when multiple writers create the same file, and
+ * readers never see a partially written file. Ranged reads use {@link FileChannel} positional
+ * reads, which can be done by multiple threads at the same time.
+ */
+public class LocalStorage implements Storage {
+
+  private Path rootPath;
+
+  /** Creates an uninitialized storage, see {@link #initialize(String, Map)}. */
+  public LocalStorage() {}
+
+  public LocalStorage(Path rootPath) {
+    this.rootPath = rootPath.toAbsolutePath();
+  }
+
+  /**
+   * Initializes the storage at a root location, which is either a local path or a {@code file:}
+   * URI.
+   */
+  @Override
+  public void initialize(String root, Map<String, String> properties) {
+    ValidationUtil.checkState(rootPath == null, "Storage is already initialized at %s", rootPath);
+    Path path = root.startsWith("file:") ? Paths.get(URI.create(root)) : Paths.get(root);
+    this.rootPath = path.toAbsolutePath();
+  }
+
+  @Override
+  public String root() {
+    String root = rootPath.toUri().toString();
+    return root.endsWith("/") ? root : root + "/";
+  }
+
+  @Override
+  public boolean exists(String path) {
+    return Files.exists(resolve(path));
+  }
+
+  @Override
+  public SeekableByteChannel openRead(String path) {
+    try {
+      return FileChannel.open(resolve(path), StandardOpenOption.READ);
+    } catch (NoSuchFileException e) {
+      throw new StorageFileNotFoundException(e, "File does not exist: %s", path);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to open file for read: " + path, e);
+    }
+  }
+
+  @Override
+  public long length(String path) {
+    try {
+      return Files.size(resolve(path));
+    } catch (NoSuchFileException e) {
+      throw new StorageFileNotFoundException(e, "File does not exist: %s", path);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to get length of file: " + path, e);
+    }
+  }
+
+  @Override
+  public Path localPath(String path) {
+    return resolve(path);
+  }
+
+  @Override
+  public void readFully(String path, long position, ByteBuffer buffer) {
+    try (FileChannel channel = FileChannel.open(resolve(path), StandardOpenOption.READ)) {
+      long offset = position;
+      while (buffer.hasRemaining()) {
+        int read = channel.read(buffer, offset);
+        if (read < 0) {
+          throw new EOFException("Reached the end of file " + path);
+        }
+
+        offset += read;
+      }
+    } catch (NoSuchFileException e) {
+      throw new StorageFileNotFoundException(e, "File does not exist: %s", path);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read file: " + path, e);
+    }
+  }
+
+  @Override
+  public WritableByteChannel create(String path) {
+    Path file = resolve(path);
+    if (Files.exists(file)) {
+      throw new StorageFileAlreadyExistsException("File already exists: %s", path);
+    }
+
+    try {
+      Files.createDirectories(file.getParent());
+      Path temp = Files.createTempFile(file.getParent(), "." + file.getFileName(), ".tmp");
+      return new CreateChannel(path, file, temp);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to create file: " + path, e);
+    }
+  }
+
+  @Override
+  public WritableByteChannel overwrite(String path) {
+    Path file = resolve(path);
+    try {
+      Files.createDirectories(file.getParent());
+      return FileChannel.open(
+          file,
+          StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING,
+          StandardOpenOption.WRITE);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to open file for write: " + path, e);
+    }
+  }
+
+  @Override
+  public void close() {}
+
+  private Path resolve(String path) {
+    ValidationUtil.checkState(rootPath != null, "Storage is not initialized");
+    return rootPath.resolve(path);
+  }
+
+  /**
+   * Writes a temporary file and links it to the created file on close. The temporary file is
+   * always deleted on close, and is not published if a write failed.
+   */
+  private static class CreateChannel implements WritableByteChannel {
+    private final String path;
+    private final Path file;
+    private final Path temp;
+    private final FileChannel channel;
+    private boolean failed = false;
+
+    CreateChannel(String path, Path file, Path temp) throws IOException {
+      this.path = path;
+      this.file = file;
+      this.temp = temp;
+      try {
+        this.channel = FileChannel.open(temp, StandardOpenOption.WRITE);
+      } catch (IOException e) {
+        Files.deleteIfExists(temp);
+        throw e;
+      }
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+      try {
+        return channel.write(src);
+      } catch (IOException | RuntimeException e) {
+        this.failed = true;
+        throw e;
+      }
+    }
+
+    @Override
+    public boolean isOpen() {
+      return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (!channel.isOpen()) {
+        return;
+      }
+
+      try {
+        if (!failed) {
+          // the content must be durable before the file is visible to other readers
+          channel.force(false);
+        }
+
+        channel.close();
+        if (!failed) {
+          Files.createLink(file, temp);
+        }
+      } catch (FileAlreadyExistsException e) {
+        throw new StorageFileAlreadyExistsException(e, "File already exists: %s", path);
+      } finally {
+        channel.close();
+        Files.deleteIfExists(temp);
+      }
+    }
+  }
+}
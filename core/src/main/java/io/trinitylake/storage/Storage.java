@@ -0,0 +1,128 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.storage;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Storage of a Trinity LakeHouse. All paths are relative to the root location of the LakeHouse.
+ *
+ * <p>A storage implementation can be loaded by class name with {@link Storages#load(String,
+ * String, Map)}, in which case it must have a public no-arg constructor, and is then set up by
+ * {@link #initialize(String, Map)}.
+ */
+public interface Storage extends Closeable {
+
+  /**
+   * Initializes a storage created with its no-arg constructor, which is called once before any
+   * other method.
+   *
+   * @param root the root location of the LakeHouse
+   * @param properties storage properties
+   */
+  void initialize(String root, Map<String, String> properties);
+
+  /** The root location of the LakeHouse, always ending with {@code /}. */
+  String root();
+
+  boolean exists(String path);
+
+  /**
+   * Opens a file for read.
+   *
+   * @throws io.trinitylake.exception.StorageFileNotFoundException if the file does not exist
+   */
+  SeekableByteChannel openRead(String path);
+
+  /**
+   * Returns the length of a file in bytes.
+   *
+   * @throws io.trinitylake.exception.StorageFileNotFoundException if the file does not exist
+   */
+  default long length(String path) {
+    try (SeekableByteChannel channel = openRead(path)) {
+      return channel.size();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to get length of file: " + path, e);
+    }
+  }
+
+  /**
+   * Reads a range of a file, starting at the given position, into the remaining bytes of the
+   * buffer. Ranged reads do not depend on any shared read position, so the same file can be read
+   * by multiple threads at the same time.
+   *
+   * @throws io.trinitylake.exception.StorageFileNotFoundException if the file does not exist
+   * @throws UncheckedIOException wrapping an {@link EOFException} if the file ends before the
+   *     buffer is filled
+   */
+  default void readFully(String path, long position, ByteBuffer buffer) {
+    try (SeekableByteChannel channel = openRead(path)) {
+      channel.position(position);
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer) < 0) {
+          throw new EOFException("Reached the end of file " + path);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read file: " + path, e);
+    }
+  }
+
+  /**
+   * Reads a range of a file asynchronously, see {@link #readFully(String, long, ByteBuffer)}, so
+   * that the reads of multiple files can be in flight at the same time. The default implementation
+   * runs the blocking read in the given executor. Storages backed by a client with non-blocking
+   * I/O, such as object store clients, should override it to issue the request without holding a
+   * thread.
+   *
+   * @param executor executor of the blocking parts of the read
+   * @return a future completed when the buffer is filled, or completed exceptionally with the
+   *     exceptions of {@link #readFully(String, long, ByteBuffer)}
+   */
+  default CompletableFuture<Void> readFullyAsync(
+      String path, long position, ByteBuffer buffer, Executor executor) {
+    return CompletableFuture.runAsync(() -> readFully(path, position, buffer), executor);
+  }
+
+  /**
+   * Returns the path of a file on a local or POSIX-mounted file system, such as NFS, if the storage
+   * is backed by one, which allows readers to memory map the file. Returns null otherwise.
+   */
+  default Path localPath(String path) {
+    return null;
+  }
+
+  /**
+   * Creates a new file for write, with mutual exclusion of file creation across all writers. The
+   * file is only visible to readers once the returned channel is closed, with all its content.
+   *
+   * @throws io.trinitylake.exception.StorageFileAlreadyExistsException if the file already exists,
+   *     either when the file is created or when the returned channel is closed
+   */
+  WritableByteChannel create(String path);
+
+  /** Creates a new file for write, or replaces the content of an existing file. */
+  WritableByteChannel overwrite(String path);
+}
@@ -0,0 +1,65 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.storage;
+
+import java.lang.reflect.Constructor;
+import java.util.Map;
+
+public class Storages {
+
+  /** Storage property of the {@link Storage} implementation class name. */
+  public static final String STORAGE_IMPL = "storage.impl";
+
+  public static final String STORAGE_IMPL_DEFAULT = LocalStorage.class.getName();
+
+  private Storages() {}
+
+  /**
+   * Loads the storage implementation of the {@link #STORAGE_IMPL} property, or a {@link
+   * LocalStorage} if the property is not set.
+   */
+  public static Storage load(String root, Map<String, String> properties) {
+    return load(properties.getOrDefault(STORAGE_IMPL, STORAGE_IMPL_DEFAULT), root, properties);
+  }
+
+  /**
+   * Loads a storage implementation by class name, using its public no-arg constructor, and
+   * initializes it with the root location and the storage properties.
+   *
+   * @throws IllegalArgumentException if the class cannot be found or instantiated
+   */
+  public static Storage load(String impl, String root, Map<String, String> properties) {
+    Object instance;
+    try {
+      ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+      Class<?> storageClass =
+          Class.forName(
+              impl, true, classLoader != null ? classLoader : Storages.class.getClassLoader());
+      Constructor<?> constructor = storageClass.getConstructor();
+      instance = constructor.newInstance();
+    } catch (ReflectiveOperationException | LinkageError e) {
+      throw new IllegalArgumentException(
+          String.format("Cannot initialize Storage implementation %s: %s", impl, e), e);
+    }
+
+    if (!(instance instanceof Storage)) {
+      throw new IllegalArgumentException(
+          String.format("Cannot initialize Storage, %s does not implement Storage", impl));
+    }
+
+    Storage storage = (Storage) instance;
+    storage.initialize(root, properties);
+    return storage;
+  }
+}
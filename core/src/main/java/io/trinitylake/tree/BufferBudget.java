@@ -0,0 +1,54 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.tree;
+
+import java.util.List;
+
+/**
+ * Decides how many bytes of messages of a key range a write buffer keeps before flushing them to
+ * the child node that covers the range, which tunes the epsilon of the B-epsilon tree per key
+ * range, see {@link BufferFlusher}.
+ *
+ * <p>A small budget flushes messages down to the leaves early, which keeps lookups close to the
+ * ones of a B-tree, while a large budget batches more messages per node file rewrite.
+ */
+@FunctionalInterface
+public interface BufferBudget {
+
+  /**
+   * Returns the maximum bytes of messages that a write buffer keeps for the child covering the
+   * given key. The whole write buffer is still bounded by the write buffer size of the tree.
+   *
+   * @param key key of a message in the key range of the child
+   */
+  long bufferSizeBytes(byte[] key);
+
+  /**
+   * Returns whether the messages that a write buffer keeps for a child exceed their budget. The
+   * key range of a child can span key ranges with different budgets, so by default the bytes of
+   * all the messages are checked against the smallest budget of their keys.
+   *
+   * @param messages messages of the write buffer in the key range of a child
+   */
+  default boolean exceeds(List<BufferMessage> messages) {
+    long bytes = 0;
+    long budget = Long.MAX_VALUE;
+    for (BufferMessage message : messages) {
+      bytes += message.sizeInBytes();
+      budget = Math.min(budget, bufferSizeBytes(message.key()));
+    }
+
+    return bytes > budget;
+  }
+}
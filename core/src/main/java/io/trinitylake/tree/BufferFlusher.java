@@ -0,0 +1,715 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.tree;
+
+import io.trinitylake.util.ByteArrayUtil;
+import io.trinitylake.util.ValidationUtil;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+/**
+ * Applies messages to a tree through the write buffers of its nodes, see the B-epsilon tree
+ * specification.
+ *
+ * <p>Messages are added to the write buffer of the root node. When the write buffer of an internal
+ * node overflows, all its messages are partitioned by child in a single pass, and the messages of
+ * the child with the most bytes of messages are flushed first, then the next heaviest child, until
+ * the remaining buffer fits again. Flushing to the heaviest child moves the most messages for each
+ * node file rewritten, which keeps the write amplification low. With a {@link BufferBudget}, the
+ * messages of a child are also flushed once they exceed the budget of the child, so that the
+ * epsilon can be tuned per key range. Leaf nodes have no write buffer, messages that reach a leaf
+ * are applied to its entries directly.
+ *
+ * <p>Nodes that overflow the {@code N} node pointer rows after a flush are split evenly, and the
+ * split propagates up to the root, which grows the tree by one level when it splits. Nodes are not
+ * merged when they become sparse after deletions.
+ *
+ * <p>The flusher does not write any node file, all rewritten nodes are returned as a {@link
+ * TreeUpdate}, so that they can be written in parallel before the root node.
+ */
+public class BufferFlusher {
+
+  private final NodeLoader loader;
+  private final int order;
+  private final long bufferSizeBytes;
+  private final Supplier<String> newNodeLocation;
+  private final BufferBudget budget;
+
+  /**
+   * @param loader loader of the existing nodes
+   * @param order order of the tree
+   * @param bufferSizeBytes maximum size of the write buffer of a node
+   * @param newNodeLocation generator of new non-root node file locations, which is called
+   *     concurrently by {@link #compact(TreeNode, ForkJoinPool)}
+   */
+  public BufferFlusher(
+      NodeLoader loader, int order, long bufferSizeBytes, Supplier<String> newNodeLocation) {
+    this(loader, order, bufferSizeBytes, newNodeLocation, null);
+  }
+
+  /**
+   * @param budget budget of the messages of each child in a write buffer, or null to only bound
+   *     the whole write buffer
+   */
+  public BufferFlusher(
+      NodeLoader loader,
+      int order,
+      long bufferSizeBytes,
+      Supplier<String> newNodeLocation,
+      BufferBudget budget) {
+    ValidationUtil.checkArgument(order >= 2, "Tree order must be at least 2, but got %s", order);
+    ValidationUtil.checkArgument(
+        bufferSizeBytes >= 0, "Write buffer size must not be negative: %s", bufferSizeBytes);
+    this.loader = loader;
+    this.order = order;
+    this.bufferSizeBytes = bufferSizeBytes;
+    this.newNodeLocation = newNodeLocation;
+    this.budget = budget;
+  }
+
+  /**
+   * Applies the messages, in order, to the tree of the given root node.
+   *
+   * @return the new root node and the new nodes it references
+   */
+  public TreeUpdate apply(TreeNode root, List<BufferMessage> messages) {
+    return applyToRoot(root.toMutable(), messages, Collections.emptyList());
+  }
+
+  /**
+   * Applies the messages of an update that failed to commit onto a newer root node.
+   *
+   * <p>Only the new root node is read. A child of the previous base root that the update already
+   * rewrote is reused as is, without reading or writing any node file, if the new root still has
+   * the same child and the same messages for its key range, which means the subtree is unchanged
+   * since the update was applied. The messages already applied to reused subtrees are dropped, and
+   * the other messages are added again to the write buffer of the new root. Messages are applied
+   * after the changes of the new root, so they win over concurrent changes to the same keys.
+   *
+   * @param previous the update that failed to commit
+   * @param newRoot the new root node to rebase onto
+   * @param messages the messages that produced the previous update
+   * @return the rebased update, whose new nodes do not include the reused subtrees
+   */
+  public TreeUpdate rebase(TreeUpdate previous, TreeNode newRoot, List<BufferMessage> messages) {
+    MutableTreeNode node = newRoot.toMutable();
+    if (node.isLeaf() || previous.rewrites().isEmpty()) {
+      return applyToRoot(node, messages, Collections.emptyList());
+    }
+
+    Map<String, SubtreeRewrite> rewrites = new HashMap<>();
+    for (SubtreeRewrite rewrite : previous.rewrites()) {
+      rewrites.put(rewrite.baseLocation(), rewrite);
+    }
+
+    Partition partition = new Partition(node);
+    SubtreeRewrite[] reusable = new SubtreeRewrite[node.children().size()];
+    List<SubtreeRewrite> reused = new ArrayList<>();
+    for (int child = 0; child < reusable.length; child++) {
+      SubtreeRewrite rewrite = rewrites.get(node.children().get(child));
+      if (rewrite != null && rewrite.baseMessages().equals(partition.messages.get(child))) {
+        reusable[child] = rewrite;
+        reused.add(rewrite);
+      }
+    }
+
+    MutableTreeNode rebased = new MutableTreeNode();
+    rebased.systemValues().putAll(node.systemValues());
+    for (int child = 0; child < reusable.length; child++) {
+      byte[] separator = child == 0 ? null : node.keys().get(child - 1);
+      if (reusable[child] != null) {
+        addSubtrees(
+            rebased, separator, reusable[child].separators(), reusable[child].locations());
+      } else {
+        addSubtrees(
+            rebased,
+            separator,
+            Collections.emptyList(),
+            Collections.singletonList(node.children().get(child)));
+      }
+    }
+
+    for (int i = 0; i < partition.messageChildren.length; i++) {
+      if (reusable[partition.messageChildren[i]] == null) {
+        rebased.addMessage(node.buffer().get(i));
+      }
+    }
+
+    List<BufferMessage> remaining = new ArrayList<>();
+    for (BufferMessage message : messages) {
+      if (reusable[childIndex(node.keys(), message.key())] == null) {
+        remaining.add(message);
+      }
+    }
+
+    return applyToRoot(rebased, remaining, reused);
+  }
+
+  private TreeUpdate applyToRoot(
+      MutableTreeNode node, List<BufferMessage> messages, List<SubtreeRewrite> reused) {
+    Map<String, String> systemValues = new LinkedHashMap<>(node.systemValues());
+    node.systemValues().clear();
+
+    Map<String, MutableTreeNode> newNodes = new LinkedHashMap<>();
+    List<SubtreeRewrite> rewrites = new ArrayList<>(reused);
+    Split split = push(node, messages, newNodes, new RootFlush(node.buffer().size(), rewrites));
+    if (split.nodes.size() > 1) {
+      // the children of the root move down by one level, so they cannot be reused anymore
+      rewrites.clear();
+    }
+
+    MutableTreeNode newRoot = growRoot(split, newNodes);
+    systemValues.forEach(newRoot::putSystemValue);
+    return new TreeUpdate(newRoot, newNodes, rewrites);
+  }
+
+  /**
+   * Flushes all the messages in the write buffers of the tree down to the leaves, see the
+   * compaction section of the B-epsilon tree specification, so that the new tree has no message
+   * left in any write buffer.
+   *
+   * <p>Every internal node is read, because the write buffer of a node can only be known by reading
+   * it, but leaves are only read when messages reach them. The children of a node are compacted
+   * in parallel as fork-join tasks of the pool, and subtrees without any message are kept as is,
+   * without writing any node file. Leaves that overflow are split, and splits propagate up to the
+   * root like in {@link #apply(TreeNode, List)}.
+   *
+   * @return the new root node and the new nodes it references, or null if the write buffers of
+   *     all the nodes are already empty
+   */
+  public TreeUpdate compact(TreeNode root, ForkJoinPool pool) {
+    return compact(root, null, pool);
+  }
+
+  /**
+   * Compacts only the subtrees under the given children of the root node, see {@link
+   * #compact(TreeNode, ForkJoinPool)}. The messages of the root write buffer that belong to the
+   * other children stay in the root write buffer.
+   *
+   * @param subtrees node file locations of the children of the root to compact, or null for all
+   * @return the new root node and the new nodes it references, or null if the write buffers of the
+   *     subtrees are already empty
+   */
+  public TreeUpdate compact(TreeNode root, Set<String> subtrees, ForkJoinPool pool) {
+    MutableTreeNode node = root.toMutable();
+    Map<String, String> systemValues = new LinkedHashMap<>(node.systemValues());
+    node.systemValues().clear();
+
+    // all leaves are at the same depth, so whether a child is a leaf is known before reading it
+    Map<String, MutableTreeNode> newNodes = new ConcurrentHashMap<>();
+    Split split =
+        pool.invoke(
+            new CompactTask(node, Collections.emptyList(), height(root), subtrees, newNodes));
+    if (split == null) {
+      return null;
+    }
+
+    MutableTreeNode newRoot = growRoot(split, newNodes);
+    systemValues.forEach(newRoot::putSystemValue);
+    return new TreeUpdate(newRoot, newNodes, Collections.emptyList());
+  }
+
+  /** Number of levels below the given node, which is 0 for a leaf. */
+  private int height(TreeNode root) {
+    int height = 0;
+    TreeNode node = root;
+    try {
+      while (!node.isLeaf()) {
+        TreeNode child = loader.load(node.child(0));
+        if (node != root) {
+          node.close();
+        }
+
+        node = child;
+        height++;
+      }
+
+      return height;
+    } finally {
+      if (node != root) {
+        node.close();
+      }
+    }
+  }
+
+  /** Grows the tree by one level for as long as the root is split. */
+  private MutableTreeNode growRoot(Split rootSplit, Map<String, MutableTreeNode> newNodes) {
+    Split split = rootSplit;
+    while (split.nodes.size() > 1) {
+      MutableTreeNode parent = new MutableTreeNode();
+      addChildren(parent, null, split, newNodes);
+      split = splitInternal(parent);
+    }
+
+    return split.nodes.get(0);
+  }
+
+  /**
+   * Pushes messages into a node.
+   *
+   * @param rootFlush records the rewritten children if the node is the root, otherwise null
+   */
+  private Split push(
+      MutableTreeNode node,
+      List<BufferMessage> messages,
+      Map<String, MutableTreeNode> newNodes,
+      RootFlush rootFlush) {
+    if (node.isLeaf()) {
+      applyToLeaf(node, messages);
+      return splitLeaf(node);
+    }
+
+    node.buffer().addAll(messages);
+    if (budget != null || sizeInBytes(node.buffer()) > bufferSizeBytes) {
+      flush(node, newNodes, rootFlush);
+    }
+
+    return splitInternal(node);
+  }
+
+  private void flush(
+      MutableTreeNode node, Map<String, MutableTreeNode> newNodes, RootFlush rootFlush) {
+    Partition partition = new Partition(node);
+    List<Integer> children = childrenToFlush(partition);
+    if (children.isEmpty()) {
+      return;
+    }
+
+    Split[] splits = new Split[node.children().size()];
+    for (int child : children) {
+      MutableTreeNode childNode;
+      try (TreeNode loaded = loader.load(node.children().get(child))) {
+        childNode = loaded.toMutable();
+      }
+
+      splits[child] = push(childNode, partition.messages.get(child), newNodes, null);
+    }
+
+    MutableTreeNode flushed = rebuild(node, splits, partition.messageChildren, newNodes);
+    if (rootFlush != null) {
+      rootFlush.record(node, splits, partition.messageChildren);
+    }
+
+    replaceContent(node, flushed);
+  }
+
+  /**
+   * Children to flush, from the heaviest: the ones needed for the remaining buffer to fit in the
+   * write buffer size, and the ones with more bytes of messages than their budget.
+   */
+  private List<Integer> childrenToFlush(Partition partition) {
+    List<Integer> children = new ArrayList<>();
+    long remaining = partition.totalWeight;
+    for (int child : partition.heaviestFirst()) {
+      long weight = partition.weights[child];
+      if (weight == 0) {
+        break;
+      }
+
+      if (remaining > bufferSizeBytes
+          || (budget != null && budget.exceeds(partition.messages.get(child)))) {
+        children.add(child);
+        remaining -= weight;
+      }
+    }
+
+    return children;
+  }
+
+  /**
+   * Builds the content of a node after flushing, replacing each flushed child by its split nodes
+   * and keeping only the messages of the children that are not flushed.
+   */
+  private MutableTreeNode rebuild(
+      MutableTreeNode node,
+      Split[] splits,
+      int[] messageChildren,
+      Map<String, MutableTreeNode> newNodes) {
+    MutableTreeNode flushed = new MutableTreeNode();
+    for (int child = 0; child < splits.length; child++) {
+      byte[] separator = child == 0 ? null : node.keys().get(child - 1);
+      if (splits[child] != null) {
+        addChildren(flushed, separator, splits[child], newNodes);
+      } else {
+        addSubtrees(
+            flushed,
+            separator,
+            Collections.emptyList(),
+            Collections.singletonList(node.children().get(child)));
+      }
+    }
+
+    for (int i = 0; i < messageChildren.length; i++) {
+      if (splits[messageChildren[i]] == null) {
+        flushed.addMessage(node.buffer().get(i));
+      }
+    }
+
+    return flushed;
+  }
+
+  /** Adds the split nodes as new children at new locations. */
+  private void addChildren(
+      MutableTreeNode parent,
+      byte[] separator,
+      Split split,
+      Map<String, MutableTreeNode> newNodes) {
+    for (MutableTreeNode node : split.nodes) {
+      String location = newNodeLocation.get();
+      newNodes.put(location, node);
+      split.locations.add(location);
+    }
+
+    addSubtrees(parent, separator, split.separators, split.locations);
+  }
+
+  /**
+   * Adds children to a parent node, the first one with the given separator, which is null for the
+   * first child of the parent, and the others with the separators between them.
+   */
+  private static void addSubtrees(
+      MutableTreeNode parent, byte[] separator, List<byte[]> separators, List<String> locations) {
+    for (int i = 0; i < locations.size(); i++) {
+      byte[] childSeparator = i == 0 ? separator : separators.get(i - 1);
+      if (childSeparator == null) {
+        parent.addChild(locations.get(i));
+      } else {
+        parent.addChild(childSeparator, locations.get(i));
+      }
+    }
+  }
+
+  private static void applyToLeaf(MutableTreeNode leaf, List<BufferMessage> messages) {
+    NavigableMap<byte[], String> entries = new TreeMap<>(ByteArrayUtil.comparator());
+    for (int i = 0; i < leaf.keys().size(); i++) {
+      entries.put(leaf.keys().get(i), leaf.values().get(i));
+    }
+
+    for (BufferMessage message : messages) {
+      if (message.isDelete()) {
+        entries.remove(message.key());
+      } else {
+        entries.put(message.key(), message.value());
+      }
+    }
+
+    leaf.keys().clear();
+    leaf.values().clear();
+    entries.forEach(leaf::addEntry);
+  }
+
+  private Split splitLeaf(MutableTreeNode leaf) {
+    int numKeys = leaf.keys().size();
+    int parts = ceilDiv(numKeys, order - 1);
+    if (parts <= 1) {
+      return new Split(Collections.emptyList(), Collections.singletonList(leaf));
+    }
+
+    List<byte[]> separators = new ArrayList<>(parts - 1);
+    List<MutableTreeNode> nodes = new ArrayList<>(parts);
+    for (int part = 0; part < parts; part++) {
+      int start = (int) ((long) numKeys * part / parts);
+      int end = (int) ((long) numKeys * (part + 1) / parts);
+      MutableTreeNode node = new MutableTreeNode();
+      for (int i = start; i < end; i++) {
+        node.addEntry(leaf.keys().get(i), leaf.values().get(i));
+      }
+
+      if (part > 0) {
+        separators.add(
+            ByteArrayUtil.shortestSeparator(leaf.keys().get(start - 1), leaf.keys().get(start)));
+      }
+
+      nodes.add(node);
+    }
+
+    return new Split(separators, nodes);
+  }
+
+  private Split splitInternal(MutableTreeNode node) {
+    int numChildren = node.children().size();
+    int parts = ceilDiv(numChildren, order);
+    if (parts <= 1) {
+      return new Split(Collections.emptyList(), Collections.singletonList(node));
+    }
+
+    List<byte[]> separators = new ArrayList<>(parts - 1);
+    List<MutableTreeNode> nodes = new ArrayList<>(parts);
+    for (int part = 0; part < parts; part++) {
+      int start = (int) ((long) numChildren * part / parts);
+      int end = (int) ((long) numChildren * (part + 1) / parts);
+      MutableTreeNode splitNode = new MutableTreeNode().addChild(node.children().get(start));
+      for (int i = start + 1; i < end; i++) {
+        splitNode.addChild(node.keys().get(i - 1), node.children().get(i));
+      }
+
+      if (part > 0) {
+        separators.add(node.keys().get(start - 1));
+      }
+
+      nodes.add(splitNode);
+    }
+
+    for (BufferMessage message : node.buffer()) {
+      nodes.get(childIndex(separators, message.key())).addMessage(message);
+    }
+
+    return new Split(separators, nodes);
+  }
+
+  /** Index of the child that covers the key, given the separators between the children. */
+  private static int childIndex(List<byte[]> separators, byte[] key) {
+    int low = 0;
+    int high = separators.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (ByteArrayUtil.compare(separators.get(mid), key) <= 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+
+    return low;
+  }
+
+  private static void replaceContent(MutableTreeNode node, MutableTreeNode content) {
+    node.keys().clear();
+    node.keys().addAll(content.keys());
+    node.children().clear();
+    node.children().addAll(content.children());
+    node.buffer().clear();
+    node.buffer().addAll(content.buffer());
+  }
+
+  private static long sizeInBytes(List<BufferMessage> messages) {
+    long size = 0;
+    for (BufferMessage message : messages) {
+      size += message.sizeInBytes();
+    }
+
+    return size;
+  }
+
+  private static int ceilDiv(int dividend, int divisor) {
+    return (dividend + divisor - 1) / divisor;
+  }
+
+  /**
+   * Compacts the subtree of a node with the messages pushed down from its parent, producing the
+   * split of the compacted node, or null if the subtree has no message and is kept as is.
+   */
+  private class CompactTask extends RecursiveTask<Split> {
+    private final MutableTreeNode node;
+    private final List<BufferMessage> messages;
+    private final int height;
+    private final Set<String> children;
+    private final Map<String, MutableTreeNode> newNodes;
+
+    /**
+     * @param children locations of the children to compact, or null for all
+     */
+    CompactTask(
+        MutableTreeNode node,
+        List<BufferMessage> messages,
+        int height,
+        Set<String> children,
+        Map<String, MutableTreeNode> newNodes) {
+      this.node = node;
+      this.messages = messages;
+      this.height = height;
+      this.children = children;
+      this.newNodes = newNodes;
+    }
+
+    @Override
+    protected Split compute() {
+      if (node.isLeaf()) {
+        if (messages.isEmpty()) {
+          return null;
+        }
+
+        applyToLeaf(node, messages);
+        return splitLeaf(node);
+      }
+
+      node.buffer().addAll(messages);
+      Partition partition = new Partition(node);
+      List<ChildCompactTask> tasks = new ArrayList<>(node.children().size());
+      for (int child = 0; child < node.children().size(); child++) {
+        String location = node.children().get(child);
+        if (children == null || children.contains(location)) {
+          tasks.add(
+              new ChildCompactTask(
+                  child, location, partition.messages.get(child), height - 1, newNodes));
+        }
+      }
+
+      // a child with messages is always rewritten, so the node only changes if a child does
+      invokeAll(tasks);
+      Split[] splits = new Split[node.children().size()];
+      boolean changed = false;
+      for (ChildCompactTask task : tasks) {
+        splits[task.index] = task.join();
+        changed |= splits[task.index] != null;
+      }
+
+      if (!changed) {
+        return null;
+      }
+
+      replaceContent(node, rebuild(node, splits, partition.messageChildren, newNodes));
+      return splitInternal(node);
+    }
+  }
+
+  /** Compacts a child subtree, reading the child node only if needed. */
+  private class ChildCompactTask extends RecursiveTask<Split> {
+    private final int index;
+    private final String location;
+    private final List<BufferMessage> messages;
+    private final int height;
+    private final Map<String, MutableTreeNode> newNodes;
+
+    ChildCompactTask(
+        int index,
+        String location,
+        List<BufferMessage> messages,
+        int height,
+        Map<String, MutableTreeNode> newNodes) {
+      this.index = index;
+      this.location = location;
+      this.messages = messages;
+      this.height = height;
+      this.newNodes = newNodes;
+    }
+
+    @Override
+    protected Split compute() {
+      if (height == 0 && messages.isEmpty()) {
+        return null;
+      }
+
+      MutableTreeNode child;
+      try (TreeNode loaded = loader.load(location)) {
+        child = loaded.toMutable();
+      }
+
+      return new CompactTask(child, messages, height, null, newNodes).compute();
+    }
+  }
+
+  /** A node after an update, split into one or more nodes with separators in between. */
+  private static class Split {
+    private final List<byte[]> separators;
+    private final List<MutableTreeNode> nodes;
+    private final List<String> locations = new ArrayList<>();
+
+    Split(List<byte[]> separators, List<MutableTreeNode> nodes) {
+      this.separators = separators;
+      this.nodes = nodes;
+    }
+  }
+
+  /** Messages in the write buffer of an internal node, partitioned by child in a single pass. */
+  private static class Partition {
+    private final List<List<BufferMessage>> messages;
+    private final long[] weights;
+    private final int[] messageChildren;
+    private final long totalWeight;
+
+    Partition(MutableTreeNode node) {
+      int numChildren = node.children().size();
+      List<BufferMessage> buffer = node.buffer();
+      this.messages = new ArrayList<>(numChildren);
+      for (int i = 0; i < numChildren; i++) {
+        messages.add(new ArrayList<>());
+      }
+
+      this.weights = new long[numChildren];
+      this.messageChildren = new int[buffer.size()];
+      long total = 0;
+      for (int i = 0; i < buffer.size(); i++) {
+        BufferMessage message = buffer.get(i);
+        int child = childIndex(node.keys(), message.key());
+        messageChildren[i] = child;
+        messages.get(child).add(message);
+        weights[child] += message.sizeInBytes();
+        total += message.sizeInBytes();
+      }
+
+      this.totalWeight = total;
+    }
+
+    /** Child indexes, from the child with the most bytes of messages to the one with the least. */
+    Integer[] heaviestFirst() {
+      Integer[] children = new Integer[weights.length];
+      for (int i = 0; i < children.length; i++) {
+        children[i] = i;
+      }
+
+      Arrays.sort(children, (left, right) -> Long.compare(weights[right], weights[left]));
+      return children;
+    }
+  }
+
+  /** Records the children of the root that are rewritten by a flush. */
+  private static class RootFlush {
+    private final int baseMessageCount;
+    private final List<SubtreeRewrite> rewrites;
+
+    /**
+     * @param baseMessageCount number of messages in the root write buffer before the update
+     * @param rewrites collector of the rewritten children
+     */
+    RootFlush(int baseMessageCount, List<SubtreeRewrite> rewrites) {
+      this.baseMessageCount = baseMessageCount;
+      this.rewrites = rewrites;
+    }
+
+    void record(MutableTreeNode root, Split[] splits, int[] messageChildren) {
+      List<List<BufferMessage>> baseMessages = new ArrayList<>(splits.length);
+      for (int child = 0; child < splits.length; child++) {
+        baseMessages.add(new ArrayList<>());
+      }
+
+      for (int i = 0; i < baseMessageCount; i++) {
+        baseMessages.get(messageChildren[i]).add(root.buffer().get(i));
+      }
+
+      for (int child = 0; child < splits.length; child++) {
+        if (splits[child] != null) {
+          rewrites.add(
+              new SubtreeRewrite(
+                  root.children().get(child),
+                  baseMessages.get(child),
+                  splits[child].separators,
+                  splits[child].locations));
+        }
+      }
+    }
+  }
+}
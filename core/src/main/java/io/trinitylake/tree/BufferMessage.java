@@ -0,0 +1,88 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.tree;
+
+import io.trinitylake.util.ValidationUtil;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A message in the write buffer of a tree node. A message either sets the value of a key to a new
+ * location, or deletes the key when the value is {@code null}.
+ */
+public class BufferMessage {
+
+  private final byte[] key;
+  private final String value;
+
+  private BufferMessage(byte[] key, String value) {
+    this.key = ValidationUtil.checkNotNull(key, "Message key must be provided");
+    this.value = value;
+  }
+
+  public static BufferMessage set(byte[] key, String value) {
+    ValidationUtil.checkNotNull(value, "Value must be provided for a set message");
+    return new BufferMessage(key, value);
+  }
+
+  public static BufferMessage delete(byte[] key) {
+    return new BufferMessage(key, null);
+  }
+
+  public byte[] key() {
+    return key;
+  }
+
+  public String value() {
+    return value;
+  }
+
+  public boolean isDelete() {
+    return value == null;
+  }
+
+  /** Estimated size of the message when stored as a row in a node file. */
+  public long sizeInBytes() {
+    return key.length + (value == null ? 0 : value.getBytes(StandardCharsets.UTF_8).length);
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+
+    if (!(other instanceof BufferMessage)) {
+      return false;
+    }
+
+    BufferMessage that = (BufferMessage) other;
+    return Arrays.equals(key, that.key) && Objects.equals(value, that.value);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * Arrays.hashCode(key) + Objects.hashCode(value);
+  }
+
+  @Override
+  public String toString() {
+    return "BufferMessage{key="
+        + new String(key, StandardCharsets.UTF_8)
+        + ", value="
+        + value
+        + "}";
+  }
+}
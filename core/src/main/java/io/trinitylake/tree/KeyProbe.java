@@ -0,0 +1,155 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.tree;
+
+import io.trinitylake.util.BloomFilter;
+import io.trinitylake.util.ValidationUtil;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import org.apache.arrow.memory.ArrowBuf;
+
+/**
+ * A search key prepared for comparison against keys stored in node files.
+ *
+ * <p>Keys are compared 8 bytes at a time as unsigned big-endian long words over the length of the
+ * shorter of the stored key and the probe, which is equivalent to comparing them byte by byte in
+ * unsigned lexicographical order, and then by the remaining bytes and the lengths. Object ID keys
+ * are padded to the maximum object name sizes of the LakeHouse, so leaf and write buffer keys
+ * usually have the length of the probe, while the suffix-truncated separator keys of internal nodes
+ * are shorter than the probe and are compared by their own length in words.
+ *
+ * <p>The Bloom filter hash of the key is computed once on first use, so that the same probe can be
+ * checked against the write buffer Bloom filters of all the nodes on the lookup path.
+ *
+ * <p>Nodes that strip a common key prefix from their stored keys compare them against a probe of
+ * the key suffix after the prefix, see {@link #suffix(int)}, so that the stored keys are never
+ * inflated back to full keys.
+ */
+public class KeyProbe {
+
+  private static final boolean NATIVE_LITTLE_ENDIAN =
+      ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+  private final byte[] key;
+  private final long[] words;
+  private long[] bloomHash = null;
+  private KeyProbe suffix = null;
+
+  public KeyProbe(byte[] key) {
+    this.key = ValidationUtil.checkNotNull(key, "Key must be provided");
+    this.words = new long[key.length / Long.BYTES];
+    for (int w = 0; w < words.length; w++) {
+      long word = 0;
+      for (int i = w * Long.BYTES; i < (w + 1) * Long.BYTES; i++) {
+        word = word << 8 | (key[i] & 0xFF);
+      }
+
+      words[w] = word;
+    }
+  }
+
+  public byte[] key() {
+    return key;
+  }
+
+  /** Hash of the key for {@link BloomFilter#mightContain(long[])}. */
+  public long[] bloomHash() {
+    if (bloomHash == null) {
+      this.bloomHash = BloomFilter.hash(key);
+    }
+
+    return bloomHash;
+  }
+
+  /** Whether the key starts with the given prefix. */
+  public boolean startsWith(byte[] prefix) {
+    if (prefix.length > key.length) {
+      return false;
+    }
+
+    for (int i = 0; i < prefix.length; i++) {
+      if (key[i] != prefix[i]) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Returns a probe of the key without its first bytes. The last suffix probe is kept, since the
+   * nodes on a lookup path usually share the same key prefix length.
+   */
+  public KeyProbe suffix(int offset) {
+    if (offset == 0) {
+      return this;
+    }
+
+    if (suffix == null || suffix.key.length != key.length - offset) {
+      this.suffix = new KeyProbe(Arrays.copyOfRange(key, offset, key.length));
+    }
+
+    return suffix;
+  }
+
+  /**
+   * Compares the key stored at the given offset of an Arrow buffer against this probe.
+   *
+   * @return negative, zero or positive if the stored key is smaller than, equal to or larger than
+   *     the probe key in unsigned lexicographical order
+   */
+  public int compareStored(ArrowBuf data, long start, int length) {
+    int numWords = Math.min(length, key.length) / Long.BYTES;
+    for (int w = 0; w < numWords; w++) {
+      long stored = bigEndianWord(data, start + (long) w * Long.BYTES);
+      if (stored != words[w]) {
+        return Long.compareUnsigned(stored, words[w]);
+      }
+    }
+
+    return compareBytes(data, start, length, numWords * Long.BYTES);
+  }
+
+  /** Checks if the key stored at the given offset of an Arrow buffer equals this probe. */
+  public boolean matchesStored(ArrowBuf data, long start, int length) {
+    if (length != key.length) {
+      return false;
+    }
+
+    for (int w = 0; w < words.length; w++) {
+      if (bigEndianWord(data, start + (long) w * Long.BYTES) != words[w]) {
+        return false;
+      }
+    }
+
+    return compareBytes(data, start, length, words.length * Long.BYTES) == 0;
+  }
+
+  private int compareBytes(ArrowBuf data, long start, int length, int from) {
+    int common = Math.min(length, key.length);
+    for (int i = from; i < common; i++) {
+      int cmp = (data.getByte(start + i) & 0xFF) - (key[i] & 0xFF);
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+
+    return length - key.length;
+  }
+
+  private static long bigEndianWord(ArrowBuf data, long index) {
+    long word = data.getLong(index);
+    return NATIVE_LITTLE_ENDIAN ? Long.reverseBytes(word) : word;
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.tree;
+
+import io.trinitylake.util.ByteArrayUtil;
+import io.trinitylake.util.ValidationUtil;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * On-heap representation of a tree node that is being built or copied-on-write, before it is
+ * written as a node file.
+ *
+ * <p>A leaf node holds sorted keys and their value locations. An internal node holds child node
+ * locations and the separator keys between them, where {@code keys().get(i)} is larger than all
+ * the keys under {@code children().get(i)} and smaller than or equal to all the keys under {@code
+ * children().get(i + 1)}. A separator is usually the shortest prefix of the first key of the right
+ * child that is larger than the last key of the left child, see {@link
+ * ByteArrayUtil#shortestSeparator(byte[], byte[])}, so it is not necessarily an object key.
+ */
+public class MutableTreeNode {
+
+  private final Map<String, String> systemValues = new LinkedHashMap<>();
+  private final List<byte[]> keys = new ArrayList<>();
+  private final List<String> values = new ArrayList<>();
+  private final List<String> children = new ArrayList<>();
+  private final List<BufferMessage> buffer = new ArrayList<>();
+
+  public boolean isLeaf() {
+    return children.isEmpty();
+  }
+
+  public MutableTreeNode putSystemValue(String key, String value) {
+    ValidationUtil.checkArgument(
+        !key.isEmpty() && key.charAt(0) != NodeFileSchema.OBJECT_KEY_FIRST_BYTE,
+        "System key must not start with a space: %s",
+        key);
+    systemValues.put(key, value);
+    return this;
+  }
+
+  public MutableTreeNode addEntry(byte[] key, String value) {
+    ValidationUtil.checkState(isLeaf(), "Cannot add an entry to an internal node");
+    keys.add(key);
+    values.add(value);
+    return this;
+  }
+
+  public MutableTreeNode addChild(String location) {
+    ValidationUtil.checkState(
+        keys.isEmpty() && children.isEmpty(), "The first child must be added without a key");
+    children.add(location);
+    return this;
+  }
+
+  public MutableTreeNode addChild(byte[] separator, String location) {
+    ValidationUtil.checkState(!children.isEmpty(), "The first child must be added without a key");
+    keys.add(separator);
+    children.add(location);
+    return this;
+  }
+
+  public MutableTreeNode addMessage(BufferMessage message) {
+    buffer.add(message);
+    return this;
+  }
+
+  public Map<String, String> systemValues() {
+    return systemValues;
+  }
+
+  public List<byte[]> keys() {
+    return keys;
+  }
+
+  public List<String> values() {
+    return values;
+  }
+
+  public List<String> children() {
+    return children;
+  }
+
+  public List<BufferMessage> buffer() {
+    return buffer;
+  }
+
+  /** Number of node pointer rows that are in use, out of the {@code N} rows of a node file. */
+  public int usedPointerRows() {
+    return keys.size() + 1;
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.tree;
+
+import io.trinitylake.util.SegmentedLruCache;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+
+/**
+ * A cache of decoded tree nodes, bounded by the total off-heap size of the cached nodes.
+ *
+ * <p>Node files are immutable once written, see the immutable copy-on-write section of the
+ * transaction specification, so a cached node never needs to be invalidated. The cache is keyed by
+ * the full node file location, which makes it safe to share a single cache across all the
+ * LakeHouses of a process through {@link #shared()}. Nodes cached here must be allocated with
+ * {@link #allocator()} so that they can outlive the LakeHouse that read them.
+ */
+public class NodeCache implements AutoCloseable {
+
+  /** JVM system property for the maximum size in bytes of the {@link #shared()} cache. */
+  public static final String SHARED_MAX_SIZE_BYTES = "trinitylake.node-cache.max-size-bytes";
+
+  public static final long SHARED_MAX_SIZE_BYTES_DEFAULT = 256L * 1024 * 1024;
+
+  private static final double PROTECTED_RATIO = 0.8;
+
+  private final BufferAllocator allocator;
+  private final SegmentedLruCache<String, TreeNode> cache;
+
+  public NodeCache(long maxSizeBytes) {
+    this.allocator = new RootAllocator();
+    this.cache =
+        new SegmentedLruCache<>(
+            maxSizeBytes,
+            PROTECTED_RATIO,
+            TreeNode::sizeInBytes,
+            TreeNode::retain,
+            TreeNode::close);
+  }
+
+  /** The cache shared by all LakeHouses in the process. */
+  public static NodeCache shared() {
+    return SharedHolder.SHARED;
+  }
+
+  public BufferAllocator allocator() {
+    return allocator;
+  }
+
+  /**
+   * Returns the cached node of the location, or loads and caches it if it is not cached. The
+   * caller owns a reference of the returned node and must close it after use.
+   */
+  public TreeNode get(String location, Supplier<TreeNode> loader) {
+    TreeNode cached = cache.get(location);
+    if (cached != null) {
+      return cached;
+    }
+
+    return cache.putIfAbsent(location, loader.get());
+  }
+
+  /**
+   * Returns a future of the cached node of the location, or loads the node asynchronously and
+   * caches it once loaded if it is not cached. The caller owns a reference of the node of the
+   * returned future and must close it after use.
+   */
+  public CompletableFuture<TreeNode> getAsync(
+      String location, Supplier<CompletableFuture<TreeNode>> loader) {
+    TreeNode cached = cache.get(location);
+    if (cached != null) {
+      return CompletableFuture.completedFuture(cached);
+    }
+
+    return loader.get().thenApply(node -> cache.putIfAbsent(location, node));
+  }
+
+  public long sizeInBytes() {
+    return cache.weight();
+  }
+
+  public long maxSizeInBytes() {
+    return cache.maxWeight();
+  }
+
+  public int numNodes() {
+    return cache.size();
+  }
+
+  public long hitCount() {
+    return cache.hitCount();
+  }
+
+  public long missCount() {
+    return cache.missCount();
+  }
+
+  public long evictionCount() {
+    return cache.evictionCount();
+  }
+
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  @Override
+  public void close() {
+    cache.invalidateAll();
+    allocator.close();
+  }
+
+  private static class SharedHolder {
+    private static final NodeCache SHARED =
+        new NodeCache(Long.getLong(SHARED_MAX_SIZE_BYTES, SHARED_MAX_SIZE_BYTES_DEFAULT));
+  }
+}
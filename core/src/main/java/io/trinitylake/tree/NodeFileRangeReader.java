@@ -0,0 +1,263 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.tree;
+
+import io.trinitylake.storage.Storage;
+import io.trinitylake.util.ValidationUtil;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.arrow.flatbuf.Buffer;
+import org.apache.arrow.flatbuf.FieldNode;
+import org.apache.arrow.flatbuf.RecordBatch;
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.VectorLoader;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.message.ArrowBlock;
+import org.apache.arrow.vector.ipc.message.ArrowFieldNode;
+import org.apache.arrow.vector.ipc.message.ArrowFooter;
+import org.apache.arrow.vector.ipc.message.ArrowRecordBatch;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+/**
+ * Reads a node file into a {@link TreeNode} through ranged reads of a {@link Storage}, fetching
+ * only the parts of the file needed for lookups.
+ *
+ * <p>The reader first fetches the tail of the file with the Arrow IPC footer, then the record
+ * batches of the system and node pointer rows together with the message metadata of the write
+ * buffer record batch, and then only the key column of the write buffer. The value columns of
+ * the write buffer are fetched when they are first accessed, which for a lookup only happens when
+ * the key is found in the write buffer. Files not larger than the tail read size are read whole.
+ */
+public class NodeFileRangeReader {
+
+  public static final int TAIL_READ_SIZE_DEFAULT = 16 * 1024;
+
+  private static final Schema KEY_SCHEMA =
+      new Schema(Collections.singletonList(NodeFileSchema.SCHEMA.findField(NodeFileSchema.KEY)));
+  private static final Schema VALUE_SCHEMA =
+      new Schema(
+          Arrays.asList(
+              NodeFileSchema.SCHEMA.findField(NodeFileSchema.PVALUE),
+              NodeFileSchema.SCHEMA.findField(NodeFileSchema.PNODE)));
+
+  // validity, offsets and data buffers of a varchar column
+  private static final int BUFFERS_PER_COLUMN = 3;
+
+  private final BufferAllocator allocator;
+  private final int order;
+  private final int tailReadSize;
+  private final NodeFileReader fileReader;
+
+  public NodeFileRangeReader(BufferAllocator allocator, int order) {
+    this(allocator, order, TAIL_READ_SIZE_DEFAULT);
+  }
+
+  /**
+   * @param tailReadSize number of bytes read from the end of a file in the first request, which
+   *     should be large enough to hold the footer
+   */
+  public NodeFileRangeReader(BufferAllocator allocator, int order, int tailReadSize) {
+    ValidationUtil.checkArgument(
+        tailReadSize > NodeFileReader.FOOTER_TAIL_SIZE,
+        "Tail read size must be larger than %s, but got %s",
+        NodeFileReader.FOOTER_TAIL_SIZE,
+        tailReadSize);
+    this.allocator = allocator;
+    this.order = order;
+    this.tailReadSize = tailReadSize;
+    this.fileReader = new NodeFileReader(allocator, order);
+  }
+
+  public TreeNode read(Storage storage, String path) {
+    long size = storage.length(path);
+    if (size <= tailReadSize) {
+      return fileReader.decode(readRange(storage, path, 0, size), size);
+    }
+
+    ArrowFooter footer = readFooter(storage, path, size);
+    List<ArrowBlock> blocks = footer.getRecordBatches();
+    ValidationUtil.checkArgument(!blocks.isEmpty(), "Invalid node file: no record batch");
+    for (int i = 1; i < blocks.size(); i++) {
+      ValidationUtil.checkArgument(
+          blocks.get(i).getOffset() > blocks.get(i - 1).getOffset(),
+          "Invalid node file: record batches are not in file order");
+    }
+
+    if (blocks.size() == 1) {
+      // a node without write buffer, all of it is needed
+      return readSingleBatch(storage, path, footer.getSchema(), blocks.get(0), size);
+    }
+
+    return readWithLazyBuffer(storage, path, footer.getSchema(), blocks, size);
+  }
+
+  private ArrowFooter readFooter(Storage storage, String path, long size) {
+    long tailStart = size - tailReadSize;
+    try (ArrowBuf tail = readRange(storage, path, tailStart, tailReadSize)) {
+      int footerLength = tail.getInt(tailReadSize - NodeFileReader.FOOTER_TAIL_SIZE);
+      long footerStart = size - NodeFileReader.FOOTER_TAIL_SIZE - footerLength;
+      if (footerLength <= 0 || footerStart < 0 || footerStart >= tailStart) {
+        return NodeFileReader.readFooter(tail, tailStart, size);
+      }
+
+      // the footer does not fit in the tail read size, read the exact footer range
+      try (ArrowBuf footer = readRange(storage, path, footerStart, size - footerStart)) {
+        return NodeFileReader.readFooter(footer, footerStart, size);
+      }
+    }
+  }
+
+  private TreeNode readSingleBatch(
+      Storage storage, String path, Schema schema, ArrowBlock block, long size) {
+    long start = block.getOffset();
+    long length = block.getMetadataLength() + block.getBodyLength();
+    List<VectorSchemaRoot> batches = new ArrayList<>();
+    try (ArrowBuf range = readRange(storage, path, start, length)) {
+      VectorSchemaRoot batch = VectorSchemaRoot.create(schema, allocator);
+      batches.add(batch);
+      NodeFileReader.loadRecordBatch(range, start, block, batch);
+      return new TreeNode(batches, order, size, null);
+    } catch (RuntimeException e) {
+      batches.forEach(VectorSchemaRoot::close);
+      throw e;
+    }
+  }
+
+  private TreeNode readWithLazyBuffer(
+      Storage storage, String path, Schema schema, List<ArrowBlock> blocks, long size) {
+    ArrowBlock last = blocks.get(blocks.size() - 1);
+    long start = blocks.get(0).getOffset();
+    long lastBodyStart = last.getOffset() + last.getMetadataLength();
+    List<VectorSchemaRoot> batches = new ArrayList<>();
+    try {
+      BatchLayout lastBatch;
+      try (ArrowBuf range = readRange(storage, path, start, lastBodyStart - start)) {
+        for (int i = 0; i < blocks.size() - 1; i++) {
+          VectorSchemaRoot batch = VectorSchemaRoot.create(schema, allocator);
+          batches.add(batch);
+          NodeFileReader.loadRecordBatch(range, start, blocks.get(i), batch);
+        }
+
+        // the message is backed by the range buffer, so its layout is copied before release
+        lastBatch = new BatchLayout(NodeFileReader.readRecordBatch(range, start, last));
+      }
+
+      VectorSchemaRoot keys = VectorSchemaRoot.create(KEY_SCHEMA, allocator);
+      batches.add(keys);
+      loadColumns(storage, path, lastBodyStart, lastBatch, 0, keys);
+      return new TreeNode(
+          batches,
+          order,
+          size,
+          () -> {
+            VectorSchemaRoot values = VectorSchemaRoot.create(VALUE_SCHEMA, allocator);
+            try {
+              loadColumns(storage, path, lastBodyStart, lastBatch, 1, values);
+              return values;
+            } catch (RuntimeException e) {
+              values.close();
+              throw e;
+            }
+          });
+    } catch (RuntimeException e) {
+      batches.forEach(VectorSchemaRoot::close);
+      throw e;
+    }
+  }
+
+  /**
+   * Loads the columns of a record batch starting at the given column, which are stored
+   * contiguously in the record batch body, with a single ranged read.
+   */
+  private void loadColumns(
+      Storage storage,
+      String path,
+      long bodyStart,
+      BatchLayout layout,
+      int firstColumn,
+      VectorSchemaRoot target) {
+    int numColumns = target.getSchema().getFields().size();
+    int firstBuffer = firstColumn * BUFFERS_PER_COLUMN;
+    int endBuffer = (firstColumn + numColumns) * BUFFERS_PER_COLUMN;
+    long rangeStart = layout.bufferOffsets[firstBuffer];
+    long rangeEnd = layout.bufferOffsets[endBuffer - 1] + layout.bufferLengths[endBuffer - 1];
+
+    List<ArrowFieldNode> nodes = new ArrayList<>(numColumns);
+    for (int column = firstColumn; column < firstColumn + numColumns; column++) {
+      nodes.add(new ArrowFieldNode(layout.nodeLengths[column], layout.nodeNullCounts[column]));
+    }
+
+    try (ArrowBuf range = readRange(storage, path, bodyStart + rangeStart, rangeEnd - rangeStart)) {
+      List<ArrowBuf> buffers = new ArrayList<>(endBuffer - firstBuffer);
+      for (int i = firstBuffer; i < endBuffer; i++) {
+        buffers.add(range.slice(layout.bufferOffsets[i] - rangeStart, layout.bufferLengths[i]));
+      }
+
+      // the loaded vectors take their own references to the buffers
+      try (ArrowRecordBatch batch = new ArrowRecordBatch(layout.length, nodes, buffers)) {
+        new VectorLoader(target).load(batch);
+      }
+    }
+  }
+
+  private ArrowBuf readRange(Storage storage, String path, long position, long length) {
+    ValidationUtil.checkArgument(
+        length <= Integer.MAX_VALUE, "Cannot read more than 2GB at once: %s bytes", length);
+    ArrowBuf buffer = allocator.buffer(length);
+    try {
+      storage.readFully(path, position, buffer.nioBuffer(0, (int) length));
+      return buffer;
+    } catch (RuntimeException e) {
+      buffer.close();
+      throw e;
+    }
+  }
+
+  /** Field nodes and body buffer positions of a record batch message. */
+  private static class BatchLayout {
+    private final int length;
+    private final long[] nodeLengths;
+    private final long[] nodeNullCounts;
+    private final long[] bufferOffsets;
+    private final long[] bufferLengths;
+
+    BatchLayout(RecordBatch recordBatch) {
+      int numColumns = NodeFileSchema.SCHEMA.getFields().size();
+      ValidationUtil.checkArgument(
+          recordBatch.compression() == null
+              && recordBatch.nodesLength() == numColumns
+              && recordBatch.buffersLength() == numColumns * BUFFERS_PER_COLUMN,
+          "Invalid node file: unexpected layout of write buffer record batch");
+      this.length = (int) recordBatch.length();
+      this.nodeLengths = new long[numColumns];
+      this.nodeNullCounts = new long[numColumns];
+      for (int i = 0; i < numColumns; i++) {
+        FieldNode node = recordBatch.nodes(i);
+        nodeLengths[i] = node.length();
+        nodeNullCounts[i] = node.nullCount();
+      }
+
+      this.bufferOffsets = new long[recordBatch.buffersLength()];
+      this.bufferLengths = new long[recordBatch.buffersLength()];
+      for (int i = 0; i < bufferOffsets.length; i++) {
+        Buffer buffer = recordBatch.buffers(i);
+        bufferOffsets[i] = buffer.offset();
+        bufferLengths[i] = buffer.length();
+      }
+    }
+  }
+}
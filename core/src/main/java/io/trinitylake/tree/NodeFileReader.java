@@ -0,0 +1,274 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.tree;
+
+import io.trinitylake.storage.Storage;
+import io.trinitylake.util.ValidationUtil;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import org.apache.arrow.flatbuf.Footer;
+import org.apache.arrow.flatbuf.Message;
+import org.apache.arrow.flatbuf.MessageHeader;
+import org.apache.arrow.flatbuf.RecordBatch;
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.ForeignAllocation;
+import org.apache.arrow.memory.util.MemoryUtil;
+import org.apache.arrow.vector.VectorLoader;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.message.ArrowBlock;
+import org.apache.arrow.vector.ipc.message.ArrowFooter;
+import org.apache.arrow.vector.ipc.message.ArrowRecordBatch;
+import org.apache.arrow.vector.ipc.message.MessageSerializer;
+
+/**
+ * Reads a node file into a {@link TreeNode}.
+ *
+ * <p>The whole file is read into a single off-heap Arrow buffer, and the Arrow IPC footer and
+ * record batch messages are decoded in place. The vectors of each record batch are slices of that
+ * buffer, so no row data is copied or materialized on the heap during decoding.
+ *
+ * <p>A node file on a local or POSIX-mounted file system can instead be memory mapped through
+ * {@link #map(FileChannel)}, in which case the vectors point directly into the mapping and pages
+ * are only loaded by the operating system when they are accessed.
+ */
+public class NodeFileReader {
+
+  private static final byte[] MAGIC = "ARROW1".getBytes(StandardCharsets.US_ASCII);
+  /** Size of the footer length and the magic bytes at the end of a node file. */
+  static final int FOOTER_TAIL_SIZE = Integer.BYTES + MAGIC.length;
+  private static final int CONTINUATION_MARKER = 0xFFFFFFFF;
+
+  private final BufferAllocator allocator;
+  private final int order;
+
+  public NodeFileReader(BufferAllocator allocator, int order) {
+    this.allocator = allocator;
+    this.order = order;
+  }
+
+  public TreeNode read(SeekableByteChannel channel) {
+    ArrowBuf file;
+    long size;
+    try {
+      size = channel.size();
+      file = allocator.buffer(size);
+      try {
+        readFully(channel, file, size);
+      } catch (IOException | RuntimeException e) {
+        file.close();
+        throw e;
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read node file", e);
+    }
+
+    return decode(file, size);
+  }
+
+  /**
+   * Reads a whole node file with an asynchronous read of the storage, see {@link
+   * Storage#readFullyAsync}, and decodes it once the read completes.
+   *
+   * @param executor executor of the blocking parts of the read
+   */
+  public CompletableFuture<TreeNode> readAsync(Storage storage, String path, Executor executor) {
+    return CompletableFuture.supplyAsync(() -> storage.length(path), executor)
+        .thenCompose(
+            size -> {
+              ValidationUtil.checkArgument(
+                  size <= Integer.MAX_VALUE, "Cannot read node file larger than 2GB: %s", size);
+              ArrowBuf file = allocator.buffer(size);
+              return storage
+                  .readFullyAsync(path, 0, file.nioBuffer(0, size.intValue()), executor)
+                  .handle(
+                      (ignored, error) -> {
+                        if (error != null) {
+                          file.close();
+                          throw error instanceof CompletionException
+                              ? (CompletionException) error
+                              : new CompletionException(error);
+                        }
+
+                        return decode(file, size);
+                      });
+            });
+  }
+
+  /**
+   * Memory maps the whole node file and decodes it in place. The mapping is wrapped as a foreign
+   * allocation of the allocator, so it is accounted like any other node buffer, and is unmapped by
+   * the garbage collector once the returned node and all the nodes sharing it are closed. The
+   * channel can be closed right after this method returns.
+   */
+  public TreeNode map(FileChannel channel) {
+    MappedByteBuffer mapped;
+    long size;
+    try {
+      size = channel.size();
+      ValidationUtil.checkArgument(
+          size <= Integer.MAX_VALUE, "Cannot map node file larger than 2GB: %s bytes", size);
+      mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to map node file", e);
+    }
+
+    return decode(allocator.wrapForeignAllocation(new MappedAllocation(mapped)), size);
+  }
+
+  /**
+   * Decodes a node file held in the first bytes of the given buffer. The returned node takes
+   * ownership of the buffer and releases it when closed.
+   *
+   * @param size size of the node file, which can be smaller than the buffer capacity since the
+   *     allocator can round it up
+   */
+  public TreeNode decode(ArrowBuf file, long size) {
+    List<VectorSchemaRoot> batches = new ArrayList<>();
+    try {
+      ArrowFooter footer = readFooter(file, 0, size);
+      for (ArrowBlock block : footer.getRecordBatches()) {
+        VectorSchemaRoot batch = VectorSchemaRoot.create(footer.getSchema(), allocator);
+        batches.add(batch);
+        loadRecordBatch(file, 0, block, batch);
+      }
+
+      return new TreeNode(file, batches, order, size);
+    } catch (RuntimeException e) {
+      batches.forEach(VectorSchemaRoot::close);
+      file.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Reads the footer of a node file of the given size from a buffer that holds the file content
+   * starting at the given file position, which must include the whole footer.
+   */
+  static ArrowFooter readFooter(ArrowBuf buffer, long bufferStart, long size) {
+    long tail = size - bufferStart;
+    ValidationUtil.checkArgument(
+        size > MAGIC.length * 2L + FOOTER_TAIL_SIZE && hasMagic(buffer, tail - MAGIC.length),
+        "Invalid node file: not an Arrow IPC file");
+
+    int footerLength = buffer.getInt(tail - FOOTER_TAIL_SIZE);
+    long footerStart = size - FOOTER_TAIL_SIZE - footerLength;
+    ValidationUtil.checkArgument(
+        footerLength > 0 && footerStart >= MAGIC.length,
+        "Invalid node file: footer length %s",
+        footerLength);
+    ValidationUtil.checkArgument(
+        footerStart >= bufferStart,
+        "Footer starts at %s, before the buffer start %s",
+        footerStart,
+        bufferStart);
+    ByteBuffer footerBuffer = buffer.nioBuffer(footerStart - bufferStart, footerLength);
+    return new ArrowFooter(Footer.getRootAsFooter(footerBuffer.order(ByteOrder.LITTLE_ENDIAN)));
+  }
+
+  /**
+   * Reads the record batch message of a block from a buffer that holds the file content starting
+   * at the given file position, which must include the whole message metadata of the block.
+   */
+  static RecordBatch readRecordBatch(ArrowBuf buffer, long bufferStart, ArrowBlock block) {
+    long offset = block.getOffset() - bufferStart;
+    long messageStart = offset + Integer.BYTES;
+    int messageLength = buffer.getInt(offset);
+    if (messageLength == CONTINUATION_MARKER) {
+      messageLength = buffer.getInt(messageStart);
+      messageStart += Integer.BYTES;
+    }
+
+    Message message =
+        Message.getRootAsMessage(
+            buffer.nioBuffer(messageStart, messageLength).order(ByteOrder.LITTLE_ENDIAN));
+    ValidationUtil.checkArgument(
+        message.headerType() == MessageHeader.RecordBatch,
+        "Invalid node file: expect record batch message at offset %s",
+        block.getOffset());
+    return (RecordBatch) message.header(new RecordBatch());
+  }
+
+  /**
+   * Loads the record batch of a block from a buffer that holds the file content starting at the
+   * given file position, which must include the whole block.
+   */
+  static void loadRecordBatch(
+      ArrowBuf buffer, long bufferStart, ArrowBlock block, VectorSchemaRoot batch) {
+    RecordBatch recordBatch = readRecordBatch(buffer, bufferStart, block);
+    ArrowBuf body =
+        buffer.slice(
+            block.getOffset() - bufferStart + block.getMetadataLength(), block.getBodyLength());
+    try (ArrowRecordBatch arrowBatch =
+        MessageSerializer.deserializeRecordBatch(recordBatch, body)) {
+      new VectorLoader(batch).load(arrowBatch);
+    } catch (IOException e) {
+      throw new UncheckedIOException(
+          "Failed to decode record batch at offset " + block.getOffset(), e);
+    }
+  }
+
+  private static boolean hasMagic(ArrowBuf file, long offset) {
+    for (int i = 0; i < MAGIC.length; i++) {
+      if (file.getByte(offset + i) != MAGIC[i]) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  private static void readFully(SeekableByteChannel channel, ArrowBuf file, long size)
+      throws IOException {
+    long position = 0;
+    while (position < size) {
+      int length = (int) Math.min(Integer.MAX_VALUE, size - position);
+      ByteBuffer target = file.nioBuffer(position, length);
+      int read = channel.read(target);
+      if (read < 0) {
+        throw new EOFException("Unexpected end of node file at position " + position);
+      }
+
+      position += read;
+    }
+  }
+
+  private static class MappedAllocation extends ForeignAllocation {
+    // Keeps the mapping reachable until Arrow releases the buffer, after which it is unmapped when
+    // collected, since there is no supported way to unmap a buffer explicitly on Java 8.
+    private MappedByteBuffer mapped;
+
+    MappedAllocation(MappedByteBuffer mapped) {
+      super(mapped.capacity(), MemoryUtil.getByteBufferAddress(mapped));
+      this.mapped = mapped;
+    }
+
+    @Override
+    protected void release0() {
+      mapped = null;
+    }
+  }
+}
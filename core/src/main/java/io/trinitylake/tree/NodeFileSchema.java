@@ -0,0 +1,60 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.tree;
+
+import java.util.Arrays;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+/** Arrow schema of a TrinityLake tree node file, see the storage specification. */
+public class NodeFileSchema {
+
+  public static final String KEY = "key";
+  public static final String PVALUE = "pvalue";
+  public static final String PNODE = "pnode";
+
+  /** The first byte of all user-facing object keys, system-internal keys never start with it. */
+  public static final byte OBJECT_KEY_FIRST_BYTE = ' ';
+
+  /**
+   * Schema metadata key that is {@code true} when the write buffer rows are sorted by key in
+   * unsigned lexicographical order with at most one row per key.
+   */
+  public static final String BUFFER_SORTED = "buffer_sorted";
+
+  /**
+   * Schema metadata key of the optional Bloom filter over the keys of the write buffer rows,
+   * serialized by {@link io.trinitylake.util.BloomFilter#toBase64()}.
+   */
+  public static final String BUFFER_BLOOM_FILTER = "buffer_bloom_filter";
+
+  /** Schema metadata key of the number of hash functions of the write buffer Bloom filter. */
+  public static final String BUFFER_BLOOM_FILTER_NUM_HASHES = "buffer_bloom_filter_num_hashes";
+
+  /**
+   * Schema metadata key of the common prefix of the keys of all node pointer and write buffer rows,
+   * encoded in base64, which is stripped from the keys stored in these rows.
+   */
+  public static final String KEY_PREFIX = "key_prefix";
+
+  public static final Schema SCHEMA =
+      new Schema(
+          Arrays.asList(
+              Field.nullable(KEY, ArrowType.Utf8.INSTANCE),
+              Field.nullable(PVALUE, ArrowType.Utf8.INSTANCE),
+              Field.nullable(PNODE, ArrowType.Utf8.INSTANCE)));
+
+  private NodeFileSchema() {}
+}
@@ -0,0 +1,250 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.tree;
+
+import io.trinitylake.util.BloomFilter;
+import io.trinitylake.util.ByteArrayUtil;
+import io.trinitylake.util.ValidationUtil;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowFileWriter;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+/**
+ * Writes a {@link MutableTreeNode} as an Arrow IPC node file.
+ *
+ * <p>The system rows and the {@code N} node pointer rows are written as the first record batch,
+ * and the write buffer rows, if any, as the second record batch.
+ *
+ * <p>The write buffer rows are sorted by key in unsigned lexicographical order, keeping only the
+ * latest message of each key, so that readers can binary search them.
+ *
+ * <p>When the node has a write buffer, a Bloom filter over the keys of the buffer rows is written
+ * in the schema metadata, unless disabled, so that readers can skip the buffer scan of keys that
+ * have no message in it.
+ *
+ * <p>When key prefix compression is enabled, the common prefix of the keys of the node pointer and
+ * write buffer rows, which is usually the padded namespace name of the keys of a leaf, is written
+ * once in the schema metadata and stripped from the keys of these rows.
+ */
+public class NodeFileWriter {
+
+  public static final double BLOOM_FILTER_FPP_DEFAULT = 0.01;
+
+  private final BufferAllocator allocator;
+  private final int order;
+  private final double bloomFilterFpp;
+  private final boolean keyPrefixEnabled;
+
+  public NodeFileWriter(BufferAllocator allocator, int order) {
+    this(allocator, order, BLOOM_FILTER_FPP_DEFAULT);
+  }
+
+  public NodeFileWriter(BufferAllocator allocator, int order, double bloomFilterFpp) {
+    this(allocator, order, bloomFilterFpp, false);
+  }
+
+  /**
+   * @param bloomFilterFpp false positive probability of the write buffer Bloom filter, or 0 to not
+   *     write the filter
+   * @param keyPrefixEnabled whether to strip the common key prefix from the stored keys, which can
+   *     only be read by readers that support the key prefix schema metadata
+   */
+  public NodeFileWriter(
+      BufferAllocator allocator, int order, double bloomFilterFpp, boolean keyPrefixEnabled) {
+    ValidationUtil.checkArgument(order >= 2, "Tree order must be at least 2, but got %s", order);
+    ValidationUtil.checkArgument(
+        bloomFilterFpp >= 0 && bloomFilterFpp < 1,
+        "Bloom filter false positive probability must be in [0, 1), but got %s",
+        bloomFilterFpp);
+    this.allocator = allocator;
+    this.order = order;
+    this.bloomFilterFpp = bloomFilterFpp;
+    this.keyPrefixEnabled = keyPrefixEnabled;
+  }
+
+  public void write(MutableTreeNode node, WritableByteChannel channel) {
+    ValidationUtil.checkArgument(
+        node.usedPointerRows() <= order,
+        "Node has %s pointer rows, more than the tree order %s",
+        node.usedPointerRows(),
+        order);
+
+    List<BufferMessage> buffer = sortedBuffer(node.buffer());
+    byte[] keyPrefix = keyPrefixEnabled ? commonKeyPrefix(node, buffer) : new byte[0];
+    try (VectorSchemaRoot root = VectorSchemaRoot.create(schema(buffer, keyPrefix), allocator);
+        ArrowFileWriter writer = new ArrowFileWriter(root, null, channel)) {
+      writer.start();
+
+      root.allocateNew();
+      int rowCount = writePointerSection(root, node, keyPrefix.length);
+      root.setRowCount(rowCount);
+      writer.writeBatch();
+
+      if (!buffer.isEmpty()) {
+        root.allocateNew();
+        root.setRowCount(writeBufferSection(root, buffer, keyPrefix.length));
+        writer.writeBatch();
+      }
+
+      writer.end();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to write node file", e);
+    }
+  }
+
+  /** Sorts the messages by key, keeping the latest message of each key. */
+  private static List<BufferMessage> sortedBuffer(List<BufferMessage> buffer) {
+    NavigableMap<byte[], BufferMessage> latest = new TreeMap<>(ByteArrayUtil.comparator());
+    for (BufferMessage message : buffer) {
+      latest.put(message.key(), message);
+    }
+
+    return new ArrayList<>(latest.values());
+  }
+
+  /**
+   * Longest common prefix of the keys of the node pointer and write buffer rows, or an empty array
+   * if it is not longer than the first byte of the keys, which is the same for all object keys.
+   */
+  private static byte[] commonKeyPrefix(MutableTreeNode node, List<BufferMessage> buffer) {
+    List<byte[]> keys = new ArrayList<>(node.keys());
+    buffer.forEach(message -> keys.add(message.key()));
+    if (keys.isEmpty()) {
+      return new byte[0];
+    }
+
+    byte[] first = keys.get(0);
+    int length = first.length;
+    for (byte[] key : keys) {
+      int common = 0;
+      while (common < length && common < key.length && key[common] == first[common]) {
+        common++;
+      }
+
+      length = common;
+    }
+
+    return length > 1 ? Arrays.copyOf(first, length) : new byte[0];
+  }
+
+  /**
+   * Schema with the metadata of the key prefix and of the sorted write buffer, which has one
+   * message per key.
+   */
+  private Schema schema(List<BufferMessage> buffer, byte[] keyPrefix) {
+    Map<String, String> metadata = new HashMap<>();
+    if (keyPrefix.length > 0) {
+      metadata.put(NodeFileSchema.KEY_PREFIX, Base64.getEncoder().encodeToString(keyPrefix));
+    }
+
+    if (buffer.isEmpty()) {
+      return metadata.isEmpty()
+          ? NodeFileSchema.SCHEMA
+          : new Schema(NodeFileSchema.SCHEMA.getFields(), metadata);
+    }
+
+    metadata.put(NodeFileSchema.BUFFER_SORTED, Boolean.TRUE.toString());
+    if (bloomFilterFpp > 0) {
+      BloomFilter filter = BloomFilter.create(buffer.size(), bloomFilterFpp);
+      for (BufferMessage message : buffer) {
+        filter.put(message.key());
+      }
+
+      metadata.put(NodeFileSchema.BUFFER_BLOOM_FILTER, filter.toBase64());
+      metadata.put(
+          NodeFileSchema.BUFFER_BLOOM_FILTER_NUM_HASHES,
+          Integer.toString(filter.numHashFunctions()));
+    }
+
+    return new Schema(NodeFileSchema.SCHEMA.getFields(), metadata);
+  }
+
+  private int writePointerSection(VectorSchemaRoot root, MutableTreeNode node, int prefixLength) {
+    VarCharVector keys = (VarCharVector) root.getVector(NodeFileSchema.KEY);
+    VarCharVector pvalues = (VarCharVector) root.getVector(NodeFileSchema.PVALUE);
+    VarCharVector pnodes = (VarCharVector) root.getVector(NodeFileSchema.PNODE);
+
+    int row = 0;
+    for (Map.Entry<String, String> entry : node.systemValues().entrySet()) {
+      keys.setSafe(row, entry.getKey().getBytes(StandardCharsets.UTF_8));
+      setString(pvalues, row, entry.getValue());
+      row++;
+    }
+
+    int pointerStart = row;
+    if (!node.isLeaf()) {
+      setString(pnodes, row, node.children().get(0));
+    }
+
+    for (int i = 0; i < node.keys().size(); i++) {
+      int pointerRow = pointerStart + i + 1;
+      setKey(keys, pointerRow, node.keys().get(i), prefixLength);
+      if (node.isLeaf()) {
+        setString(pvalues, pointerRow, node.values().get(i));
+      } else {
+        setString(pnodes, pointerRow, node.children().get(i + 1));
+      }
+    }
+
+    int rowCount = pointerStart + order;
+    keys.setValueCount(rowCount);
+    pvalues.setValueCount(rowCount);
+    pnodes.setValueCount(rowCount);
+    return rowCount;
+  }
+
+  private static int writeBufferSection(
+      VectorSchemaRoot root, List<BufferMessage> buffer, int prefixLength) {
+    VarCharVector keys = (VarCharVector) root.getVector(NodeFileSchema.KEY);
+    VarCharVector pvalues = (VarCharVector) root.getVector(NodeFileSchema.PVALUE);
+    VarCharVector pnodes = (VarCharVector) root.getVector(NodeFileSchema.PNODE);
+
+    for (int row = 0; row < buffer.size(); row++) {
+      BufferMessage message = buffer.get(row);
+      setKey(keys, row, message.key(), prefixLength);
+      setString(pvalues, row, message.value());
+    }
+
+    keys.setValueCount(buffer.size());
+    pvalues.setValueCount(buffer.size());
+    pnodes.setValueCount(buffer.size());
+    return buffer.size();
+  }
+
+  private static void setKey(VarCharVector keys, int row, byte[] key, int prefixLength) {
+    keys.setSafe(row, key, prefixLength, key.length - prefixLength);
+  }
+
+  private static void setString(VarCharVector vector, int row, String value) {
+    if (value == null) {
+      vector.setNull(row);
+    } else {
+      vector.setSafe(row, value.getBytes(StandardCharsets.UTF_8));
+    }
+  }
+}
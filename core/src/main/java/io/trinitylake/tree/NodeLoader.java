@@ -0,0 +1,43 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.tree;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/** Loads the tree node stored at a node file location. */
+@FunctionalInterface
+public interface NodeLoader {
+
+  /**
+   * Loads a tree node. The caller owns the returned node and must close it after use.
+   *
+   * @param location node file location relative to the LakeHouse root location
+   * @return the tree node
+   */
+  TreeNode load(String location);
+
+  /**
+   * Loads a tree node asynchronously, so that the fetches of multiple nodes can overlap. The
+   * default implementation runs {@link #load(String)} in the executor. The caller owns the node of
+   * the returned future and must close it after use.
+   *
+   * @param location node file location relative to the LakeHouse root location
+   * @param executor executor of the blocking parts of the load
+   * @return a future of the tree node
+   */
+  default CompletableFuture<TreeNode> loadAsync(String location, Executor executor) {
+    return CompletableFuture.supplyAsync(() -> load(location), executor);
+  }
+}
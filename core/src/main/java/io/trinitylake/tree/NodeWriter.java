@@ -0,0 +1,28 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.tree;
+
+/** Writes a new node file. */
+@FunctionalInterface
+public interface NodeWriter {
+
+  /**
+   * Writes a tree node to a new node file. Node files are immutable, so the write must fail if a
+   * file already exists at the location.
+   *
+   * @param location node file location relative to the LakeHouse root location
+   * @param node the tree node to write
+   */
+  void write(String location, MutableTreeNode node);
+}
@@ -0,0 +1,157 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.tree;
+
+import io.trinitylake.util.ValidationUtil;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The decoded root node of a tree and the nodes of the first levels below it, kept resident for
+ * the lifetime of this object.
+ *
+ * <p>With order {@code N}, pinning {@code K} levels below the root keeps up to {@code 1 + N + ... +
+ * N^K} nodes resident, and a lookup only needs to read the nodes below them from storage, which
+ * are the roots of up to {@code N^(K+1)} subtrees. Node files are
+ * immutable and a new root version only rewrites the nodes along the modified paths, so when the
+ * pinned nodes are refreshed for a new root, nodes at unchanged locations are reused from the
+ * previously pinned nodes instead of being read again.
+ *
+ * <p>The pinned nodes are reference counted as a whole: each user calls {@link #retain()} and
+ * {@link #close()}, and the nodes are released when the last reference is closed.
+ */
+public class PinnedNodes implements AutoCloseable {
+
+  private final String rootLocation;
+  private final int levels;
+  private final Map<String, TreeNode> nodes;
+  private final long sizeInBytes;
+  private final AtomicInteger refCount = new AtomicInteger(1);
+
+  private PinnedNodes(String rootLocation, int levels, Map<String, TreeNode> nodes) {
+    this.rootLocation = rootLocation;
+    this.levels = levels;
+    this.nodes = Collections.unmodifiableMap(nodes);
+    long size = 0;
+    for (TreeNode node : nodes.values()) {
+      size += node.sizeInBytes();
+    }
+
+    this.sizeInBytes = size;
+  }
+
+  /**
+   * Loads the root node and the given number of levels below it.
+   *
+   * @param loader loader of the nodes that are not pinned yet
+   * @param rootLocation location of the root node file
+   * @param levels number of levels to pin below the root
+   * @param previous previously pinned nodes to reuse, or null
+   * @return the pinned nodes, which the caller owns and must close after use
+   */
+  public static PinnedNodes load(
+      NodeLoader loader, String rootLocation, int levels, PinnedNodes previous) {
+    ValidationUtil.checkArgument(levels >= 0, "Pinned levels must not be negative: %s", levels);
+    Map<String, TreeNode> nodes = new LinkedHashMap<>();
+    try {
+      List<String> level = Collections.singletonList(rootLocation);
+      for (int depth = 0; depth <= levels && !level.isEmpty(); depth++) {
+        List<String> nextLevel = new ArrayList<>();
+        for (String location : level) {
+          TreeNode reused = previous != null ? previous.nodes.get(location) : null;
+          TreeNode node = reused != null ? reused.retain() : loader.load(location);
+          nodes.put(location, node);
+          for (int i = 0; i < node.numChildren(); i++) {
+            nextLevel.add(node.child(i));
+          }
+        }
+
+        level = nextLevel;
+      }
+    } catch (RuntimeException e) {
+      nodes.values().forEach(TreeNode::close);
+      throw e;
+    }
+
+    return new PinnedNodes(rootLocation, levels, nodes);
+  }
+
+  public String rootLocation() {
+    return rootLocation;
+  }
+
+  public TreeNode root() {
+    return nodes.get(rootLocation);
+  }
+
+  public int levels() {
+    return levels;
+  }
+
+  public int numNodes() {
+    return nodes.size();
+  }
+
+  /** Total size in bytes of the pinned node files. */
+  public long sizeInBytes() {
+    return sizeInBytes;
+  }
+
+  /**
+   * Returns a loader that serves pinned nodes from memory, and falls back to the given loader for
+   * the other nodes. Loaded nodes are owned by the caller like with any other loader.
+   */
+  public NodeLoader loader(NodeLoader fallback) {
+    return location -> {
+      TreeNode node = nodes.get(location);
+      return node != null ? node.retain() : fallback.load(location);
+    };
+  }
+
+  public PinnedNodes retain() {
+    ValidationUtil.checkState(tryRetain(), "Cannot retain released pinned nodes");
+    return this;
+  }
+
+  /**
+   * Retains the pinned nodes unless they are already released, for users that can race with the
+   * close of the last reference.
+   *
+   * @return whether the pinned nodes are retained
+   */
+  public boolean tryRetain() {
+    int count;
+    do {
+      count = refCount.get();
+      if (count <= 0) {
+        return false;
+      }
+    } while (!refCount.compareAndSet(count, count + 1));
+
+    return true;
+  }
+
+  @Override
+  public void close() {
+    int count = refCount.decrementAndGet();
+    ValidationUtil.checkState(count >= 0, "Pinned nodes are already released");
+    if (count == 0) {
+      nodes.values().forEach(TreeNode::close);
+    }
+  }
+}
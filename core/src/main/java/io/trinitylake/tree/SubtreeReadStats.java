@@ -0,0 +1,65 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.tree;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Observed read amplification of the subtrees under the children of the root node, recorded by
+ * {@link TreeOperations#get(NodeLoader, TreeNode, KeyProbe, SubtreeReadStats)}.
+ *
+ * <p>The read amplification of a subtree is the average number of non-empty write buffers that
+ * lookups routed to the subtree search, which is what compacting the subtree saves. Subtrees are
+ * identified by the node file location of the child of the root, so a subtree rewritten by a
+ * commit starts over with new stats.
+ */
+public class SubtreeReadStats {
+
+  private final ConcurrentMap<String, Counters> counters = new ConcurrentHashMap<>();
+
+  public void record(String subtreeLocation, int buffersSearched) {
+    Counters subtree = counters.computeIfAbsent(subtreeLocation, location -> new Counters());
+    subtree.lookups.increment();
+    subtree.buffersSearched.add(buffersSearched);
+  }
+
+  public long lookups(String subtreeLocation) {
+    Counters subtree = counters.get(subtreeLocation);
+    return subtree != null ? subtree.lookups.sum() : 0;
+  }
+
+  /** Average number of non-empty write buffers searched per lookup, or 0 without any lookup. */
+  public double readAmplification(String subtreeLocation) {
+    Counters subtree = counters.get(subtreeLocation);
+    long lookups = subtree != null ? subtree.lookups.sum() : 0;
+    return lookups > 0 ? (double) subtree.buffersSearched.sum() / lookups : 0;
+  }
+
+  /** Drops the stats of all subtrees except the given ones, such as the current root children. */
+  public void retain(Collection<String> subtreeLocations) {
+    counters.keySet().retainAll(subtreeLocations);
+  }
+
+  public void reset(String subtreeLocation) {
+    counters.remove(subtreeLocation);
+  }
+
+  private static class Counters {
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder buffersSearched = new LongAdder();
+  }
+}
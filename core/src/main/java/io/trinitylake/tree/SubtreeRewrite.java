@@ -0,0 +1,62 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.tree;
+
+import java.util.List;
+
+/**
+ * A child of a root node that was rewritten by a {@link TreeUpdate} into one or more new subtrees,
+ * which can be reused when the update is rebased onto another root that still has the same child.
+ */
+class SubtreeRewrite {
+
+  private final String baseLocation;
+  private final List<BufferMessage> baseMessages;
+  private final List<byte[]> separators;
+  private final List<String> locations;
+
+  SubtreeRewrite(
+      String baseLocation,
+      List<BufferMessage> baseMessages,
+      List<byte[]> separators,
+      List<String> locations) {
+    this.baseLocation = baseLocation;
+    this.baseMessages = baseMessages;
+    this.separators = separators;
+    this.locations = locations;
+  }
+
+  /** Location of the rewritten child node. */
+  String baseLocation() {
+    return baseLocation;
+  }
+
+  /**
+   * Messages in the root write buffer for the key range of the rewritten child before the update,
+   * in buffer order.
+   */
+  List<BufferMessage> baseMessages() {
+    return baseMessages;
+  }
+
+  /** Separators between the new subtrees. */
+  List<byte[]> separators() {
+    return separators;
+  }
+
+  /** Locations of the new subtree root nodes. */
+  List<String> locations() {
+    return locations;
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.tree;
+
+import io.trinitylake.util.ByteArrayUtil;
+import io.trinitylake.util.ValidationUtil;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Builds a whole tree bottom-up from entries in key order, without any write buffer message.
+ *
+ * <p>Entries are packed sequentially into full leaves of {@code N - 1} entries, and each leaf is
+ * written as soon as it is full, while the next leaves are packed. Once all leaves are written, the
+ * parents are built level by level from the lower bound keys and locations of the nodes of the
+ * level below, with up to {@code N} children per node, and the nodes of each level are written in
+ * parallel. The lower bound of a leaf is the shortest separator between the last key of the
+ * previous leaf and its first key. Only the lower bound key and location of each node of the level
+ * being built are held in memory, so the entries can be streamed from a source larger than the
+ * heap.
+ *
+ * <p>The root node is not written, it is returned to be committed by the caller once all the other
+ * node files are written, see the commit atomicity section of the transaction specification.
+ */
+public class TreeBuilder {
+
+  private final int order;
+  private final NodeWriter writer;
+  private final Executor executor;
+  private final Supplier<String> newNodeLocation;
+  private final Semaphore pendingWrites;
+  private final List<CompletableFuture<Void>> writes = new ArrayList<>();
+
+  /**
+   * @param order order of the tree
+   * @param writer writer of the non-root node files
+   * @param executor executor of the node file writes
+   * @param newNodeLocation generator of new non-root node file locations
+   * @param maxPendingWrites maximum number of nodes packed but not written yet, which bounds the
+   *     memory used while the writes are slower than the packing of the entries
+   */
+  public TreeBuilder(
+      int order,
+      NodeWriter writer,
+      Executor executor,
+      Supplier<String> newNodeLocation,
+      int maxPendingWrites) {
+    ValidationUtil.checkArgument(order >= 2, "Tree order must be at least 2, but got %s", order);
+    ValidationUtil.checkArgument(
+        maxPendingWrites > 0, "Max pending writes must be positive, but got %s", maxPendingWrites);
+    this.order = order;
+    this.writer = writer;
+    this.executor = executor;
+    this.newNodeLocation = newNodeLocation;
+    this.pendingWrites = new Semaphore(maxPendingWrites);
+  }
+
+  /**
+   * Builds a tree of the entries, and waits for all the non-root node files to be written.
+   *
+   * @param entries live entries in strictly increasing key order
+   * @return the root node, which is a leaf if all entries fit in a single node
+   */
+  public MutableTreeNode build(Iterator<TreeEntry> entries) {
+    // the first node of a level has no lower bound
+    List<byte[]> lowerBounds = new ArrayList<>();
+    lowerBounds.add(null);
+    List<String> locations = new ArrayList<>();
+    MutableTreeNode leaf = new MutableTreeNode();
+    byte[] lastKey = null;
+    while (entries.hasNext()) {
+      TreeEntry entry = entries.next();
+      ValidationUtil.checkArgument(
+          lastKey == null || ByteArrayUtil.compare(lastKey, entry.key()) < 0,
+          "Entries are not in strictly increasing key order: %s",
+          entry);
+      if (leaf.keys().size() == order - 1) {
+        locations.add(writeAsync(leaf));
+        lowerBounds.add(ByteArrayUtil.shortestSeparator(lastKey, entry.key()));
+        leaf = new MutableTreeNode();
+      }
+
+      leaf.addEntry(entry.key(), entry.value());
+      lastKey = entry.key();
+    }
+
+    if (locations.isEmpty()) {
+      awaitWrites();
+      return leaf;
+    }
+
+    locations.add(writeAsync(leaf));
+    awaitWrites();
+    return buildParents(lowerBounds, locations);
+  }
+
+  /** Builds the internal levels from the nodes of the level below, up to the root. */
+  private MutableTreeNode buildParents(List<byte[]> childBounds, List<String> childLocations) {
+    List<byte[]> lowerBounds = childBounds;
+    List<String> locations = childLocations;
+    while (locations.size() > order) {
+      List<byte[]> parentBounds = new ArrayList<>();
+      List<String> parentLocations = new ArrayList<>();
+      for (int start = 0; start < locations.size(); start += order) {
+        int end = Math.min(locations.size(), start + order);
+        parentBounds.add(lowerBounds.get(start));
+        parentLocations.add(writeAsync(parent(lowerBounds, locations, start, end)));
+      }
+
+      awaitWrites();
+      lowerBounds = parentBounds;
+      locations = parentLocations;
+    }
+
+    return parent(lowerBounds, locations, 0, locations.size());
+  }
+
+  private static MutableTreeNode parent(
+      List<byte[]> lowerBounds, List<String> locations, int start, int end) {
+    MutableTreeNode parent = new MutableTreeNode().addChild(locations.get(start));
+    for (int i = start + 1; i < end; i++) {
+      parent.addChild(lowerBounds.get(i), locations.get(i));
+    }
+
+    return parent;
+  }
+
+  private String writeAsync(MutableTreeNode node) {
+    String location = newNodeLocation.get();
+    pendingWrites.acquireUninterruptibly();
+    try {
+      writes.add(
+          CompletableFuture.runAsync(() -> writer.write(location, node), executor)
+              .whenComplete((ignored, error) -> pendingWrites.release()));
+    } catch (RuntimeException e) {
+      pendingWrites.release();
+      throw e;
+    }
+
+    return location;
+  }
+
+  private void awaitWrites() {
+    try {
+      CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[0])).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+
+      throw e;
+    } finally {
+      writes.clear();
+    }
+  }
+}
@@ -0,0 +1,41 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.tree;
+
+import java.nio.charset.StandardCharsets;
+
+/** A key and the location of its value in a tree, as returned by a range scan. */
+public class TreeEntry {
+
+  private final byte[] key;
+  private final String value;
+
+  public TreeEntry(byte[] key, String value) {
+    this.key = key;
+    this.value = value;
+  }
+
+  public byte[] key() {
+    return key;
+  }
+
+  public String value() {
+    return value;
+  }
+
+  @Override
+  public String toString() {
+    return "TreeEntry{key=" + new String(key, StandardCharsets.UTF_8) + ", value=" + value + "}";
+  }
+}
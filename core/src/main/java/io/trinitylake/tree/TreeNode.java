@@ -0,0 +1,611 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.tree;
+
+import io.trinitylake.util.ArrowUtil;
+import io.trinitylake.util.BloomFilter;
+import io.trinitylake.util.ByteArrayUtil;
+import io.trinitylake.util.ValidationUtil;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+
+/**
+ * A read-only tree node decoded from a node file.
+ *
+ * <p>The node keeps the Arrow vectors of all record batches of the node file off-heap, and all key
+ * searches compare against the varchar data buffers directly. Keys and locations are only copied
+ * to the heap when explicitly requested, e.g. when the node is copied-on-write through {@link
+ * #toMutable()}.
+ *
+ * <p>A node is reference counted so that it can be shared, e.g. through a {@link NodeCache}. Each
+ * holder of the node calls {@link #retain()} to take a reference and {@link #close()} to release
+ * it, and the off-heap buffers are released when the last reference is closed.
+ *
+ * <p>When the node file has a key prefix, the keys of the node pointer and write buffer rows are
+ * stored without it. Searches first check the probe key against the prefix, and then compare the
+ * stored keys against the rest of the probe key, so the stored keys are only inflated when they
+ * are copied to the heap.
+ *
+ * <p>A node read through {@link NodeFileRangeReader} only holds the key column of its last record
+ * batch, which is the write buffer section, and loads the other columns of that batch the first
+ * time they are accessed, e.g. when a lookup finds its key in the write buffer.
+ */
+public class TreeNode implements AutoCloseable {
+
+  private final ArrowBuf file;
+  private final List<VectorSchemaRoot> batches;
+  private final int[] batchStarts;
+  private final VarCharVector[] keyVectors;
+  private final VarCharVector[] pvalueVectors;
+  private final VarCharVector[] pnodeVectors;
+  private final int order;
+  private final int rowCount;
+  private final int pointerStart;
+  private final int numKeys;
+  private final boolean leaf;
+  private final int fixedKeyWidth;
+  private final ArrowBuf fixedKeyData;
+  private final long fixedKeyStart;
+  private final long sizeInBytes;
+  private final BloomFilter bufferFilter;
+  private final boolean bufferSorted;
+  private final byte[] keyPrefix;
+  private final Supplier<VectorSchemaRoot> lastBatchValues;
+  private volatile boolean valuesLoaded;
+  private VectorSchemaRoot loadedValues = null;
+  private final AtomicInteger refCount = new AtomicInteger(1);
+
+  /** Creates a node decoded from a node file of the given size held in the given buffer. */
+  TreeNode(ArrowBuf file, List<VectorSchemaRoot> batches, int order, long sizeInBytes) {
+    this(file, batches, order, sizeInBytes, null);
+  }
+
+  /**
+   * Creates a node whose last batch only has the key column loaded. The pvalue and pnode columns
+   * of that batch are loaded by the given supplier on first access, and the size in bytes is the
+   * size of the node once they are loaded.
+   */
+  TreeNode(
+      List<VectorSchemaRoot> batches,
+      int order,
+      long sizeInBytes,
+      Supplier<VectorSchemaRoot> lastBatchValues) {
+    this(null, batches, order, sizeInBytes, lastBatchValues);
+  }
+
+  private TreeNode(
+      ArrowBuf file,
+      List<VectorSchemaRoot> batches,
+      int order,
+      long sizeInBytes,
+      Supplier<VectorSchemaRoot> lastBatchValues) {
+    this.file = file;
+    this.batches = batches;
+    this.order = order;
+    this.sizeInBytes = sizeInBytes;
+    this.lastBatchValues = lastBatchValues;
+    this.valuesLoaded = lastBatchValues == null;
+    this.batchStarts = new int[batches.size()];
+    this.keyVectors = new VarCharVector[batches.size()];
+    this.pvalueVectors = new VarCharVector[batches.size()];
+    this.pnodeVectors = new VarCharVector[batches.size()];
+
+    int rows = 0;
+    for (int i = 0; i < batches.size(); i++) {
+      VectorSchemaRoot batch = batches.get(i);
+      batchStarts[i] = rows;
+      keyVectors[i] = (VarCharVector) batch.getVector(NodeFileSchema.KEY);
+      pvalueVectors[i] = (VarCharVector) batch.getVector(NodeFileSchema.PVALUE);
+      pnodeVectors[i] = (VarCharVector) batch.getVector(NodeFileSchema.PNODE);
+      rows += batch.getRowCount();
+    }
+
+    this.rowCount = rows;
+    this.pointerStart = findPointerStart();
+    ValidationUtil.checkArgument(
+        rowCount >= pointerStart + order,
+        "Invalid node file: expect %s node pointer rows after %s system rows, but file has %s rows",
+        order,
+        pointerStart,
+        rowCount);
+    this.leaf = isNullAt(pnodeVectors, pointerStart);
+    Map<String, String> metadata = batches.get(0).getSchema().getCustomMetadata();
+    this.bufferFilter = readBufferFilter(metadata);
+    this.bufferSorted =
+        metadata != null && Boolean.parseBoolean(metadata.get(NodeFileSchema.BUFFER_SORTED));
+    String encodedPrefix = metadata != null ? metadata.get(NodeFileSchema.KEY_PREFIX) : null;
+    this.keyPrefix =
+        encodedPrefix != null ? Base64.getDecoder().decode(encodedPrefix) : new byte[0];
+    this.numKeys = countKeys();
+    this.fixedKeyWidth = findFixedKeyWidth();
+    if (fixedKeyWidth > 0) {
+      int row = pointerRow(1);
+      int batch = batchOf(row);
+      this.fixedKeyData = keyVectors[batch].getDataBuffer();
+      this.fixedKeyStart = keyVectors[batch].getStartOffset(row - batchStarts[batch]);
+    } else {
+      this.fixedKeyData = null;
+      this.fixedKeyStart = 0;
+    }
+  }
+
+  public int order() {
+    return order;
+  }
+
+  public boolean isLeaf() {
+    return leaf;
+  }
+
+  /** Number of entries of a leaf node, or number of separator keys of an internal node. */
+  public int numKeys() {
+    return numKeys;
+  }
+
+  public int numChildren() {
+    return leaf ? 0 : numKeys + 1;
+  }
+
+  public byte[] key(int index) {
+    return keyAt(pointerRow(index + 1));
+  }
+
+  /** Value location of the entry at the given index of a leaf node. */
+  public String value(int index) {
+    ValidationUtil.checkState(leaf, "Cannot get value of an internal node");
+    return stringAt(pvalueVectors, pointerRow(index + 1));
+  }
+
+  /** Location of the child node at the given index of an internal node. */
+  public String child(int index) {
+    ValidationUtil.checkState(!leaf, "Cannot get child of a leaf node");
+    return stringAt(pnodeVectors, pointerRow(index));
+  }
+
+  public int childIndex(byte[] key) {
+    return childIndex(new KeyProbe(key));
+  }
+
+  /**
+   * Finds the index of the child node that covers the given key, which is the child after the
+   * largest separator key that is smaller than or equal to the key.
+   */
+  public int childIndex(KeyProbe probe) {
+    ValidationUtil.checkState(!leaf, "Cannot find child of a leaf node");
+    KeyProbe stored = storedProbe(probe);
+    if (stored == null) {
+      return keysAbove(probe) ? 0 : numKeys;
+    }
+
+    int low = 0;
+    int high = numKeys - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (comparePointerKey(mid, stored) <= 0) {
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+
+    return low;
+  }
+
+  /**
+   * Index of the first key of a leaf node entry or internal node separator that is not smaller
+   * than the given key, or {@link #numKeys()} if all keys are smaller.
+   */
+  public int lowerBound(KeyProbe probe) {
+    KeyProbe stored = storedProbe(probe);
+    if (stored == null) {
+      return keysAbove(probe) ? 0 : numKeys;
+    }
+
+    int low = 0;
+    int high = numKeys;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (comparePointerKey(mid, stored) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+
+    return low;
+  }
+
+  public int findEntry(byte[] key) {
+    return findEntry(new KeyProbe(key));
+  }
+
+  /** Finds the index of the entry of the given key in a leaf node, or -1 if not found. */
+  public int findEntry(KeyProbe probe) {
+    ValidationUtil.checkState(leaf, "Cannot find entry in an internal node");
+    KeyProbe stored = storedProbe(probe);
+    if (stored == null) {
+      return -1;
+    }
+
+    int low = 0;
+    int high = numKeys - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int cmp = comparePointerKey(mid, stored);
+      if (cmp < 0) {
+        low = mid + 1;
+      } else if (cmp > 0) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+
+    return -1;
+  }
+
+  public int numMessages() {
+    return rowCount - pointerStart - order;
+  }
+
+  public byte[] messageKey(int index) {
+    return keyAt(messageRow(index));
+  }
+
+  public BufferMessage message(int index) {
+    int row = messageRow(index);
+    byte[] key = keyAt(row);
+    String value = stringAt(pvalueVectors, row);
+    return value == null ? BufferMessage.delete(key) : BufferMessage.set(key, value);
+  }
+
+  public int findMessage(byte[] key) {
+    return findMessage(new KeyProbe(key));
+  }
+
+  /**
+   * Finds the index of the latest message of the given key in the write buffer, or -1 if there
+   * is no message for the key. The buffer is not scanned if its Bloom filter excludes the key, and
+   * is binary searched if it is sorted.
+   */
+  public int findMessage(KeyProbe probe) {
+    if (bufferFilter != null && !bufferFilter.mightContain(probe.bloomHash())) {
+      return -1;
+    }
+
+    KeyProbe stored = storedProbe(probe);
+    if (stored == null) {
+      return -1;
+    }
+
+    return bufferSorted ? searchMessage(stored) : scanMessages(stored);
+  }
+
+  private int searchMessage(KeyProbe probe) {
+    int low = 0;
+    int high = numMessages() - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int cmp = compareStoredKey(messageRow(mid), probe);
+      if (cmp < 0) {
+        low = mid + 1;
+      } else if (cmp > 0) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+
+    return -1;
+  }
+
+  private int scanMessages(KeyProbe probe) {
+    for (int i = numMessages() - 1; i >= 0; i--) {
+      int row = messageRow(i);
+      int batch = batchOf(row);
+      VarCharVector keys = keyVectors[batch];
+      int local = row - batchStarts[batch];
+      if (probe.matchesStored(
+          keys.getDataBuffer(), keys.getStartOffset(local), keys.getValueLength(local))) {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * Index of the first message of a sorted write buffer whose key is not smaller than the given
+   * key, or {@link #numMessages()} if all keys are smaller.
+   */
+  public int messageLowerBound(KeyProbe probe) {
+    ValidationUtil.checkState(bufferSorted, "Cannot search an unsorted write buffer");
+    KeyProbe stored = storedProbe(probe);
+    if (stored == null) {
+      return keysAbove(probe) ? 0 : numMessages();
+    }
+
+    int low = 0;
+    int high = numMessages();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (compareStoredKey(messageRow(mid), stored) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+
+    return low;
+  }
+
+  /** Whether the write buffer is sorted by key, with at most one message per key. */
+  public boolean isBufferSorted() {
+    return bufferSorted;
+  }
+
+  boolean hasBufferFilter() {
+    return bufferFilter != null;
+  }
+
+  public int numSystemRows() {
+    return pointerStart;
+  }
+
+  public String systemValue(String key) {
+    byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+    for (int row = 0; row < pointerStart; row++) {
+      if (compareKey(row, keyBytes) == 0) {
+        return stringAt(pvalueVectors, row);
+      }
+    }
+
+    return null;
+  }
+
+  /** Size of the node file content held off-heap by this node. */
+  public long sizeInBytes() {
+    return sizeInBytes;
+  }
+
+  /** Copies the content of this node to the heap so that it can be modified and written. */
+  public MutableTreeNode toMutable() {
+    MutableTreeNode node = new MutableTreeNode();
+    for (int row = 0; row < pointerStart; row++) {
+      node.putSystemValue(
+          new String(bytesAt(keyVectors, row), StandardCharsets.UTF_8),
+          stringAt(pvalueVectors, row));
+    }
+
+    if (leaf) {
+      for (int i = 0; i < numKeys; i++) {
+        node.addEntry(key(i), value(i));
+      }
+    } else {
+      node.addChild(child(0));
+      for (int i = 0; i < numKeys; i++) {
+        node.addChild(key(i), child(i + 1));
+      }
+    }
+
+    for (int i = 0; i < numMessages(); i++) {
+      node.addMessage(message(i));
+    }
+
+    return node;
+  }
+
+  /** Takes an additional reference to this node, which must be released by {@link #close()}. */
+  public TreeNode retain() {
+    int count;
+    do {
+      count = refCount.get();
+      ValidationUtil.checkState(count > 0, "Cannot retain a released tree node");
+    } while (!refCount.compareAndSet(count, count + 1));
+
+    return this;
+  }
+
+  @Override
+  public void close() {
+    int count = refCount.decrementAndGet();
+    ValidationUtil.checkState(count >= 0, "Tree node is already released");
+    if (count == 0) {
+      for (VectorSchemaRoot batch : batches) {
+        batch.close();
+      }
+
+      synchronized (this) {
+        if (loadedValues != null) {
+          loadedValues.close();
+        }
+      }
+
+      if (file != null) {
+        file.close();
+      }
+    }
+  }
+
+  private int findPointerStart() {
+    for (int row = 0; row < rowCount; row++) {
+      int batch = batchOf(row);
+      int local = row - batchStarts[batch];
+      if (keyVectors[batch].isNull(local)
+          || ArrowUtil.startsWith(keyVectors[batch], local, NodeFileSchema.OBJECT_KEY_FIRST_BYTE)) {
+        return row;
+      }
+    }
+
+    return rowCount;
+  }
+
+  private static BloomFilter readBufferFilter(Map<String, String> metadata) {
+    String encoded = metadata != null ? metadata.get(NodeFileSchema.BUFFER_BLOOM_FILTER) : null;
+    if (encoded == null) {
+      return null;
+    }
+
+    String numHashes = metadata.get(NodeFileSchema.BUFFER_BLOOM_FILTER_NUM_HASHES);
+    ValidationUtil.checkArgument(
+        numHashes != null,
+        "Invalid node file: missing %s",
+        NodeFileSchema.BUFFER_BLOOM_FILTER_NUM_HASHES);
+    return BloomFilter.fromBase64(encoded, Integer.parseInt(numHashes));
+  }
+
+  private int countKeys() {
+    int count = 0;
+    while (count + 1 < order && !isNullAt(keyVectors, pointerRow(count + 1))) {
+      count++;
+    }
+
+    return count;
+  }
+
+  /**
+   * Returns the width of the keys in the pointer rows if all of them have the same length and
+   * are stored contiguously in the same record batch, or -1 otherwise.
+   */
+  private int findFixedKeyWidth() {
+    if (numKeys == 0 || batchOf(pointerRow(1)) != batchOf(pointerRow(numKeys))) {
+      return -1;
+    }
+
+    int batch = batchOf(pointerRow(1));
+    int width = keyVectors[batch].getValueLength(pointerRow(1) - batchStarts[batch]);
+    for (int i = 2; i <= numKeys; i++) {
+      if (keyVectors[batch].getValueLength(pointerRow(i) - batchStarts[batch]) != width) {
+        return -1;
+      }
+    }
+
+    return width;
+  }
+
+  /**
+   * Returns the probe to compare against the stored keys, which is the probe of the key suffix
+   * after the key prefix of the node, or null if the key does not start with the key prefix.
+   */
+  private KeyProbe storedProbe(KeyProbe probe) {
+    if (keyPrefix.length == 0) {
+      return probe;
+    }
+
+    return probe.startsWith(keyPrefix) ? probe.suffix(keyPrefix.length) : null;
+  }
+
+  /**
+   * Whether all the keys of the node are larger than a key that does not start with the key
+   * prefix, otherwise they are all smaller.
+   */
+  private boolean keysAbove(KeyProbe probe) {
+    return ByteArrayUtil.compare(keyPrefix, probe.key()) > 0;
+  }
+
+  private int comparePointerKey(int index, KeyProbe probe) {
+    if (fixedKeyWidth > 0) {
+      return probe.compareStored(
+          fixedKeyData, fixedKeyStart + (long) index * fixedKeyWidth, fixedKeyWidth);
+    }
+
+    return compareStoredKey(pointerRow(index + 1), probe);
+  }
+
+  private int compareStoredKey(int row, KeyProbe probe) {
+    int batch = batchOf(row);
+    VarCharVector keys = keyVectors[batch];
+    int local = row - batchStarts[batch];
+    return probe.compareStored(
+        keys.getDataBuffer(), keys.getStartOffset(local), keys.getValueLength(local));
+  }
+
+  private int pointerRow(int index) {
+    return pointerStart + index;
+  }
+
+  private int messageRow(int index) {
+    return pointerStart + order + index;
+  }
+
+  private int compareKey(int row, byte[] key) {
+    int batch = batchOf(row);
+    return ArrowUtil.compare(keyVectors[batch], row - batchStarts[batch], key);
+  }
+
+  private boolean isNullAt(VarCharVector[] vectors, int row) {
+    int batch = batchOf(row);
+    return vector(vectors, batch).isNull(row - batchStarts[batch]);
+  }
+
+  /** Copies the key of a node pointer or write buffer row with the key prefix to the heap. */
+  private byte[] keyAt(int row) {
+    byte[] stored = bytesAt(keyVectors, row);
+    if (keyPrefix.length == 0 || stored == null) {
+      return stored;
+    }
+
+    byte[] key = Arrays.copyOf(keyPrefix, keyPrefix.length + stored.length);
+    System.arraycopy(stored, 0, key, keyPrefix.length, stored.length);
+    return key;
+  }
+
+  private byte[] bytesAt(VarCharVector[] vectors, int row) {
+    int batch = batchOf(row);
+    return vector(vectors, batch).get(row - batchStarts[batch]);
+  }
+
+  private String stringAt(VarCharVector[] vectors, int row) {
+    int batch = batchOf(row);
+    return ArrowUtil.getString(vector(vectors, batch), row - batchStarts[batch]);
+  }
+
+  private VarCharVector vector(VarCharVector[] vectors, int batch) {
+    if (!valuesLoaded && vectors != keyVectors && batch == batches.size() - 1) {
+      loadValues();
+    }
+
+    return vectors[batch];
+  }
+
+  private synchronized void loadValues() {
+    if (valuesLoaded) {
+      return;
+    }
+
+    ValidationUtil.checkState(refCount.get() > 0, "Cannot load values of a released tree node");
+    int batch = batches.size() - 1;
+    this.loadedValues = lastBatchValues.get();
+    pvalueVectors[batch] = (VarCharVector) loadedValues.getVector(NodeFileSchema.PVALUE);
+    pnodeVectors[batch] = (VarCharVector) loadedValues.getVector(NodeFileSchema.PNODE);
+    this.valuesLoaded = true;
+  }
+
+  private int batchOf(int row) {
+    int batch = batchStarts.length - 1;
+    while (batchStarts[batch] > row) {
+      batch--;
+    }
+
+    return batch;
+  }
+}
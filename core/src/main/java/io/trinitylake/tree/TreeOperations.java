@@ -0,0 +1,142 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.tree;
+
+import io.trinitylake.util.CloseableIterator;
+import io.trinitylake.util.ValidationUtil;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/** Operations against a TrinityLake tree, see the B-epsilon tree specification. */
+public class TreeOperations {
+
+  private TreeOperations() {}
+
+  /**
+   * Finds the value of a key, starting from the given root node.
+   *
+   * <p>The write buffer of each node along the path is checked before going down to the next
+   * level, because messages in upper levels are always newer than the ones below them.
+   *
+   * @return the value location of the key, or null if the key does not exist
+   */
+  public static String get(NodeLoader loader, TreeNode root, KeyProbe probe) {
+    return get(loader, root, probe, null);
+  }
+
+  /**
+   * Finds the value of a key, starting from the given root node, and records the number of
+   * non-empty write buffers searched for the subtree of the root that covers the key.
+   *
+   * @param stats collector of the read amplification of the root subtrees, or null
+   * @return the value location of the key, or null if the key does not exist
+   */
+  public static String get(
+      NodeLoader loader, TreeNode root, KeyProbe probe, SubtreeReadStats stats) {
+    TreeNode node = root;
+    String subtree = null;
+    int buffersSearched = 0;
+    try {
+      while (true) {
+        if (node.numMessages() > 0) {
+          buffersSearched++;
+        }
+
+        int messageIndex = node.findMessage(probe);
+        if (messageIndex >= 0) {
+          return node.message(messageIndex).value();
+        }
+
+        if (node.isLeaf()) {
+          int entryIndex = node.findEntry(probe);
+          return entryIndex >= 0 ? node.value(entryIndex) : null;
+        }
+
+        String childLocation = node.child(node.childIndex(probe));
+        TreeNode child = loader.load(childLocation);
+        if (node != root) {
+          node.close();
+        } else {
+          subtree = childLocation;
+        }
+
+        node = child;
+      }
+    } finally {
+      if (node != root) {
+        node.close();
+      }
+
+      if (stats != null && subtree != null) {
+        stats.record(subtree, buffersSearched);
+      }
+    }
+  }
+
+  /**
+   * Bytes of the write buffer messages of the subtrees under the children of the root node, which
+   * are the messages of the root write buffer that belong to the child and the messages of the
+   * write buffer of the child itself. Deeper write buffers are not read.
+   *
+   * @return bytes of messages by child node location, in child order
+   */
+  public static Map<String, Long> subtreeBufferBytes(NodeLoader loader, TreeNode root) {
+    ValidationUtil.checkArgument(!root.isLeaf(), "Root node has no subtree");
+    Map<String, Long> bytes = new LinkedHashMap<>();
+    for (int child = 0; child < root.numChildren(); child++) {
+      bytes.merge(root.child(child), 0L, Long::sum);
+    }
+
+    for (int i = 0; i < root.numMessages(); i++) {
+      String child = root.child(root.childIndex(new KeyProbe(root.messageKey(i))));
+      bytes.merge(child, root.message(i).sizeInBytes(), Long::sum);
+    }
+
+    for (Map.Entry<String, Long> subtree : bytes.entrySet()) {
+      try (TreeNode child = loader.load(subtree.getKey())) {
+        for (int i = 0; i < child.numMessages(); i++) {
+          subtree.setValue(subtree.getValue() + child.message(i).sizeInBytes());
+        }
+      }
+    }
+
+    return bytes;
+  }
+
+  /**
+   * Scans the live keys in a key range in key order, starting from the given root node.
+   *
+   * <p>Only the nodes on the path from the root to the current leaf are held during the scan, and
+   * the write buffer messages of the nodes on the path are merged into the leaf entries, with the
+   * messages in upper levels winning over the ones below them. Deleted keys are skipped.
+   *
+   * @param start inclusive start of the key range
+   * @param end exclusive end of the key range, or null to scan to the last key
+   * @param prefetchExecutor executor of the asynchronous loads of the next child nodes, or null to
+   *     only load nodes when the scan reaches them
+   * @param prefetchNodes maximum number of child nodes of each node on the scan path that are
+   *     loaded ahead of the scan
+   * @return the entries in the key range, which must be closed if not fully consumed
+   */
+  public static CloseableIterator<TreeEntry> scan(
+      NodeLoader loader,
+      TreeNode root,
+      byte[] start,
+      byte[] end,
+      Executor prefetchExecutor,
+      int prefetchNodes) {
+    return new TreeScanner(loader, root, start, end, prefetchExecutor, prefetchNodes);
+  }
+}
@@ -0,0 +1,330 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.tree;
+
+import io.trinitylake.util.ByteArrayUtil;
+import io.trinitylake.util.CloseableIterator;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * An ordered scan of the live keys of a tree in a key range, see {@link TreeOperations#scan}.
+ *
+ * <p>The scanner walks down the tree depth first and only holds the nodes on the path from the
+ * root to the current leaf. Each node on the path has a cursor over its write buffer messages in
+ * key order, and because leaves are visited in key order, the cursors only move forward. The
+ * entries of a leaf are produced by a k-way merge of the leaf entries with the messages of all the
+ * cursors that fall into the key range of the leaf, where the message of the upper level wins for
+ * the same key. The memory used is bounded by the tree height and the write buffer size, and does
+ * not depend on the number of keys scanned.
+ *
+ * <p>If a prefetch executor is provided, the scanner starts asynchronous loads of the next children
+ * of a node in the key range as soon as the node is loaded, and starts the load of one more child
+ * each time it moves down to a child, so that up to the given number of child nodes per level are
+ * fetched while the entries under the current child are consumed.
+ */
+class TreeScanner implements CloseableIterator<TreeEntry> {
+
+  private final NodeLoader loader;
+  private final KeyProbe start;
+  private final byte[] end;
+  private final KeyProbe endProbe;
+  private final Executor prefetchExecutor;
+  private final int prefetchNodes;
+  private final Deque<Level> path = new ArrayDeque<>();
+  private TreeEntry next = null;
+
+  TreeScanner(
+      NodeLoader loader,
+      TreeNode root,
+      byte[] start,
+      byte[] end,
+      Executor prefetchExecutor,
+      int prefetchNodes) {
+    this.loader = loader;
+    this.start = new KeyProbe(start);
+    this.end = end;
+    this.endProbe = end != null ? new KeyProbe(end) : null;
+    this.prefetchExecutor = prefetchExecutor;
+    this.prefetchNodes = prefetchExecutor != null ? prefetchNodes : 0;
+    path.addLast(new Level(root.retain(), null));
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (next == null && !path.isEmpty()) {
+      this.next = computeNext();
+      if (next == null) {
+        close();
+      }
+    }
+
+    return next != null;
+  }
+
+  @Override
+  public TreeEntry next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+
+    TreeEntry entry = next;
+    this.next = null;
+    return entry;
+  }
+
+  @Override
+  public void close() {
+    while (!path.isEmpty()) {
+      path.removeLast().close();
+    }
+  }
+
+  private TreeEntry computeNext() {
+    while (!path.isEmpty()) {
+      Level current = path.peekLast();
+      if (!current.node.isLeaf()) {
+        if (current.child > current.lastChild) {
+          pop();
+        } else {
+          descend(current);
+        }
+
+        continue;
+      }
+
+      TreeEntry entry = mergeNext(current);
+      if (entry != null) {
+        return entry;
+      }
+
+      pop();
+    }
+
+    return null;
+  }
+
+  private void pop() {
+    path.removeLast().close();
+    Level parent = path.peekLast();
+    if (parent != null) {
+      parent.child++;
+    }
+  }
+
+  private void descend(Level parent) {
+    int index = parent.child;
+    TreeNode child = parent.takePrefetched();
+    if (child == null) {
+      child = loader.load(parent.node.child(index));
+    }
+
+    byte[] upper = index < parent.node.numKeys() ? parent.node.key(index) : parent.upper;
+    path.addLast(new Level(child, upper));
+  }
+
+  /** Returns the next live entry in the key range of the leaf, or null if there is none. */
+  private TreeEntry mergeNext(Level leaf) {
+    while (true) {
+      byte[] key = minKey(leaf);
+      if (key == null) {
+        return null;
+      }
+
+      BufferMessage latest = null;
+      for (Level level : path) {
+        if (level.messageKey != null && Arrays.equals(level.messageKey, key)) {
+          if (latest == null) {
+            latest = level.message();
+          }
+
+          level.advanceMessage();
+        }
+      }
+
+      String value = latest != null ? latest.value() : null;
+      if (leaf.entryKey != null && Arrays.equals(leaf.entryKey, key)) {
+        if (latest == null) {
+          value = leaf.node.value(leaf.entry);
+        }
+
+        leaf.advanceEntry();
+      }
+
+      if (value != null) {
+        return new TreeEntry(key, value);
+      }
+    }
+  }
+
+  /** Smallest key of all the cursors that is in the key range of the leaf. */
+  private byte[] minKey(Level leaf) {
+    byte[] key = leaf.entryKey;
+    for (Level level : path) {
+      if (level.messageKey != null
+          && (key == null || ByteArrayUtil.compare(level.messageKey, key) < 0)) {
+        key = level.messageKey;
+      }
+    }
+
+    if (key == null || (leaf.bound != null && ByteArrayUtil.compare(key, leaf.bound) >= 0)) {
+      return null;
+    }
+
+    return key;
+  }
+
+  private static <T> T join(CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+
+      throw e;
+    }
+  }
+
+  /** A node on the path of the scan, with its cursors. */
+  private class Level {
+    private final TreeNode node;
+    private final byte[] upper;
+    private final byte[] bound;
+    private final int[] messageOrder;
+    private final Deque<CompletableFuture<TreeNode>> prefetched = new ArrayDeque<>();
+    private int message;
+    private byte[] messageKey;
+    private int entry;
+    private byte[] entryKey;
+    private int child;
+    private int lastChild;
+    private int nextPrefetch;
+
+    /**
+     * @param upper exclusive upper bound of the key range of the node, or null if unbounded
+     */
+    Level(TreeNode node, byte[] upper) {
+      this.node = node;
+      this.upper = upper;
+      this.bound =
+          upper == null || (end != null && ByteArrayUtil.compare(end, upper) < 0) ? end : upper;
+      if (node.isBufferSorted()) {
+        this.messageOrder = null;
+        this.message = node.messageLowerBound(start);
+      } else {
+        this.messageOrder = sortedMessageOrder(node);
+        this.message = 0;
+        while (message < messageOrder.length
+            && ByteArrayUtil.compare(node.messageKey(messageOrder[message]), start.key()) < 0) {
+          message++;
+        }
+      }
+
+      this.messageKey = messageKeyAt(message);
+      if (node.isLeaf()) {
+        this.entry = node.lowerBound(start);
+        this.entryKey = entry < node.numKeys() ? node.key(entry) : null;
+      } else {
+        this.child = node.childIndex(start);
+        this.lastChild = endProbe != null ? node.childIndex(endProbe) : node.numChildren() - 1;
+        this.nextPrefetch = child;
+        prefetch();
+      }
+    }
+
+    BufferMessage message() {
+      return node.message(messageOrder != null ? messageOrder[message] : message);
+    }
+
+    void advanceMessage() {
+      message++;
+      this.messageKey = messageKeyAt(message);
+    }
+
+    void advanceEntry() {
+      entry++;
+      this.entryKey = entry < node.numKeys() ? node.key(entry) : null;
+    }
+
+    /** Starts loading the next children in the key range, up to the prefetch limit. */
+    void prefetch() {
+      while (prefetched.size() < prefetchNodes && nextPrefetch <= lastChild) {
+        prefetched.addLast(loader.loadAsync(node.child(nextPrefetch), prefetchExecutor));
+        nextPrefetch++;
+      }
+    }
+
+    /**
+     * Returns the current child if it is prefetched, or null otherwise. Children are visited in
+     * order, so the current child is always the first prefetched one.
+     */
+    TreeNode takePrefetched() {
+      CompletableFuture<TreeNode> future = prefetched.pollFirst();
+      if (future == null) {
+        return null;
+      }
+
+      // keeps the pipeline full before waiting for the current child
+      prefetch();
+      return join(future);
+    }
+
+    void close() {
+      node.close();
+      for (CompletableFuture<TreeNode> future : prefetched) {
+        future.whenComplete(
+            (prefetchedNode, error) -> {
+              if (prefetchedNode != null) {
+                prefetchedNode.close();
+              }
+            });
+      }
+
+      prefetched.clear();
+    }
+
+    private byte[] messageKeyAt(int index) {
+      int numMessages = messageOrder != null ? messageOrder.length : node.numMessages();
+      if (index >= numMessages) {
+        return null;
+      }
+
+      return node.messageKey(messageOrder != null ? messageOrder[index] : index);
+    }
+  }
+
+  /** Indexes of the latest message of each key of an unsorted write buffer, in key order. */
+  private static int[] sortedMessageOrder(TreeNode node) {
+    NavigableMap<byte[], Integer> latest = new TreeMap<>(ByteArrayUtil.comparator());
+    for (int i = 0; i < node.numMessages(); i++) {
+      latest.put(node.messageKey(i), i);
+    }
+
+    int[] order = new int[latest.size()];
+    int position = 0;
+    for (int index : latest.values()) {
+      order[position++] = index;
+    }
+
+    return order;
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.tree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * The result of applying messages to a tree: the new root node, and the new non-root node files it
+ * references that must be written before the root node file, see the commit atomicity section of
+ * the transaction specification.
+ */
+public class TreeUpdate {
+
+  private final MutableTreeNode root;
+  private final Map<String, MutableTreeNode> newNodes;
+  private final List<SubtreeRewrite> rewrites;
+
+  TreeUpdate(
+      MutableTreeNode root,
+      Map<String, MutableTreeNode> newNodes,
+      List<SubtreeRewrite> rewrites) {
+    this.root = root;
+    this.newNodes = Collections.unmodifiableMap(newNodes);
+    this.rewrites = Collections.unmodifiableList(rewrites);
+  }
+
+  public MutableTreeNode root() {
+    return root;
+  }
+
+  /** New non-root nodes by node file location. */
+  public Map<String, MutableTreeNode> newNodes() {
+    return newNodes;
+  }
+
+  /** Children of the base root node that are rewritten into the subtrees of the new root. */
+  List<SubtreeRewrite> rewrites() {
+    return rewrites;
+  }
+
+  /**
+   * Writes all the new non-root node files in parallel using the executor, and waits for all of
+   * them to complete.
+   */
+  public void writeNewNodes(NodeWriter writer, Executor executor) {
+    List<CompletableFuture<Void>> writes = new ArrayList<>(newNodes.size());
+    for (Map.Entry<String, MutableTreeNode> node : newNodes.entrySet()) {
+      writes.add(
+          CompletableFuture.runAsync(() -> writer.write(node.getKey(), node.getValue()), executor));
+    }
+
+    try {
+      CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[0])).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.util;
+
+import java.nio.charset.StandardCharsets;
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.vector.VarCharVector;
+
+public class ArrowUtil {
+
+  private ArrowUtil() {}
+
+  /**
+   * Compares the value at the given index of a varchar vector against a key, reading the bytes
+   * directly from the off-heap data buffer of the vector.
+   *
+   * @return negative, zero or positive if the vector value is smaller than, equal to or larger
+   *     than the key in unsigned lexicographical order
+   */
+  public static int compare(VarCharVector vector, int index, byte[] key) {
+    ArrowBuf data = vector.getDataBuffer();
+    long start = vector.getStartOffset(index);
+    int length = vector.getValueLength(index);
+    int common = Math.min(length, key.length);
+    for (int i = 0; i < common; i++) {
+      int cmp = (data.getByte(start + i) & 0xFF) - (key[i] & 0xFF);
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+    return length - key.length;
+  }
+
+  /** Checks if the value at the given index of a varchar vector starts with the given byte. */
+  public static boolean startsWith(VarCharVector vector, int index, byte first) {
+    return vector.getValueLength(index) > 0
+        && vector.getDataBuffer().getByte(vector.getStartOffset(index)) == first;
+  }
+
+  public static String getString(VarCharVector vector, int index) {
+    if (vector.isNull(index)) {
+      return null;
+    }
+
+    return new String(vector.get(index), StandardCharsets.UTF_8);
+  }
+}
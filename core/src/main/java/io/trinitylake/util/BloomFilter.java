@@ -0,0 +1,193 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Base64;
+
+/**
+ * A Bloom filter over byte array keys, see the write buffer Bloom filter section of the storage
+ * specification.
+ *
+ * <p>Keys are hashed with the 128-bit x64 variant of MurmurHash3 with seed 0 into two 64-bit
+ * halves {@code h1} and {@code h2}, and the {@code i}-th of the {@code k} bit positions of a key is
+ * {@code ((h1 + i * h2) & Long.MAX_VALUE) % numBits}. Bit {@code j} of the filter is bit {@code j %
+ * 8} of byte {@code j / 8} of its serialized form.
+ */
+public class BloomFilter {
+
+  private static final long C1 = 0x87c37b91114253d5L;
+  private static final long C2 = 0x4cf5ad432745937fL;
+  private static final int MAX_HASH_FUNCTIONS = 16;
+
+  private final long[] bits;
+  private final long numBits;
+  private final int numHashFunctions;
+
+  private BloomFilter(long[] bits, int numHashFunctions) {
+    ValidationUtil.checkArgument(bits.length > 0, "Bloom filter must have at least one bit");
+    ValidationUtil.checkArgument(
+        numHashFunctions > 0 && numHashFunctions <= MAX_HASH_FUNCTIONS,
+        "Number of hash functions must be between 1 and %s, but got %s",
+        MAX_HASH_FUNCTIONS,
+        numHashFunctions);
+    this.bits = bits;
+    this.numBits = (long) bits.length * Long.SIZE;
+    this.numHashFunctions = numHashFunctions;
+  }
+
+  /**
+   * Creates an empty filter sized for the expected number of distinct keys and false positive
+   * probability.
+   */
+  public static BloomFilter create(int expectedKeys, double falsePositiveProbability) {
+    ValidationUtil.checkArgument(
+        falsePositiveProbability > 0 && falsePositiveProbability < 1,
+        "False positive probability must be between 0 and 1, but got %s",
+        falsePositiveProbability);
+    int keys = Math.max(1, expectedKeys);
+    double optimalBits = -keys * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2));
+    int numWords = (int) Math.max(1, Math.ceil(optimalBits / Long.SIZE));
+    long numBits = (long) numWords * Long.SIZE;
+    int numHashFunctions = (int) Math.round((double) numBits / keys * Math.log(2));
+    return new BloomFilter(
+        new long[numWords], Math.min(MAX_HASH_FUNCTIONS, Math.max(1, numHashFunctions)));
+  }
+
+  /** Reads a filter from its serialized bits encoded in base64. */
+  public static BloomFilter fromBase64(String encoded, int numHashFunctions) {
+    byte[] bytes = Base64.getDecoder().decode(encoded);
+    ValidationUtil.checkArgument(
+        bytes.length % Long.BYTES == 0,
+        "Invalid Bloom filter size %s, must be a multiple of %s bytes",
+        bytes.length,
+        Long.BYTES);
+    long[] bits = new long[bytes.length / Long.BYTES];
+    ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(bits);
+    return new BloomFilter(bits, numHashFunctions);
+  }
+
+  public String toBase64() {
+    ByteBuffer bytes = ByteBuffer.allocate(bits.length * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    bytes.asLongBuffer().put(bits);
+    return Base64.getEncoder().encodeToString(bytes.array());
+  }
+
+  public int numHashFunctions() {
+    return numHashFunctions;
+  }
+
+  public long numBits() {
+    return numBits;
+  }
+
+  public void put(byte[] key) {
+    long[] hash = hash(key);
+    long combined = hash[0];
+    for (int i = 0; i < numHashFunctions; i++) {
+      long index = (combined & Long.MAX_VALUE) % numBits;
+      bits[(int) (index >>> 6)] |= 1L << index;
+      combined += hash[1];
+    }
+  }
+
+  public boolean mightContain(byte[] key) {
+    return mightContain(hash(key));
+  }
+
+  /** Checks a key by its hash computed with {@link #hash(byte[])}. */
+  public boolean mightContain(long[] hash) {
+    long combined = hash[0];
+    for (int i = 0; i < numHashFunctions; i++) {
+      long index = (combined & Long.MAX_VALUE) % numBits;
+      if ((bits[(int) (index >>> 6)] & (1L << index)) == 0) {
+        return false;
+      }
+
+      combined += hash[1];
+    }
+
+    return true;
+  }
+
+  /**
+   * Hashes a key with the 128-bit x64 variant of MurmurHash3 with seed 0, which can be computed
+   * once and checked against the filters of multiple nodes.
+   *
+   * @return the two 64-bit halves of the hash
+   */
+  public static long[] hash(byte[] key) {
+    long h1 = 0;
+    long h2 = 0;
+    int numBlocks = key.length / 16;
+    ByteBuffer blocks = ByteBuffer.wrap(key).order(ByteOrder.LITTLE_ENDIAN);
+    for (int i = 0; i < numBlocks; i++) {
+      h1 ^= mixK1(blocks.getLong(i * 16));
+      h1 = Long.rotateLeft(h1, 27) + h2;
+      h1 = h1 * 5 + 0x52dce729;
+      h2 ^= mixK2(blocks.getLong(i * 16 + 8));
+      h2 = Long.rotateLeft(h2, 31) + h1;
+      h2 = h2 * 5 + 0x38495ab5;
+    }
+
+    int tail = numBlocks * 16;
+    long k1 = 0;
+    long k2 = 0;
+    for (int i = tail; i < key.length; i++) {
+      int shift = ((i - tail) % 8) * 8;
+      if (i - tail < 8) {
+        k1 ^= (key[i] & 0xFFL) << shift;
+      } else {
+        k2 ^= (key[i] & 0xFFL) << shift;
+      }
+    }
+
+    if (key.length - tail > 8) {
+      h2 ^= mixK2(k2);
+    }
+
+    if (key.length > tail) {
+      h1 ^= mixK1(k1);
+    }
+
+    h1 ^= key.length;
+    h2 ^= key.length;
+    h1 += h2;
+    h2 += h1;
+    h1 = fmix64(h1);
+    h2 = fmix64(h2);
+    h1 += h2;
+    h2 += h1;
+    return new long[] {h1, h2};
+  }
+
+  private static long mixK1(long k1) {
+    return Long.rotateLeft(k1 * C1, 31) * C2;
+  }
+
+  private static long mixK2(long k2) {
+    return Long.rotateLeft(k2 * C2, 33) * C1;
+  }
+
+  private static long fmix64(long value) {
+    long k = value;
+    k ^= k >>> 33;
+    k *= 0xff51afd7ed558ccdL;
+    k ^= k >>> 33;
+    k *= 0xc4ceb9fe1a85ec53L;
+    k ^= k >>> 33;
+    return k;
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+public class ByteArrayUtil {
+
+  private static final Comparator<byte[]> UNSIGNED_COMPARATOR = ByteArrayUtil::compare;
+
+  private ByteArrayUtil() {}
+
+  /**
+   * Compares two byte arrays lexicographically, treating each byte as unsigned. This is the
+   * ordering of UTF-8 encoded keys in a TrinityLake tree.
+   */
+  public static int compare(byte[] left, byte[] right) {
+    int common = Math.min(left.length, right.length);
+    for (int i = 0; i < common; i++) {
+      int cmp = (left[i] & 0xFF) - (right[i] & 0xFF);
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+    return left.length - right.length;
+  }
+
+  /**
+   * Returns the smallest byte array that is larger than all byte arrays starting with the given
+   * prefix, or null if there is no such array because the prefix only has 0xFF bytes.
+   */
+  public static byte[] prefixEnd(byte[] prefix) {
+    for (int i = prefix.length - 1; i >= 0; i--) {
+      if (prefix[i] != (byte) 0xFF) {
+        byte[] end = Arrays.copyOf(prefix, i + 1);
+        end[i]++;
+        return end;
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Returns the shortest prefix of the right byte array that is larger than the left byte array,
+   * which separates the two arrays with {@code left < separator <= right}.
+   */
+  public static byte[] shortestSeparator(byte[] left, byte[] right) {
+    ValidationUtil.checkArgument(
+        compare(left, right) < 0, "Left array must be smaller than the right array");
+    int common = 0;
+    while (common < left.length && left[common] == right[common]) {
+      common++;
+    }
+
+    return Arrays.copyOf(right, common + 1);
+  }
+
+  public static Comparator<byte[]> comparator() {
+    return UNSIGNED_COMPARATOR;
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.util;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * An iterator over resources that must be released, such as the tree nodes of a scan, by closing
+ * the iterator when it is not fully consumed.
+ */
+public interface CloseableIterator<T> extends Iterator<T>, AutoCloseable {
+
+  @Override
+  void close();
+
+  /** Returns an iterator of the elements of the given iterator transformed by the function. */
+  static <I, O> CloseableIterator<O> transform(
+      CloseableIterator<I> iterator, Function<I, O> transform) {
+    return new CloseableIterator<O>() {
+      @Override
+      public boolean hasNext() {
+        return iterator.hasNext();
+      }
+
+      @Override
+      public O next() {
+        return transform.apply(iterator.next());
+      }
+
+      @Override
+      public void close() {
+        iterator.close();
+      }
+    };
+  }
+
+  /** Returns an iterator of the elements of the given iterator that match the predicate. */
+  static <T> CloseableIterator<T> filter(CloseableIterator<T> iterator, Predicate<T> predicate) {
+    return new CloseableIterator<T>() {
+      private T next = null;
+      private boolean hasNext = false;
+
+      @Override
+      public boolean hasNext() {
+        while (!hasNext && iterator.hasNext()) {
+          T candidate = iterator.next();
+          if (predicate.test(candidate)) {
+            this.next = candidate;
+            this.hasNext = true;
+          }
+        }
+
+        return hasNext;
+      }
+
+      @Override
+      public T next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+
+        this.hasNext = false;
+        return next;
+      }
+
+      @Override
+      public void close() {
+        iterator.close();
+      }
+    };
+  }
+}
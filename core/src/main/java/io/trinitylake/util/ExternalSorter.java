@@ -0,0 +1,501 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts records of a byte array key and a byte array value by key, using a bounded amount of memory
+ * by spilling sorted runs to local temporary files.
+ *
+ * <p>Added records are appended to an off-heap run buffer, and their offsets are kept at the end of
+ * the same buffer, so a run never takes more memory than the buffer. When the buffer is full, its
+ * records are sorted in place and written as a run file, and the buffer is reused for the next
+ * run. The sorted records are then read by a k-way merge of the run files and the records left in
+ * the buffer, which only keeps one record of each run in memory. When there are more run files
+ * than the merge fan-in, consecutive run files are first merged into larger run files in passes,
+ * so that at most fan-in run files are open at once. Keys are compared as unsigned bytes, and
+ * records with the same key are returned in the order they were added.
+ *
+ * <p>The run files are deleted when the sorter is closed, which also happens when the iterator
+ * returned by {@link #sorted()} is closed.
+ */
+public class ExternalSorter implements AutoCloseable {
+
+  // key length and value length of a record
+  private static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+
+  // offset of a record in the run buffer
+  private static final int RECORD_OFFSET_SIZE = Integer.BYTES;
+
+  private static final Comparator<Run> RUN_ORDER =
+      (left, right) -> {
+        int compare = ByteArrayUtil.compare(left.current.key, right.current.key);
+        // records of earlier runs were added first
+        return compare != 0 ? compare : Integer.compare(left.index, right.index);
+      };
+
+  private final Path spillDirectory;
+  private final int maxMergeFanIn;
+  private final ByteBuffer runBuffer;
+  private final List<Path> runFiles = new ArrayList<>();
+  private int numRecords = 0;
+  private boolean sorted = false;
+
+  /**
+   * @param runBufferSizeBytes size of the off-heap buffer holding the records of a run and their
+   *     offsets, which bounds the size of a single record
+   * @param maxMergeFanIn maximum number of runs merged at once
+   * @param spillDirectory directory of the run files
+   */
+  public ExternalSorter(int runBufferSizeBytes, int maxMergeFanIn, Path spillDirectory) {
+    ValidationUtil.checkArgument(
+        runBufferSizeBytes > RECORD_HEADER_SIZE + RECORD_OFFSET_SIZE,
+        "Run buffer size must be larger than %s, but got %s",
+        RECORD_HEADER_SIZE + RECORD_OFFSET_SIZE,
+        runBufferSizeBytes);
+    ValidationUtil.checkArgument(
+        maxMergeFanIn >= 2, "Merge fan-in must be at least 2, but got %s", maxMergeFanIn);
+    ValidationUtil.checkNotNull(spillDirectory, "Spill directory must not be null");
+    this.spillDirectory = spillDirectory;
+    this.maxMergeFanIn = maxMergeFanIn;
+    this.runBuffer = ByteBuffer.allocateDirect(runBufferSizeBytes);
+  }
+
+  /** Number of run files, which are the spilled runs and the runs merged from them. */
+  public int numSpilledRuns() {
+    return runFiles.size();
+  }
+
+  public ExternalSorter add(byte[] key, byte[] value) {
+    ValidationUtil.checkState(!sorted, "Cannot add records after reading the sorted records");
+    int recordSize = RECORD_HEADER_SIZE + key.length + value.length;
+    ValidationUtil.checkArgument(
+        recordSize + RECORD_OFFSET_SIZE <= runBuffer.capacity(),
+        "Record of %s bytes does not fit in run buffer of %s bytes",
+        recordSize,
+        runBuffer.capacity());
+    if (recordSize + RECORD_OFFSET_SIZE > freeBytes()) {
+      spill();
+    }
+
+    setOffset(numRecords++, runBuffer.position());
+    runBuffer.putInt(key.length).putInt(value.length).put(key).put(value);
+    return this;
+  }
+
+  /**
+   * Returns the records sorted by key. Records cannot be added anymore once the sorted records are
+   * read.
+   */
+  public CloseableIterator<Record> sorted() {
+    ValidationUtil.checkState(!sorted, "Sorted records can only be read once");
+    this.sorted = true;
+    sortRun();
+    PriorityQueue<Run> runs;
+    try {
+      // leave room for the records left in the buffer
+      while (runFiles.size() >= maxMergeFanIn) {
+        mergeRunFiles();
+      }
+
+      runs = openRuns(runFiles, true);
+    } catch (RuntimeException e) {
+      close();
+      throw e;
+    }
+
+    return new MergeIterator(runs);
+  }
+
+  @Override
+  public void close() {
+    for (Path runFile : runFiles) {
+      deleteRunFile(runFile);
+    }
+
+    runFiles.clear();
+    runBuffer.clear();
+    this.numRecords = 0;
+  }
+
+  private int freeBytes() {
+    return runBuffer.capacity() - runBuffer.position() - numRecords * RECORD_OFFSET_SIZE;
+  }
+
+  /** Returns the offset of a record, stored backwards from the end of the run buffer. */
+  private int offset(int index) {
+    return runBuffer.getInt(runBuffer.capacity() - (index + 1) * RECORD_OFFSET_SIZE);
+  }
+
+  private void setOffset(int index, int offset) {
+    runBuffer.putInt(runBuffer.capacity() - (index + 1) * RECORD_OFFSET_SIZE, offset);
+  }
+
+  private void spill() {
+    sortRun();
+    Path runFile = newRunFile();
+    byte[] record = new byte[0];
+    try (DataOutputStream out = newRunOutput(runFile)) {
+      for (int i = 0; i < numRecords; i++) {
+        int offset = offset(i);
+        int keyLength = runBuffer.getInt(offset);
+        int recordSize = RECORD_HEADER_SIZE + keyLength + runBuffer.getInt(offset + Integer.BYTES);
+        if (record.length < recordSize) {
+          record = new byte[Math.max(recordSize, 2 * record.length)];
+        }
+
+        ByteBuffer slice = runBuffer.duplicate();
+        slice.position(offset);
+        slice.get(record, 0, recordSize);
+        out.write(record, 0, recordSize);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to write run file " + runFile, e);
+    }
+
+    runBuffer.clear();
+    this.numRecords = 0;
+  }
+
+  /**
+   * Merges each group of up to fan-in consecutive run files into a single run file, which keeps
+   * the order of equal keys across the merged runs.
+   */
+  private void mergeRunFiles() {
+    List<Path> inputs = new ArrayList<>(runFiles);
+    List<Path> outputs = new ArrayList<>();
+    for (int start = 0; start < inputs.size(); start += maxMergeFanIn) {
+      List<Path> group = inputs.subList(start, Math.min(start + maxMergeFanIn, inputs.size()));
+      if (group.size() == 1) {
+        outputs.add(group.get(0));
+        continue;
+      }
+
+      Path output = newRunFile();
+      outputs.add(output);
+      mergeRuns(group, output);
+      for (Path input : group) {
+        deleteRunFile(input);
+        runFiles.remove(input);
+      }
+    }
+
+    runFiles.clear();
+    runFiles.addAll(outputs);
+  }
+
+  private void mergeRuns(List<Path> inputs, Path output) {
+    PriorityQueue<Run> runs = openRuns(inputs, false);
+    try (DataOutputStream out = newRunOutput(output)) {
+      while (!runs.isEmpty()) {
+        Run run = runs.poll();
+        out.writeInt(run.current.key.length);
+        out.writeInt(run.current.value.length);
+        out.write(run.current.key);
+        out.write(run.current.value);
+        addIfNotEmpty(runs, run);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to write run file " + output, e);
+    } finally {
+      runs.forEach(Run::close);
+    }
+  }
+
+  private PriorityQueue<Run> openRuns(List<Path> files, boolean includeBuffer) {
+    PriorityQueue<Run> runs = new PriorityQueue<>(files.size() + 1, RUN_ORDER);
+    try {
+      for (int i = 0; i < files.size(); i++) {
+        addIfNotEmpty(runs, new FileRun(i, files.get(i)));
+      }
+
+      if (includeBuffer) {
+        addIfNotEmpty(runs, new BufferRun(files.size()));
+      }
+    } catch (RuntimeException e) {
+      runs.forEach(Run::close);
+      throw e;
+    }
+
+    return runs;
+  }
+
+  /** Creates a new run file, which is tracked to be deleted when the sorter is closed. */
+  private Path newRunFile() {
+    Path runFile;
+    try {
+      runFile = Files.createTempFile(spillDirectory, "trinitylake-sort-", ".run");
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to create run file in " + spillDirectory, e);
+    }
+
+    runFiles.add(runFile);
+    return runFile;
+  }
+
+  private static DataOutputStream newRunOutput(Path runFile) throws IOException {
+    return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(runFile)));
+  }
+
+  private static void deleteRunFile(Path runFile) {
+    try {
+      Files.deleteIfExists(runFile);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to delete run file " + runFile, e);
+    }
+  }
+
+  /**
+   * Sorts the record offsets of the run buffer by key with an in-place heap sort, so that sorting
+   * takes no memory beyond the buffer. Records of equal keys are ordered by their offsets, which
+   * keeps the order they were added.
+   */
+  private void sortRun() {
+    if (isRunSorted()) {
+      return;
+    }
+
+    for (int i = numRecords / 2 - 1; i >= 0; i--) {
+      siftDown(i, numRecords);
+    }
+
+    for (int end = numRecords - 1; end > 0; end--) {
+      swapOffsets(0, end);
+      siftDown(0, end);
+    }
+  }
+
+  private boolean isRunSorted() {
+    for (int i = 1; i < numRecords; i++) {
+      if (compareRecords(i - 1, i) > 0) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  private void siftDown(int index, int size) {
+    int parent = index;
+    int child = 2 * parent + 1;
+    while (child < size) {
+      if (child + 1 < size && compareRecords(child + 1, child) > 0) {
+        child += 1;
+      }
+
+      if (compareRecords(parent, child) >= 0) {
+        return;
+      }
+
+      swapOffsets(parent, child);
+      parent = child;
+      child = 2 * parent + 1;
+    }
+  }
+
+  private void swapOffsets(int left, int right) {
+    int offset = offset(left);
+    setOffset(left, offset(right));
+    setOffset(right, offset);
+  }
+
+  private int compareRecords(int left, int right) {
+    int leftOffset = offset(left);
+    int rightOffset = offset(right);
+    int compare = compareKeys(leftOffset, rightOffset);
+    return compare != 0 ? compare : Integer.compare(leftOffset, rightOffset);
+  }
+
+  /** Compares the keys of two records in the run buffer as unsigned bytes, without copying them. */
+  private int compareKeys(int leftOffset, int rightOffset) {
+    int leftLength = runBuffer.getInt(leftOffset);
+    int rightLength = runBuffer.getInt(rightOffset);
+    int leftStart = leftOffset + RECORD_HEADER_SIZE;
+    int rightStart = rightOffset + RECORD_HEADER_SIZE;
+    int length = Math.min(leftLength, rightLength);
+    for (int i = 0; i < length; i++) {
+      int left = runBuffer.get(leftStart + i) & 0xFF;
+      int right = runBuffer.get(rightStart + i) & 0xFF;
+      int compare = Integer.compare(left, right);
+      if (compare != 0) {
+        return compare;
+      }
+    }
+
+    return Integer.compare(leftLength, rightLength);
+  }
+
+  private static void addIfNotEmpty(PriorityQueue<Run> runs, Run run) {
+    if (run.advance()) {
+      runs.add(run);
+    } else {
+      run.close();
+    }
+  }
+
+  /** A key and value returned by the sorter. */
+  public static class Record {
+    private final byte[] key;
+    private final byte[] value;
+
+    Record(byte[] key, byte[] value) {
+      this.key = key;
+      this.value = value;
+    }
+
+    public byte[] key() {
+      return key;
+    }
+
+    public byte[] value() {
+      return value;
+    }
+  }
+
+  /** A sorted run of records, positioned at its current record. */
+  private abstract static class Run implements AutoCloseable {
+    private final int index;
+    private Record current = null;
+
+    Run(int index) {
+      this.index = index;
+    }
+
+    /** Moves to the next record, returning false at the end of the run. */
+    boolean advance() {
+      this.current = readNext();
+      return current != null;
+    }
+
+    abstract Record readNext();
+
+    @Override
+    public void close() {}
+  }
+
+  private class BufferRun extends Run {
+    private int position = 0;
+
+    BufferRun(int index) {
+      super(index);
+    }
+
+    @Override
+    Record readNext() {
+      if (position >= numRecords) {
+        return null;
+      }
+
+      int offset = offset(position++);
+      ByteBuffer slice = runBuffer.duplicate();
+      slice.position(offset);
+      byte[] key = new byte[slice.getInt()];
+      byte[] value = new byte[slice.getInt()];
+      slice.get(key).get(value);
+      return new Record(key, value);
+    }
+  }
+
+  private static class FileRun extends Run {
+    private final Path path;
+    private final DataInputStream in;
+
+    FileRun(int index, Path path) {
+      super(index);
+      this.path = path;
+      try {
+        this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)));
+      } catch (IOException e) {
+        throw new UncheckedIOException("Failed to open run file " + path, e);
+      }
+    }
+
+    @Override
+    Record readNext() {
+      try {
+        int keyLength;
+        try {
+          keyLength = in.readInt();
+        } catch (EOFException e) {
+          // end of the run
+          return null;
+        }
+
+        byte[] key = new byte[keyLength];
+        byte[] value = new byte[in.readInt()];
+        in.readFully(key);
+        in.readFully(value);
+        return new Record(key, value);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Failed to read run file " + path, e);
+      }
+    }
+
+    @Override
+    public void close() {
+      try {
+        in.close();
+      } catch (IOException e) {
+        throw new UncheckedIOException("Failed to close run file " + path, e);
+      }
+    }
+  }
+
+  private class MergeIterator implements CloseableIterator<Record> {
+    private final PriorityQueue<Run> runs;
+
+    MergeIterator(PriorityQueue<Run> runs) {
+      this.runs = runs;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return !runs.isEmpty();
+    }
+
+    @Override
+    public Record next() {
+      Run run = runs.poll();
+      if (run == null) {
+        throw new NoSuchElementException();
+      }
+
+      Record record = run.current;
+      addIfNotEmpty(runs, run);
+      return record;
+    }
+
+    @Override
+    public void close() {
+      runs.forEach(Run::close);
+      runs.clear();
+      ExternalSorter.this.close();
+    }
+  }
+}
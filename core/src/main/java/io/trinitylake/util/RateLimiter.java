@@ -0,0 +1,79 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * A token bucket that allows a number of permits per period, with bursts of up to one period of
+ * permits.
+ *
+ * <p>An acquisition of more permits than a full bucket holds succeeds once the bucket is full and
+ * leaves the bucket in debt, which is paid back before the next acquisition succeeds, so that the
+ * long-running rate is kept even for large acquisitions.
+ */
+public class RateLimiter {
+
+  private final double capacity;
+  private final double permitsPerNano;
+  private final LongSupplier nanoClock;
+  private double available;
+  private long lastRefillNanos;
+
+  public RateLimiter(long permits, long period, TimeUnit unit) {
+    this(permits, period, unit, System::nanoTime);
+  }
+
+  RateLimiter(long permits, long period, TimeUnit unit, LongSupplier nanoClock) {
+    ValidationUtil.checkArgument(permits > 0, "Permits must be positive, but got %s", permits);
+    ValidationUtil.checkArgument(period > 0, "Period must be positive, but got %s", period);
+    this.capacity = permits;
+    this.permitsPerNano = (double) permits / unit.toNanos(period);
+    this.nanoClock = nanoClock;
+    this.available = permits;
+    this.lastRefillNanos = nanoClock.getAsLong();
+  }
+
+  /**
+   * Acquires the permits if they are available, without waiting.
+   *
+   * @return whether the permits are acquired
+   */
+  public synchronized boolean tryAcquire(long permits) {
+    refill();
+    if (available < Math.min(permits, capacity)) {
+      return false;
+    }
+
+    available -= permits;
+    return true;
+  }
+
+  /**
+   * Gives back permits acquired by {@link #tryAcquire(long)} for work that was not done, which
+   * also pays back the debt left by a large acquisition. The bucket does not grow beyond one period
+   * of permits.
+   */
+  public synchronized void release(long permits) {
+    refill();
+    available = Math.min(capacity, available + permits);
+  }
+
+  private void refill() {
+    long now = nanoClock.getAsLong();
+    available = Math.min(capacity, available + (now - lastRefillNanos) * permitsPerNano);
+    lastRefillNanos = now;
+  }
+}
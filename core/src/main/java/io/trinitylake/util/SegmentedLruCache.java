@@ -0,0 +1,199 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * A weight-bounded segmented LRU cache.
+ *
+ * <p>New entries are admitted to a probation segment, and are promoted to a protected segment when
+ * they are accessed again. The protected segment takes at most a fixed ratio of the total weight,
+ * and its least recently used entries are demoted back to probation. Eviction always starts from
+ * the least recently used entry of the probation segment, so entries that are accessed repeatedly,
+ * like the upper levels of a tree, are not flushed out by a scan of entries accessed only once.
+ *
+ * <p>Values handed out to callers go through the {@code acquire} function, and values that leave
+ * the cache go through the {@code release} function, both while holding the cache lock. This
+ * allows caching reference counted values that might still be in use after eviction.
+ */
+public class SegmentedLruCache<K, V> {
+
+  private final long maxWeight;
+  private final long maxProtectedWeight;
+  private final ToLongFunction<V> weigher;
+  private final UnaryOperator<V> acquire;
+  private final Consumer<V> release;
+
+  private final Map<K, Entry<V>> probation = new LinkedHashMap<>();
+  private final Map<K, Entry<V>> protectedSegment = new LinkedHashMap<>();
+  private long probationWeight = 0;
+  private long protectedWeight = 0;
+  private long hitCount = 0;
+  private long missCount = 0;
+  private long evictionCount = 0;
+
+  public SegmentedLruCache(
+      long maxWeight,
+      double protectedRatio,
+      ToLongFunction<V> weigher,
+      UnaryOperator<V> acquire,
+      Consumer<V> release) {
+    ValidationUtil.checkArgument(maxWeight >= 0, "Max weight must not be negative: %s", maxWeight);
+    ValidationUtil.checkArgument(
+        protectedRatio >= 0 && protectedRatio <= 1,
+        "Protected ratio must be between 0 and 1: %s",
+        protectedRatio);
+    this.maxWeight = maxWeight;
+    this.maxProtectedWeight = (long) (maxWeight * protectedRatio);
+    this.weigher = weigher;
+    this.acquire = acquire;
+    this.release = release;
+  }
+
+  /** Returns the acquired cached value of the key, or null if the key is not cached. */
+  public synchronized V get(K key) {
+    Entry<V> entry = protectedSegment.remove(key);
+    if (entry != null) {
+      protectedSegment.put(key, entry);
+    } else {
+      entry = probation.remove(key);
+      if (entry == null) {
+        missCount++;
+        return null;
+      }
+
+      probationWeight -= entry.weight;
+      protectedSegment.put(key, entry);
+      protectedWeight += entry.weight;
+      demoteProtected();
+    }
+
+    hitCount++;
+    return acquire.apply(entry.value);
+  }
+
+  /**
+   * Caches the value if the key is not cached yet. The cache takes over the given value, and
+   * returns the value the caller should use, which is either the acquired given value, the
+   * acquired existing value of the key, or the given value as is if it is too large to be cached.
+   */
+  public synchronized V putIfAbsent(K key, V value) {
+    Entry<V> existing = protectedSegment.get(key);
+    if (existing == null) {
+      existing = probation.get(key);
+    }
+
+    if (existing != null) {
+      release.accept(value);
+      return acquire.apply(existing.value);
+    }
+
+    long weight = weigher.applyAsLong(value);
+    if (weight > maxWeight) {
+      return value;
+    }
+
+    // acquire before making room, so the value is never released while handed out
+    V acquired = acquire.apply(value);
+    probation.put(key, new Entry<>(value, weight));
+    probationWeight += weight;
+    evict(key);
+    return acquired;
+  }
+
+  public synchronized void invalidateAll() {
+    probation.values().forEach(entry -> release.accept(entry.value));
+    protectedSegment.values().forEach(entry -> release.accept(entry.value));
+    probation.clear();
+    protectedSegment.clear();
+    probationWeight = 0;
+    protectedWeight = 0;
+  }
+
+  public synchronized long weight() {
+    return probationWeight + protectedWeight;
+  }
+
+  public synchronized int size() {
+    return probation.size() + protectedSegment.size();
+  }
+
+  public long maxWeight() {
+    return maxWeight;
+  }
+
+  public synchronized long hitCount() {
+    return hitCount;
+  }
+
+  public synchronized long missCount() {
+    return missCount;
+  }
+
+  public synchronized long evictionCount() {
+    return evictionCount;
+  }
+
+  private void demoteProtected() {
+    Iterator<Map.Entry<K, Entry<V>>> eldest = protectedSegment.entrySet().iterator();
+    while (protectedWeight > maxProtectedWeight && eldest.hasNext()) {
+      Map.Entry<K, Entry<V>> demoted = eldest.next();
+      eldest.remove();
+      protectedWeight -= demoted.getValue().weight;
+      probation.put(demoted.getKey(), demoted.getValue());
+      probationWeight += demoted.getValue().weight;
+    }
+  }
+
+  /**
+   * Evicts entries until the cache fits in its max weight. The admitted key is the newest entry of
+   * the probation segment, and it is only evicted after all the other entries.
+   */
+  private void evict(K admitted) {
+    while (probationWeight + protectedWeight > maxWeight) {
+      boolean onlyAdmitted = probation.size() == 1 && probation.containsKey(admitted);
+      Map<K, Entry<V>> segment =
+          probation.isEmpty() || (onlyAdmitted && !protectedSegment.isEmpty())
+              ? protectedSegment
+              : probation;
+      Iterator<Entry<V>> eldest = segment.values().iterator();
+      Entry<V> evicted = eldest.next();
+      eldest.remove();
+      if (segment == probation) {
+        probationWeight -= evicted.weight;
+      } else {
+        protectedWeight -= evicted.weight;
+      }
+
+      evictionCount++;
+      release.accept(evicted.value);
+    }
+  }
+
+  private static class Entry<V> {
+    private final V value;
+    private final long weight;
+
+    Entry(V value, long weight) {
+      this.value = value;
+      this.weight = weight;
+    }
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.util;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ThreadPools {
+
+  private ThreadPools() {}
+
+  /**
+   * Creates an executor for blocking I/O tasks that runs at most the given number of tasks at the
+   * same time.
+   *
+   * <p>When running on JDK 21 or later and virtual threads are preferred, each task runs in a new
+   * virtual thread, and tasks beyond the parallelism wait for a permit in their virtual thread.
+   * Otherwise, the tasks run in a fixed pool of daemon platform threads.
+   */
+  public static ExecutorService newBoundedIoExecutor(
+      String namePrefix, int parallelism, boolean preferVirtualThreads) {
+    ValidationUtil.checkArgument(
+        parallelism > 0, "Parallelism must be positive, but got %s", parallelism);
+    if (preferVirtualThreads) {
+      ExecutorService virtualThreads = newVirtualThreadPerTaskExecutor();
+      if (virtualThreads != null) {
+        return new BoundedExecutorService(virtualThreads, parallelism);
+      }
+    }
+
+    return Executors.newFixedThreadPool(parallelism, daemonThreadFactory(namePrefix));
+  }
+
+  /** Creates a scheduled executor that runs its tasks in a single daemon platform thread. */
+  public static ScheduledExecutorService newScheduledExecutor(String namePrefix) {
+    return Executors.newSingleThreadScheduledExecutor(daemonThreadFactory(namePrefix));
+  }
+
+  /** Whether virtual threads are supported by the running JVM. */
+  public static boolean virtualThreadsAvailable() {
+    return virtualThreadFactoryMethod() != null;
+  }
+
+  private static ExecutorService newVirtualThreadPerTaskExecutor() {
+    Method method = virtualThreadFactoryMethod();
+    if (method == null) {
+      return null;
+    }
+
+    try {
+      return (ExecutorService) method.invoke(null);
+    } catch (IllegalAccessException | InvocationTargetException e) {
+      throw new IllegalStateException("Failed to create virtual thread executor", e);
+    }
+  }
+
+  private static Method virtualThreadFactoryMethod() {
+    try {
+      // the source level is Java 8, so virtual threads of JDK 21 can only be used by reflection
+      return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  private static ThreadFactory daemonThreadFactory(String namePrefix) {
+    AtomicInteger count = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, namePrefix + "-" + count.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  /** An executor service that limits the number of tasks that run at the same time. */
+  private static class BoundedExecutorService extends AbstractExecutorService {
+    private final ExecutorService delegate;
+    private final Semaphore permits;
+
+    BoundedExecutorService(ExecutorService delegate, int parallelism) {
+      this.delegate = delegate;
+      this.permits = new Semaphore(parallelism);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+      delegate.execute(
+          () -> {
+            permits.acquireUninterruptibly();
+            try {
+              command.run();
+            } finally {
+              permits.release();
+            }
+          });
+    }
+
+    @Override
+    public void shutdown() {
+      delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+      return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+      return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+      return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+      return delegate.awaitTermination(timeout, unit);
+    }
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake;
+
+import io.trinitylake.tree.BufferBudget;
+import io.trinitylake.tree.BufferMessage;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestAdaptiveBufferBudget {
+
+  private static final LakeHouseDef DEF =
+      LakeHouseDef.builder("test")
+          .order(4)
+          .namespaceNameMaxSizeBytes(8)
+          .tableNameMaxSizeBytes(8)
+          .fileNameMaxSizeBytes(16)
+          .nodeFileMaxSizeBytes(10000)
+          .build();
+
+  @Test
+  public void testBudgetFollowsWriteRatio() {
+    AdaptiveBufferBudget budget = new AdaptiveBufferBudget(DEF, 0.1, 10, 64, 1000);
+    long bufferSize = DEF.writeBufferSizeBytes();
+    byte[] stagingTable = ObjectKeys.tableKey("staging", "t1", DEF);
+    byte[] martTable = ObjectKeys.tableKey("mart", "t1", DEF);
+    for (int i = 0; i < 9; i++) {
+      budget.recordWrite(stagingTable);
+      budget.recordRead(martTable);
+    }
+
+    Assertions.assertEquals(bufferSize, budget.bufferSizeBytes(stagingTable));
+    Assertions.assertEquals(bufferSize, budget.bufferSizeBytes(martTable));
+
+    budget.recordRead(stagingTable);
+    budget.recordRead(martTable);
+    Assertions.assertEquals((long) (bufferSize * 0.9), budget.bufferSizeBytes(stagingTable));
+    Assertions.assertEquals((long) (bufferSize * 0.1), budget.bufferSizeBytes(martTable));
+
+    // tables share the budget of their namespace
+    Assertions.assertEquals(
+        budget.bufferSizeBytes(stagingTable),
+        budget.bufferSizeBytes(ObjectKeys.namespaceKey("staging", DEF)));
+    Assertions.assertEquals(
+        bufferSize, budget.bufferSizeBytes(ObjectKeys.tableKey("other", "t1", DEF)));
+  }
+
+  @Test
+  public void testCountersDecay() {
+    AdaptiveBufferBudget budget = new AdaptiveBufferBudget(DEF, 0.1, 10, 64, 20);
+    long bufferSize = DEF.writeBufferSizeBytes();
+    byte[] table = ObjectKeys.tableKey("mart", "t1", DEF);
+    for (int i = 0; i < 20; i++) {
+      budget.recordRead(table);
+    }
+
+    // halved to 10 reads
+    Assertions.assertEquals((long) (bufferSize * 0.1), budget.bufferSizeBytes(table));
+
+    for (int i = 0; i < 20; i++) {
+      budget.recordWrite(table);
+    }
+
+    // halved to 5 reads and 10 writes, the cumulative ratio would be 20 writes out of 40
+    Assertions.assertEquals((long) (bufferSize * (10.0 / 15)), budget.bufferSizeBytes(table));
+  }
+
+  @Test
+  public void testLeastObservedNamespaceIsEvicted() {
+    // a single set of 4 namespaces
+    AdaptiveBufferBudget budget = new AdaptiveBufferBudget(DEF, 0.1, 10, 4, 1000);
+    long bufferSize = DEF.writeBufferSizeBytes();
+    for (int namespace = 0; namespace < 5; namespace++) {
+      byte[] table = ObjectKeys.tableKey("ns" + namespace, "t1", DEF);
+      for (int i = 0; i < 10 + namespace; i++) {
+        budget.recordRead(table);
+      }
+    }
+
+    Assertions.assertEquals(
+        bufferSize, budget.bufferSizeBytes(ObjectKeys.tableKey("ns0", "t1", DEF)));
+    for (int namespace = 1; namespace < 5; namespace++) {
+      Assertions.assertEquals(
+          (long) (bufferSize * 0.1),
+          budget.bufferSizeBytes(ObjectKeys.tableKey("ns" + namespace, "t1", DEF)));
+    }
+  }
+
+  @Test
+  public void testMessagesExceedBudgetPerNamespace() {
+    AdaptiveBufferBudget budget = new AdaptiveBufferBudget(DEF, 0.1, 10, 64, 1000);
+    long bufferSize = DEF.writeBufferSizeBytes();
+    byte[] stagingTable = ObjectKeys.tableKey("staging", "t1", DEF);
+    byte[] martTable = ObjectKeys.tableKey("mart", "t1", DEF);
+    for (int i = 0; i < 9; i++) {
+      budget.recordWrite(stagingTable);
+      budget.recordRead(martTable);
+    }
+
+    budget.recordRead(stagingTable);
+    budget.recordRead(martTable);
+
+    // messages of both namespaces within their own budgets, but over the smaller one in total
+    long messageSize = BufferMessage.set(martTable, "t1.binpb").sizeInBytes();
+    List<BufferMessage> messages = new ArrayList<>();
+    for (int i = 0; i < bufferSize / 10 / messageSize; i++) {
+      messages.add(BufferMessage.set(martTable, "t1.binpb"));
+    }
+
+    for (int i = 0; i < bufferSize / 2 / messageSize; i++) {
+      messages.add(BufferMessage.set(stagingTable, "t1.binpb"));
+    }
+
+    Assertions.assertFalse(budget.exceeds(messages));
+    BufferBudget smallestBudget = budget::bufferSizeBytes;
+    Assertions.assertTrue(smallestBudget.exceeds(messages));
+
+    messages.add(BufferMessage.set(martTable, "t1.binpb"));
+    Assertions.assertTrue(budget.exceeds(messages));
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake;
+
+import io.trinitylake.tree.BufferMessage;
+import io.trinitylake.tree.TreeEntry;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestBulkLoader {
+
+  @Test
+  public void testConcurrentChanges() {
+    List<TreeEntry> base =
+        Arrays.asList(entry("a", "a0"), entry("b", "b0"), entry("c", "c0"), entry("d", "d0"));
+    List<TreeEntry> latest =
+        Arrays.asList(entry("a", "a0"), entry("b", "b1"), entry("d", "d1"), entry("e", "e1"));
+
+    // the bulk load sets d and adds f, the other keys are kept from the base version
+    Map<String, String> built = new HashMap<>();
+    base.forEach(entry -> built.put(key(entry), entry.value()));
+    built.put("d", "loaded");
+    built.put("f", "loaded");
+
+    List<BufferMessage> changes =
+        BulkLoader.concurrentChanges(
+            base.iterator(),
+            latest.iterator(),
+            key -> built.get(new String(key, StandardCharsets.UTF_8)));
+    Assertions.assertEquals(
+        Arrays.asList(
+            BufferMessage.set(bytes("b"), "b1"),
+            BufferMessage.delete(bytes("c")),
+            BufferMessage.set(bytes("e"), "e1")),
+        changes);
+  }
+
+  private static TreeEntry entry(String key, String value) {
+    return new TreeEntry(bytes(key), value);
+  }
+
+  private static String key(TreeEntry entry) {
+    return new String(entry.key(), StandardCharsets.UTF_8);
+  }
+
+  private static byte[] bytes(String key) {
+    return key.getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake;
+
+import io.trinitylake.tree.BufferMessage;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TestGroupCommitter {
+
+  private static final LakeHouseDef DEF = LakeHouseDef.builder("test").build();
+  private static final long WINDOW_MILLIS = 500;
+
+  private final AtomicLong latestVersion = new AtomicLong();
+  private final List<List<BufferMessage>> commits = new ArrayList<>();
+  private ExecutorService executor;
+  private GroupCommitter groupCommitter;
+
+  @BeforeEach
+  public void before() {
+    executor = Executors.newCachedThreadPool();
+    groupCommitter = new GroupCommitter(this::commit, WINDOW_MILLIS);
+  }
+
+  @AfterEach
+  public void after() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testCoalesceTransactions() throws Exception {
+    List<Future<Long>> results = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      Transaction transaction = new Transaction(DEF, 0).setNamespace("ns" + i, "ns" + i + ".binpb");
+      results.add(executor.submit(() -> groupCommitter.commit(transaction)));
+    }
+
+    for (Future<Long> result : results) {
+      Assertions.assertEquals(1, (long) result.get());
+    }
+
+    Assertions.assertEquals(1, commits.size());
+    Assertions.assertEquals(5, commits.get(0).size());
+    Assertions.assertEquals(1, groupCommitter.commitCount());
+    Assertions.assertEquals(5, groupCommitter.transactionCount());
+  }
+
+  @Test
+  public void testConflictingTransactions() throws Exception {
+    Transaction first = new Transaction(DEF, 0).setNamespace("ns1", "first.binpb");
+    Transaction second =
+        new Transaction(DEF, 0).setNamespace("ns2", "ns2.binpb").dropNamespace("ns1");
+    Transaction third = new Transaction(DEF, 0).setNamespace("ns3", "ns3.binpb");
+    Future<Long> firstResult = executor.submit(() -> groupCommitter.commit(first));
+    Thread.sleep(WINDOW_MILLIS / 10);
+    Future<Long> secondResult = executor.submit(() -> groupCommitter.commit(second));
+    Thread.sleep(WINDOW_MILLIS / 10);
+    Future<Long> thirdResult = executor.submit(() -> groupCommitter.commit(third));
+
+    Assertions.assertEquals(1, (long) firstResult.get());
+    Assertions.assertEquals(2, (long) secondResult.get());
+    Assertions.assertEquals(1, (long) thirdResult.get());
+    Assertions.assertEquals(2, commits.size());
+  }
+
+  @Test
+  public void testFailedCommit() {
+    GroupCommitter failing =
+        new GroupCommitter(
+            (baseVersion, messages) -> {
+              throw new IllegalStateException("Commit failed");
+            },
+            0);
+    Transaction transaction = new Transaction(DEF, 0).setNamespace("ns1", "ns1.binpb");
+    Assertions.assertThrows(IllegalStateException.class, () -> failing.commit(transaction));
+  }
+
+  private synchronized long commit(long baseVersion, List<BufferMessage> messages) {
+    Set<String> keys = new HashSet<>();
+    for (BufferMessage message : messages) {
+      String key = new String(message.key(), StandardCharsets.UTF_8);
+      Assertions.assertTrue(keys.add(key), "Conflicting keys in one commit");
+    }
+
+    commits.add(messages);
+    return latestVersion.incrementAndGet();
+  }
+}
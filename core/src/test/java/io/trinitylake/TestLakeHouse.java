@@ -0,0 +1,452 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake;
+
+import io.trinitylake.exception.CommitFailedException;
+import io.trinitylake.exception.ObjectNotFoundException;
+import io.trinitylake.storage.LocalStorage;
+import io.trinitylake.storage.Storage;
+import io.trinitylake.tree.BufferMessage;
+import io.trinitylake.tree.MutableTreeNode;
+import io.trinitylake.tree.NodeCache;
+import io.trinitylake.tree.NodeFileWriter;
+import io.trinitylake.tree.TreeNode;
+import io.trinitylake.util.CloseableIterator;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestLakeHouse {
+
+  private static final LakeHouseDef DEF =
+      LakeHouseDef.builder("test")
+          .order(4)
+          .namespaceNameMaxSizeBytes(8)
+          .tableNameMaxSizeBytes(8)
+          .build();
+
+  @TempDir private Path tempDir;
+
+  @Test
+  public void testLoadTableFromTree() throws IOException {
+    Storage storage = new LocalStorage(tempDir);
+    writeTree(storage);
+
+    try (LakeHouse lakeHouse = new LakeHouse(storage, DEF)) {
+      Assertions.assertEquals(0, lakeHouse.latestVersion());
+      Assertions.assertEquals("ns1_t1.binpb", lakeHouse.loadTable("ns1", "t1"));
+      Assertions.assertEquals("ns1_t3.binpb", lakeHouse.loadTable("ns1", "t3"));
+      Assertions.assertEquals("ns2_t1.binpb", lakeHouse.loadTable("ns2", "t1"));
+      Assertions.assertEquals("ns2.binpb", lakeHouse.loadNamespace("ns2"));
+      Assertions.assertThrows(
+          ObjectNotFoundException.class, () -> lakeHouse.loadTable("ns1", "t2"));
+      Assertions.assertThrows(
+          ObjectNotFoundException.class, () -> lakeHouse.loadTable("ns3", "t1"));
+    }
+  }
+
+  @Test
+  public void testNodeCache() throws IOException {
+    Storage storage = new LocalStorage(tempDir);
+    writeTree(storage);
+
+    NodeCache cache = NodeCache.shared();
+    try (LakeHouse lakeHouse = new LakeHouse(storage, DEF)) {
+      Assertions.assertEquals("ns1_t1.binpb", lakeHouse.loadTable("ns1", "t1"));
+      long hits = cache.hitCount();
+      Assertions.assertEquals("ns1_t1.binpb", lakeHouse.loadTable("ns1", "t1"));
+      Assertions.assertEquals(hits + 2, cache.hitCount(), "Expect root and leaf to be cached");
+    }
+
+    Map<String, String> properties =
+        Collections.singletonMap(LakeHouseProperties.NODE_CACHE_ENABLED, "false");
+    try (LakeHouse lakeHouse = new LakeHouse(new LocalStorage(tempDir), DEF, properties)) {
+      long hits = cache.hitCount();
+      Assertions.assertEquals("ns2_t1.binpb", lakeHouse.loadTable("ns2", "t1"));
+      Assertions.assertEquals(hits, cache.hitCount());
+    }
+  }
+
+  @Test
+  public void testPinnedNodes() throws IOException {
+    Storage storage = new LocalStorage(tempDir);
+    writeTree(storage);
+
+    Map<String, String> properties = new HashMap<>();
+    properties.put(LakeHouseProperties.PINNED_NODES_ENABLED, "true");
+    properties.put(LakeHouseProperties.PINNED_NODES_LEVELS, "1");
+    try (LakeHouse lakeHouse = new LakeHouse(storage, DEF, properties)) {
+      Assertions.assertEquals(0, lakeHouse.pinnedNodeCount());
+      Assertions.assertEquals("ns1_t1.binpb", lakeHouse.loadTable("ns1", "t1"));
+      Assertions.assertEquals(3, lakeHouse.pinnedNodeCount());
+      long pinnedSize = lakeHouse.pinnedSizeInBytes();
+      Assertions.assertTrue(pinnedSize > 0);
+
+      writeNode(
+          storage,
+          "leaf2.ipc",
+          new MutableTreeNode().addEntry(ObjectKeys.tableKey("ns2", "t1", DEF), "v1.binpb"));
+      writeNode(
+          storage,
+          FileLocations.rootNodeFilePath(1),
+          new MutableTreeNode()
+              .addChild("leaf0.ipc")
+              .addChild(ObjectKeys.tableKey("ns2", "t1", DEF), "leaf2.ipc"));
+
+      Assertions.assertEquals("v1.binpb", lakeHouse.loadTable("ns2", "t1"));
+      Assertions.assertEquals(3, lakeHouse.pinnedNodeCount());
+      Assertions.assertNotEquals(pinnedSize, lakeHouse.pinnedSizeInBytes());
+      Assertions.assertEquals(
+          "ns2_t1.binpb", lakeHouse.get(0, ObjectKeys.tableKey("ns2", "t1", DEF)));
+    }
+  }
+
+  @Test
+  public void testCommit() throws IOException {
+    Storage storage = new LocalStorage(tempDir);
+    writeTree(storage);
+
+    try (LakeHouse lakeHouse = new LakeHouse(storage, DEF)) {
+      Transaction transaction =
+          lakeHouse.beginTransaction().setTable("ns1", "t4", "ns1_t4.binpb").dropTable("ns1", "t1");
+      Assertions.assertEquals(1, lakeHouse.commit(transaction));
+      Assertions.assertEquals(1, lakeHouse.latestVersion());
+      Assertions.assertEquals("ns1_t4.binpb", lakeHouse.loadTable("ns1", "t4"));
+      Assertions.assertThrows(
+          ObjectNotFoundException.class, () -> lakeHouse.loadTable("ns1", "t1"));
+      Assertions.assertEquals(
+          "ns1_t1.binpb", lakeHouse.get(0, ObjectKeys.tableKey("ns1", "t1", DEF)));
+
+      Transaction empty = lakeHouse.beginTransaction();
+      Assertions.assertEquals(1, lakeHouse.commit(empty));
+    }
+  }
+
+  @Test
+  public void testCommitConflict() throws IOException {
+    Storage storage = new LocalStorage(tempDir);
+    writeTree(storage);
+
+    Map<String, String> properties =
+        Collections.singletonMap(LakeHouseProperties.COMMIT_NUM_RETRIES, "0");
+    try (LakeHouse lakeHouse = new LakeHouse(storage, DEF, properties)) {
+      Transaction first = lakeHouse.beginTransaction().setNamespace("ns3", "ns3.binpb");
+      Transaction second = lakeHouse.beginTransaction().setNamespace("ns4", "ns4.binpb");
+      Assertions.assertEquals(1, lakeHouse.commit(first));
+      Assertions.assertThrows(CommitFailedException.class, () -> lakeHouse.commit(second));
+      Assertions.assertEquals("ns3.binpb", lakeHouse.loadNamespace("ns3"));
+    }
+  }
+
+  @Test
+  public void testCommitRetry() throws IOException {
+    Storage storage = new LocalStorage(tempDir);
+    writeTree(storage);
+
+    for (String rebase : new String[] {"true", "false"}) {
+      Map<String, String> properties =
+          Collections.singletonMap(LakeHouseProperties.COMMIT_REBASE_ENABLED, rebase);
+      try (LakeHouse lakeHouse = new LakeHouse(storage, DEF, properties)) {
+        long version = lakeHouse.latestVersion();
+        Transaction first =
+            lakeHouse.beginTransaction().setTable("ns1", "t1", "first_" + rebase + ".binpb");
+        Transaction second =
+            lakeHouse
+                .beginTransaction()
+                .setTable("ns1", "t1", "second_" + rebase + ".binpb")
+                .setTable("ns2", "t2", "ns2_t2.binpb");
+        Assertions.assertEquals(version + 1, lakeHouse.commit(first));
+        Assertions.assertEquals(version + 2, lakeHouse.commit(second));
+        Assertions.assertEquals("second_" + rebase + ".binpb", lakeHouse.loadTable("ns1", "t1"));
+        Assertions.assertEquals("ns2_t2.binpb", lakeHouse.loadTable("ns2", "t2"));
+      }
+    }
+  }
+
+  @Test
+  public void testLatestVersion() throws IOException {
+    Storage storage = new LocalStorage(tempDir);
+    for (int version = 0; version <= 3; version++) {
+      writeNode(
+          storage,
+          FileLocations.rootNodeFilePath(version),
+          new MutableTreeNode()
+              .addEntry(ObjectKeys.tableKey("ns1", "t1", DEF), "v" + version + ".binpb"));
+    }
+
+    try (LakeHouse lakeHouse = new LakeHouse(storage, DEF)) {
+      Assertions.assertEquals(3, lakeHouse.latestVersion());
+      Assertions.assertEquals("v3.binpb", lakeHouse.loadTable("ns1", "t1"));
+      Assertions.assertEquals("v1.binpb", lakeHouse.get(1, ObjectKeys.tableKey("ns1", "t1", DEF)));
+    }
+  }
+
+  @Test
+  public void testListNamespacesAndTables() throws IOException {
+    Storage storage = new LocalStorage(tempDir);
+    writeTree(storage);
+
+    try (LakeHouse lakeHouse = new LakeHouse(storage, DEF)) {
+      Assertions.assertEquals(Arrays.asList("t1", "t3"), toList(lakeHouse.listTables("ns1")));
+      Assertions.assertEquals(Collections.singletonList("ns2"), toList(lakeHouse.listNamespaces()));
+
+      lakeHouse.commit(
+          lakeHouse
+              .beginTransaction()
+              .setNamespace("ns1", "ns1.binpb")
+              .setTable("ns1", "t0", "ns1_t0.binpb")
+              .dropTable("ns1", "t3")
+              .dropTable("ns2", "t1")
+              .setTable("ns10", "t1", "ns10_t1.binpb"));
+      Assertions.assertEquals(Arrays.asList("t0", "t1"), toList(lakeHouse.listTables("ns1")));
+      Assertions.assertEquals(Collections.emptyList(), toList(lakeHouse.listTables("ns2")));
+      Assertions.assertEquals(Arrays.asList("ns1", "ns2"), toList(lakeHouse.listNamespaces()));
+    }
+  }
+
+  @Test
+  public void testListTablesAcrossLevels() throws IOException {
+    Storage storage = new LocalStorage(tempDir);
+    writeTree(storage);
+
+    for (String prefetch : new String[] {"true", "false"}) {
+      Map<String, String> properties = new HashMap<>();
+      properties.put(LakeHouseProperties.SCAN_PREFETCH_ENABLED, prefetch);
+      properties.put(LakeHouseProperties.SCAN_PREFETCH_NUM_NODES, "2");
+      String namespaceName = "ns_" + prefetch;
+      List<String> expected = new ArrayList<>();
+      try (LakeHouse lakeHouse = new LakeHouse(storage, DEF, properties)) {
+        for (int i = 0; i < 20; i++) {
+          Transaction transaction = lakeHouse.beginTransaction();
+          for (int j = 0; j < 10; j++) {
+            String tableName = String.format("t%03d", j * 20 + i);
+            transaction.setTable(namespaceName, tableName, tableName + ".binpb");
+            expected.add(tableName);
+          }
+
+          if (i > 0) {
+            // drops a table that is already flushed down or still in an upper write buffer
+            String dropped = String.format("t%03d", (i - 1) * 10);
+            transaction.dropTable(namespaceName, dropped);
+            expected.remove(dropped);
+          }
+
+          lakeHouse.commit(transaction);
+        }
+
+        Collections.sort(expected);
+        Assertions.assertEquals(expected, toList(lakeHouse.listTables(namespaceName)));
+        try (CloseableIterator<String> tables = lakeHouse.listTables(namespaceName)) {
+          Assertions.assertEquals(expected.get(0), tables.next());
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testCompact() throws IOException {
+    Storage storage = new LocalStorage(tempDir);
+    writeTree(storage);
+
+    try (LakeHouse lakeHouse = new LakeHouse(storage, DEF)) {
+      lakeHouse.commit(lakeHouse.beginTransaction().setTable("ns2", "t2", "ns2_t2.binpb"));
+      Assertions.assertEquals(2, lakeHouse.compact());
+      try (TreeNode root = lakeHouse.readNode(FileLocations.rootNodeFilePath(2))) {
+        Assertions.assertEquals(0, root.numMessages());
+      }
+
+      Assertions.assertEquals("ns1_t3.binpb", lakeHouse.loadTable("ns1", "t3"));
+      Assertions.assertEquals("ns2_t2.binpb", lakeHouse.loadTable("ns2", "t2"));
+      Assertions.assertThrows(
+          ObjectNotFoundException.class, () -> lakeHouse.loadTable("ns1", "t2"));
+      Assertions.assertEquals(Arrays.asList("t1", "t3"), toList(lakeHouse.listTables("ns1")));
+      Assertions.assertEquals(2, lakeHouse.compact());
+    }
+  }
+
+  @Test
+  public void testCompactionScheduler() throws IOException {
+    Storage storage = new LocalStorage(tempDir);
+    writeTree(storage);
+
+    Map<String, String> properties = new HashMap<>();
+    properties.put(LakeHouseProperties.COMPACTION_SCHEDULER_ENABLED, "true");
+    properties.put(LakeHouseProperties.COMPACTION_SCHEDULER_INTERVAL_MS, "3600000");
+    properties.put(LakeHouseProperties.COMPACTION_SCHEDULER_MIN_BUFFER_OCCUPANCY, "1000");
+    properties.put(LakeHouseProperties.COMPACTION_SCHEDULER_MIN_READ_AMPLIFICATION, "1");
+    properties.put(LakeHouseProperties.COMPACTION_SCHEDULER_MAX_COMMITS_PER_MINUTE, "1");
+    try (LakeHouse lakeHouse = new LakeHouse(storage, DEF, properties)) {
+      CompactionScheduler scheduler = lakeHouse.compactionScheduler();
+      Assertions.assertEquals(-1, scheduler.runOnce(), "No subtree is read yet");
+
+      // lookups of the first subtree search the root write buffer
+      Assertions.assertEquals("ns1_t3.binpb", lakeHouse.loadTable("ns1", "t3"));
+      Assertions.assertEquals("ns2_t1.binpb", lakeHouse.loadTable("ns2", "t1"));
+      Assertions.assertEquals(1, scheduler.runOnce());
+      try (TreeNode root = lakeHouse.readNode(FileLocations.rootNodeFilePath(1))) {
+        Assertions.assertEquals(0, root.numMessages());
+        Assertions.assertEquals("leaf1.ipc", root.child(1));
+      }
+
+      Assertions.assertEquals("ns1_t3.binpb", lakeHouse.loadTable("ns1", "t3"));
+      lakeHouse.commit(lakeHouse.beginTransaction().setTable("ns1", "t4", "ns1_t4.binpb"));
+      Assertions.assertEquals("ns1_t4.binpb", lakeHouse.loadTable("ns1", "t4"));
+      Assertions.assertEquals(-1, scheduler.runOnce(), "Commit rate limit is reached");
+    }
+
+    try (LakeHouse lakeHouse = new LakeHouse(new LocalStorage(tempDir), DEF)) {
+      Assertions.assertNull(lakeHouse.compactionScheduler());
+    }
+  }
+
+  @Test
+  public void testBulkLoad() throws IOException {
+    Storage storage = new LocalStorage(tempDir);
+    writeTree(storage);
+
+    Path spillDir = Files.createDirectory(tempDir.resolve("spill"));
+    Map<String, String> properties = new HashMap<>();
+    properties.put(LakeHouseProperties.BULK_LOAD_SORT_BUFFER_SIZE_BYTES, "4096");
+    properties.put(LakeHouseProperties.BULK_LOAD_SPILL_DIR, spillDir.toString());
+    try (LakeHouse lakeHouse = new LakeHouse(storage, DEF, properties);
+        BulkLoader loader = lakeHouse.newBulkLoader()) {
+      List<String> expected = new ArrayList<>();
+      for (int i = 499; i >= 0; i--) {
+        String tableName = String.format("b%03d", i);
+        loader.addTable("ns3", tableName, tableName + ".binpb");
+        expected.add(0, tableName);
+      }
+
+      loader
+          .addNamespace("ns3", "ns3.binpb")
+          .addTable("ns1", "t1", "old.binpb")
+          .addTable("ns1", "t1", "new.binpb");
+      Assertions.assertEquals(1, loader.commit());
+      try (Stream<Path> runFiles = Files.list(spillDir)) {
+        Assertions.assertEquals(0, runFiles.count());
+      }
+
+      Assertions.assertEquals(expected, toList(lakeHouse.listTables("ns3")));
+      Assertions.assertEquals("new.binpb", lakeHouse.loadTable("ns1", "t1"));
+      Assertions.assertEquals("ns1_t3.binpb", lakeHouse.loadTable("ns1", "t3"));
+      Assertions.assertEquals("ns3.binpb", lakeHouse.loadNamespace("ns3"));
+      Assertions.assertThrows(
+          ObjectNotFoundException.class, () -> lakeHouse.loadTable("ns1", "t2"));
+      try (TreeNode root = lakeHouse.readNode(FileLocations.rootNodeFilePath(1))) {
+        Assertions.assertEquals(0, root.numMessages());
+        Assertions.assertEquals("lakehouse.binpb", root.systemValue(ObjectKeys.LAKEHOUSE));
+      }
+    }
+  }
+
+  @Test
+  public void testBulkLoadRetry() throws IOException {
+    writeTree(new LocalStorage(tempDir));
+    AtomicBoolean raced = new AtomicBoolean();
+    Storage storage =
+        new LocalStorage(tempDir) {
+          @Override
+          public WritableByteChannel create(String path) {
+            boolean nextRoot = path.equals(FileLocations.rootNodeFilePath(1));
+            if (nextRoot && raced.compareAndSet(false, true)) {
+              // another writer commits the next version right before the bulk load
+              try (LakeHouse other = new LakeHouse(new LocalStorage(tempDir), DEF)) {
+                other.commit(
+                    other
+                        .beginTransaction()
+                        .setTable("ns1", "t1", "concurrent.binpb")
+                        .setTable("ns2", "t2", "ns2_t2.binpb")
+                        .dropTable("ns1", "t3"));
+              } catch (IOException e) {
+                throw new UncheckedIOException(e);
+              }
+            }
+
+            return super.create(path);
+          }
+        };
+
+    try (LakeHouse lakeHouse = new LakeHouse(storage, DEF);
+        BulkLoader loader = lakeHouse.newBulkLoader()) {
+      loader.addTable("ns1", "t1", "loaded.binpb").addTable("ns3", "t1", "ns3_t1.binpb");
+      Assertions.assertEquals(2, loader.commit());
+      Assertions.assertTrue(raced.get());
+      Assertions.assertEquals("loaded.binpb", lakeHouse.loadTable("ns1", "t1"));
+      Assertions.assertEquals("ns2_t2.binpb", lakeHouse.loadTable("ns2", "t2"));
+      Assertions.assertEquals("ns3_t1.binpb", lakeHouse.loadTable("ns3", "t1"));
+      Assertions.assertThrows(
+          ObjectNotFoundException.class, () -> lakeHouse.loadTable("ns1", "t3"));
+
+      Assertions.assertThrows(IllegalStateException.class, loader::commit);
+      Assertions.assertThrows(
+          IllegalStateException.class, () -> loader.addTable("ns3", "t2", "ns3_t2.binpb"));
+    }
+  }
+
+  private static List<String> toList(CloseableIterator<String> iterator) {
+    List<String> result = new ArrayList<>();
+    try (CloseableIterator<String> closing = iterator) {
+      closing.forEachRemaining(result::add);
+    }
+
+    return result;
+  }
+
+  private static void writeTree(Storage storage) throws IOException {
+    writeNode(
+        storage,
+        "leaf0.ipc",
+        new MutableTreeNode()
+            .addEntry(ObjectKeys.tableKey("ns1", "t1", DEF), "ns1_t1.binpb")
+            .addEntry(ObjectKeys.tableKey("ns1", "t2", DEF), "ns1_t2.binpb"));
+    writeNode(
+        storage,
+        "leaf1.ipc",
+        new MutableTreeNode()
+            .addEntry(ObjectKeys.tableKey("ns2", "t1", DEF), "ns2_t1.binpb")
+            .addEntry(ObjectKeys.namespaceKey("ns2", DEF), "ns2.binpb"));
+    writeNode(
+        storage,
+        FileLocations.rootNodeFilePath(0),
+        new MutableTreeNode()
+            .putSystemValue(ObjectKeys.LAKEHOUSE, "lakehouse.binpb")
+            .addChild("leaf0.ipc")
+            .addChild(ObjectKeys.tableKey("ns2", "t1", DEF), "leaf1.ipc")
+            .addMessage(BufferMessage.set(ObjectKeys.tableKey("ns1", "t3", DEF), "ns1_t3.binpb"))
+            .addMessage(BufferMessage.delete(ObjectKeys.tableKey("ns1", "t2", DEF))));
+  }
+
+  private static void writeNode(Storage storage, String path, MutableTreeNode node)
+      throws IOException {
+    try (BufferAllocator allocator = new RootAllocator();
+        WritableByteChannel channel = storage.create(path)) {
+      new NodeFileWriter(allocator, DEF.order()).write(node, channel);
+    }
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestObjectKeyEncoder {
+
+  private static final LakeHouseDef DEF =
+      LakeHouseDef.builder("test").namespaceNameMaxSizeBytes(8).tableNameMaxSizeBytes(6).build();
+
+  @Test
+  public void testMatchesObjectKeys() {
+    ObjectKeyEncoder encoder = new ObjectKeyEncoder(DEF);
+    String[] names = {"ns1", "table1", "é", "日本", "😀", "a\uD800"};
+    for (String name : names) {
+      Assertions.assertArrayEquals(ObjectKeys.namespaceKey(name, DEF), encoder.namespaceKey(name));
+      Assertions.assertArrayEquals(
+          ObjectKeys.tableKey("ns1", name, DEF), encoder.tableKey("ns1", name));
+    }
+
+    Assertions.assertEquals(
+        " ns1      t1    Aw==",
+        new String(encoder.tableKey("ns1", "t1"), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testReusesScratch() {
+    ObjectKeyEncoder encoder = new ObjectKeyEncoder(DEF);
+    byte[] first = encoder.tableKey("ns1", "table1");
+    byte[] second = encoder.tableKey("ns2", "t2");
+    Assertions.assertSame(first, second);
+    Assertions.assertArrayEquals(ObjectKeys.tableKey("ns2", "t2", DEF), second);
+  }
+
+  @Test
+  public void testSliceNames() {
+    ObjectKeyEncoder encoder = new ObjectKeyEncoder(DEF);
+    ByteBuffer key = ByteBuffer.wrap(encoder.tableKey("ns1", "table1"));
+    ByteBuffer namespaceName = encoder.namespaceName(key);
+    ByteBuffer tableName = encoder.tableName(key);
+    Assertions.assertEquals(ByteBuffer.wrap(bytes("ns1")), namespaceName);
+    Assertions.assertEquals(ByteBuffer.wrap(bytes("table1")), tableName);
+    Assertions.assertTrue(tableName.hasArray());
+    Assertions.assertSame(key.array(), tableName.array());
+    Assertions.assertEquals(0, key.position());
+
+    ByteBuffer namespaceKey = ByteBuffer.wrap(encoder.namespaceKey("é"));
+    Assertions.assertEquals(ByteBuffer.wrap(bytes("é")), encoder.namespaceName(namespaceKey));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> encoder.tableName(namespaceKey));
+  }
+
+  @Test
+  public void testInvalidNames() {
+    ObjectKeyEncoder encoder = new ObjectKeyEncoder(DEF);
+    Assertions.assertThrows(IllegalArgumentException.class, () -> encoder.namespaceKey("a b"));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> encoder.namespaceKey(null));
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> encoder.tableKey("ns1", "too_long"));
+  }
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+}
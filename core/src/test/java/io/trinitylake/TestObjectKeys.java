@@ -0,0 +1,96 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake;
+
+import io.trinitylake.util.ByteArrayUtil;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestObjectKeys {
+
+  private static final LakeHouseDef DEF =
+      LakeHouseDef.builder("test").namespaceNameMaxSizeBytes(8).tableNameMaxSizeBytes(6).build();
+
+  @Test
+  public void testNamespaceKey() {
+    byte[] key = ObjectKeys.namespaceKey("default", DEF);
+    Assertions.assertEquals(" default AQ==", new String(key, StandardCharsets.UTF_8));
+    Assertions.assertEquals(
+        ObjectKeys.namespaceKeySizeBytes(DEF), ObjectKeys.namespaceKey("ns", DEF).length);
+  }
+
+  @Test
+  public void testTableKey() {
+    Assertions.assertEquals(
+        " ns1      t1    Aw==",
+        new String(ObjectKeys.tableKey("ns1", "t1", DEF), StandardCharsets.UTF_8));
+    Assertions.assertEquals(
+        ObjectKeys.tableKeySizeBytes(DEF), ObjectKeys.tableKey("ns1", "table1", DEF).length);
+  }
+
+  @Test
+  public void testPaddingCountsBytes() {
+    byte[] key = ObjectKeys.namespaceKey("é", DEF);
+    Assertions.assertEquals(ObjectKeys.namespaceKeySizeBytes(DEF), key.length);
+  }
+
+  @Test
+  public void testTablesSortWithinNamespace() {
+    byte[] ns1Table = ObjectKeys.tableKey("ns1", "zzz", DEF);
+    byte[] ns10Table = ObjectKeys.tableKey("ns10", "aaa", DEF);
+    byte[] ns2Table = ObjectKeys.tableKey("ns2", "aaa", DEF);
+    Assertions.assertTrue(ByteArrayUtil.compare(ns1Table, ns10Table) < 0);
+    Assertions.assertTrue(ByteArrayUtil.compare(ns10Table, ns2Table) < 0);
+  }
+
+  @Test
+  public void testDecodeNames() {
+    byte[] namespaceKey = ObjectKeys.namespaceKey("ns1", DEF);
+    byte[] tableKey = ObjectKeys.tableKey("ns1", "table1", DEF);
+    Assertions.assertTrue(ObjectKeys.isNamespaceKey(namespaceKey, DEF));
+    Assertions.assertFalse(ObjectKeys.isTableKey(namespaceKey, DEF));
+    Assertions.assertTrue(ObjectKeys.isTableKey(tableKey, DEF));
+    Assertions.assertEquals("ns1", ObjectKeys.namespaceName(namespaceKey, DEF));
+    Assertions.assertEquals("ns1", ObjectKeys.namespaceName(tableKey, DEF));
+    Assertions.assertEquals("table1", ObjectKeys.tableName(tableKey, DEF));
+    byte[] unicodeKey = ObjectKeys.namespaceKey("é", DEF);
+    Assertions.assertEquals("é", ObjectKeys.namespaceName(unicodeKey, DEF));
+  }
+
+  @Test
+  public void testPrefixes() {
+    byte[] tablePrefix = ObjectKeys.tablePrefix("ns1", DEF);
+    byte[] tableKey = ObjectKeys.tableKey("ns1", "t1", DEF);
+    byte[] end = ByteArrayUtil.prefixEnd(tablePrefix);
+    Assertions.assertTrue(ByteArrayUtil.compare(tablePrefix, tableKey) < 0);
+    Assertions.assertTrue(ByteArrayUtil.compare(tableKey, end) < 0);
+    Assertions.assertTrue(ByteArrayUtil.compare(ObjectKeys.namespaceKey("ns1", DEF), end) >= 0);
+    Assertions.assertTrue(
+        ByteArrayUtil.compare(ObjectKeys.tableKey("ns10", "t1", DEF), end) >= 0);
+    Assertions.assertNull(ByteArrayUtil.prefixEnd(new byte[] {(byte) 0xFF}));
+  }
+
+  @Test
+  public void testInvalidNames() {
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> ObjectKeys.namespaceKey("a b", DEF));
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> ObjectKeys.namespaceKey("a\tb", DEF));
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> ObjectKeys.namespaceKey("", DEF));
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> ObjectKeys.namespaceKey("too_long_name", DEF));
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake;
+
+import io.trinitylake.exception.StorageFileNotFoundException;
+import io.trinitylake.storage.LocalStorage;
+import io.trinitylake.storage.Storage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestRootVersionResolver {
+
+  @TempDir private Path tempDir;
+
+  private Storage storage;
+  private RootVersionResolver resolver;
+
+  @BeforeEach
+  public void before() {
+    storage = new LocalStorage(tempDir);
+    resolver = new RootVersionResolver(storage);
+  }
+
+  @Test
+  public void testNoRootNodeFile() {
+    Assertions.assertThrows(StorageFileNotFoundException.class, () -> resolver.resolve());
+  }
+
+  @Test
+  public void testWithoutHint() throws IOException {
+    createVersions(0, 5);
+    RootVersionResolver.Resolution resolution = resolver.resolve();
+    Assertions.assertEquals(5, resolution.version());
+  }
+
+  @Test
+  public void testUpToDateHint() throws IOException {
+    createVersions(0, 20);
+    writeHint("20");
+    RootVersionResolver.Resolution resolution = resolver.resolve();
+    Assertions.assertEquals(20, resolution.version());
+    Assertions.assertEquals(2, resolution.probes());
+  }
+
+  @Test
+  public void testStaleHint() throws IOException {
+    createVersions(0, 600);
+    writeHint("100");
+    RootVersionResolver.Resolution resolution = resolver.resolve();
+    Assertions.assertEquals(600, resolution.version());
+    // probing one by one would take 501 probes
+    Assertions.assertTrue(
+        resolution.probes() <= 20, "Expect at most 20 probes, but got " + resolution.probes());
+  }
+
+  @Test
+  public void testGallopNarrowsBinarySearch() throws IOException {
+    createVersions(0, 200);
+    writeHint("100");
+    RootVersionResolver.Resolution resolution = resolver.resolve();
+    Assertions.assertEquals(200, resolution.version());
+    // 9 probes gallop from 100 to the missing 228, then 6 probes binary search between the last
+    // found 164 and 228, without probing a version the gallop already found
+    Assertions.assertEquals(15, resolution.probes());
+  }
+
+  @Test
+  public void testHintAheadOfLatestVersion() throws IOException {
+    createVersions(0, 7);
+    writeHint("1000");
+    Assertions.assertEquals(7, resolver.resolve().version());
+  }
+
+  @Test
+  public void testInvalidHint() throws IOException {
+    createVersions(0, 3);
+    writeHint("not-a-version");
+    Assertions.assertEquals(3, resolver.resolve().version());
+  }
+
+  @Test
+  public void testCounters() throws IOException {
+    createVersions(0, 10);
+    int first = resolver.resolve().probes();
+    writeHint("10");
+    int second = resolver.resolve().probes();
+    Assertions.assertEquals(2, resolver.totalResolutions());
+    Assertions.assertEquals(first + second, resolver.totalProbes());
+    Assertions.assertEquals(Math.max(first, second), resolver.maxProbes());
+  }
+
+  private void createVersions(long from, long to) throws IOException {
+    for (long version = from; version <= to; version++) {
+      storage.create(FileLocations.rootNodeFilePath(version)).close();
+    }
+  }
+
+  private void writeHint(String content) throws IOException {
+    try (WritableByteChannel channel = storage.overwrite(FileLocations.LATEST_HINT_FILE)) {
+      channel.write(ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8)));
+    }
+  }
+}
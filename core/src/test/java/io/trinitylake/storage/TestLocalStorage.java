@@ -0,0 +1,143 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.storage;
+
+import io.trinitylake.exception.StorageFileAlreadyExistsException;
+import io.trinitylake.exception.StorageFileNotFoundException;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestLocalStorage {
+
+  @TempDir private Path tempDir;
+
+  private Storage storage;
+
+  @BeforeEach
+  public void before() {
+    storage = Storages.load(tempDir.toString(), Collections.emptyMap());
+  }
+
+  @Test
+  public void testLoad() {
+    Assertions.assertTrue(storage instanceof LocalStorage);
+    Assertions.assertEquals(tempDir.toUri().toString(), storage.root());
+
+    String uri = tempDir.toUri().toString();
+    Storage fromUri = Storages.load(LocalStorage.class.getName(), uri, Collections.emptyMap());
+    Assertions.assertEquals(storage.root(), fromUri.root());
+
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> Storages.load("io.trinitylake.storage.Unknown", "/tmp", Collections.emptyMap()));
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> Storages.load(String.class.getName(), "/tmp", Collections.emptyMap()));
+  }
+
+  @Test
+  public void testCreateIsExclusive() throws IOException {
+    write("dir/file.txt", "0123456789");
+    Assertions.assertTrue(storage.exists("dir/file.txt"));
+    Assertions.assertThrows(
+        StorageFileAlreadyExistsException.class, () -> storage.create("dir/file.txt"));
+  }
+
+  @Test
+  public void testCreateIsVisibleOnClose() throws IOException {
+    WritableByteChannel channel = storage.create("dir/file.txt");
+    channel.write(ByteBuffer.wrap("loser".getBytes(StandardCharsets.UTF_8)));
+    Assertions.assertFalse(storage.exists("dir/file.txt"));
+    Assertions.assertThrows(
+        StorageFileNotFoundException.class, () -> storage.openRead("dir/file.txt"));
+
+    // another writer creates the file first
+    write("dir/file.txt", "winner");
+    Assertions.assertThrows(StorageFileAlreadyExistsException.class, channel::close);
+    Assertions.assertFalse(channel.isOpen());
+
+    ByteBuffer buffer = ByteBuffer.allocate(6);
+    storage.readFully("dir/file.txt", 0, buffer);
+    Assertions.assertEquals("winner", new String(buffer.array(), StandardCharsets.UTF_8));
+    try (Stream<Path> files = Files.list(tempDir.resolve("dir"))) {
+      Assertions.assertEquals(1, files.count(), "Temporary files must be deleted");
+    }
+  }
+
+  @Test
+  public void testAsyncRangedRead() throws IOException {
+    write("file.txt", "0123456789");
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      ByteBuffer buffer = ByteBuffer.allocate(4);
+      storage.readFullyAsync("file.txt", 3, buffer, executor).join();
+      Assertions.assertEquals("3456", new String(buffer.array(), StandardCharsets.UTF_8));
+
+      CompletionException exception =
+          Assertions.assertThrows(
+              CompletionException.class,
+              () -> storage.readFullyAsync("missing.txt", 0, buffer, executor).join());
+      Assertions.assertTrue(exception.getCause() instanceof StorageFileNotFoundException);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testRangedRead() throws IOException {
+    write("file.txt", "0123456789");
+    Assertions.assertEquals(10, storage.length("file.txt"));
+
+    ByteBuffer buffer = ByteBuffer.allocate(4);
+    storage.readFully("file.txt", 3, buffer);
+    Assertions.assertEquals("3456", new String(buffer.array(), StandardCharsets.UTF_8));
+
+    ByteBuffer beyondEnd = ByteBuffer.allocate(4);
+    UncheckedIOException exception =
+        Assertions.assertThrows(
+            UncheckedIOException.class, () -> storage.readFully("file.txt", 8, beyondEnd));
+    Assertions.assertTrue(exception.getCause() instanceof EOFException);
+  }
+
+  @Test
+  public void testFileNotFound() {
+    Assertions.assertFalse(storage.exists("missing.txt"));
+    Assertions.assertThrows(StorageFileNotFoundException.class, () -> storage.openRead("missing"));
+    Assertions.assertThrows(StorageFileNotFoundException.class, () -> storage.length("missing"));
+    Assertions.assertThrows(
+        StorageFileNotFoundException.class,
+        () -> storage.readFully("missing", 0, ByteBuffer.allocate(1)));
+  }
+
+  private void write(String path, String content) throws IOException {
+    try (WritableByteChannel channel = storage.create(path)) {
+      channel.write(ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8)));
+    }
+  }
+}
@@ -0,0 +1,323 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.tree;
+
+import io.trinitylake.FileLocations;
+import io.trinitylake.storage.LocalStorage;
+import io.trinitylake.storage.Storage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestBufferFlusher {
+
+  private static final int ORDER = 4;
+
+  @TempDir private Path tempDir;
+
+  private BufferAllocator allocator;
+  private Storage storage;
+
+  @BeforeEach
+  public void before() {
+    allocator = new RootAllocator();
+    storage = new LocalStorage(tempDir);
+  }
+
+  @AfterEach
+  public void after() throws IOException {
+    storage.close();
+    allocator.close();
+  }
+
+  @Test
+  public void testMessagesStayInRootBuffer() {
+    write("leaf0.ipc", new MutableTreeNode().addEntry(key("a"), "a0"));
+    write("leaf1.ipc", new MutableTreeNode().addEntry(key("m"), "m0"));
+    write("root.ipc", new MutableTreeNode().addChild("leaf0.ipc").addChild(key("m"), "leaf1.ipc"));
+
+    TreeUpdate update =
+        apply("root.ipc", 1024, BufferMessage.set(key("a"), "a1"), BufferMessage.delete(key("m")));
+    Assertions.assertTrue(update.newNodes().isEmpty());
+    Assertions.assertEquals(2, update.root().buffer().size());
+    Assertions.assertEquals(Arrays.asList("leaf0.ipc", "leaf1.ipc"), update.root().children());
+  }
+
+  @Test
+  public void testFlushHeaviestChildFirst() {
+    write("leaf0.ipc", new MutableTreeNode().addEntry(key("a"), "a0"));
+    write("leaf1.ipc", new MutableTreeNode().addEntry(key("m"), "m0"));
+    write("root.ipc", new MutableTreeNode().addChild("leaf0.ipc").addChild(key("m"), "leaf1.ipc"));
+
+    BufferMessage light = BufferMessage.set(key("b"), "b0");
+    TreeUpdate update =
+        apply(
+            "root.ipc",
+            light.sizeInBytes(),
+            light,
+            BufferMessage.set(key("n"), "n0"),
+            BufferMessage.set(key("o"), "o0"));
+
+    Assertions.assertEquals(1, update.newNodes().size());
+    Assertions.assertEquals(1, update.root().buffer().size());
+    Assertions.assertSame(light, update.root().buffer().get(0));
+    Assertions.assertEquals("leaf0.ipc", update.root().children().get(0));
+
+    MutableTreeNode flushed = update.newNodes().get(update.root().children().get(1));
+    Assertions.assertEquals(Arrays.asList("m0", "n0", "o0"), flushed.values());
+  }
+
+  @Test
+  public void testBufferBudgetFlushesChildEarly() {
+    write("leaf0.ipc", new MutableTreeNode().addEntry(key("a"), "a0"));
+    write("leaf1.ipc", new MutableTreeNode().addEntry(key("m"), "m0"));
+    write("root.ipc", new MutableTreeNode().addChild("leaf0.ipc").addChild(key("m"), "leaf1.ipc"));
+
+    // the key range of the second child keeps no message buffered
+    BufferBudget budget = key -> key[1] < 'm' ? Long.MAX_VALUE : 0;
+    BufferFlusher flusher =
+        new BufferFlusher(this::load, ORDER, 1024, FileLocations::newNodeFilePath, budget);
+    TreeUpdate update;
+    try (TreeNode root = load("root.ipc")) {
+      update =
+          flusher.apply(
+              root,
+              Arrays.asList(BufferMessage.set(key("b"), "b0"), BufferMessage.set(key("n"), "n0")));
+    }
+
+    Assertions.assertEquals(1, update.newNodes().size());
+    Assertions.assertEquals(1, update.root().buffer().size());
+    Assertions.assertArrayEquals(key("b"), update.root().buffer().get(0).key());
+    Assertions.assertEquals("leaf0.ipc", update.root().children().get(0));
+    MutableTreeNode flushed = update.newNodes().get(update.root().children().get(1));
+    Assertions.assertEquals(Arrays.asList("m0", "n0"), flushed.values());
+  }
+
+  @Test
+  public void testSplitAndGrowTree() {
+    write(
+        FileLocations.rootNodeFilePath(0), new MutableTreeNode().putSystemValue("lakehouse", "d"));
+    List<BufferMessage> messages = new ArrayList<>();
+    for (int i = 0; i < 40; i++) {
+      messages.add(BufferMessage.set(key(String.format("k%02d", i)), "v" + i));
+    }
+
+    messages.add(BufferMessage.delete(key("k07")));
+    TreeUpdate update = apply(FileLocations.rootNodeFilePath(0), 0, messages);
+    update.writeNewNodes(this::write, ForkJoinPool.commonPool());
+    write(FileLocations.rootNodeFilePath(1), update.root());
+
+    try (TreeNode root = load(FileLocations.rootNodeFilePath(1))) {
+      Assertions.assertFalse(root.isLeaf());
+      Assertions.assertEquals("d", root.systemValue("lakehouse"));
+      for (int i = 0; i < 40; i++) {
+        String expected = i == 7 ? null : "v" + i;
+        KeyProbe probe = new KeyProbe(key(String.format("k%02d", i)));
+        Assertions.assertEquals(expected, TreeOperations.get(this::load, root, probe));
+      }
+    }
+  }
+
+  @Test
+  public void testCompactFlushesAllBuffers() {
+    write(
+        FileLocations.rootNodeFilePath(0), new MutableTreeNode().putSystemValue("lakehouse", "d"));
+    String rootLocation = FileLocations.rootNodeFilePath(0);
+    for (int version = 1; version <= 8; version++) {
+      List<BufferMessage> messages = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        String name = String.format("k%02d", i * 8 + version);
+        messages.add(BufferMessage.set(key(name), "v" + version));
+      }
+
+      messages.add(BufferMessage.delete(key(String.format("k%02d", version * 3))));
+      TreeUpdate update = apply(rootLocation, 256, messages);
+      update.writeNewNodes(this::write, ForkJoinPool.commonPool());
+      rootLocation = FileLocations.rootNodeFilePath(version);
+      write(rootLocation, update.root());
+    }
+
+    BufferFlusher flusher =
+        new BufferFlusher(this::load, ORDER, 256, FileLocations::newNodeFilePath);
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      TreeUpdate compacted;
+      try (TreeNode root = load(rootLocation)) {
+        Assertions.assertTrue(countMessages(root) > 0);
+        compacted = flusher.compact(root, pool);
+      }
+
+      compacted.writeNewNodes(this::write, pool);
+      write(FileLocations.rootNodeFilePath(9), compacted.root());
+      try (TreeNode before = load(rootLocation);
+          TreeNode after = load(FileLocations.rootNodeFilePath(9))) {
+        Assertions.assertEquals(0, countMessages(after));
+        Assertions.assertEquals("d", after.systemValue("lakehouse"));
+        for (int i = 0; i < 72; i++) {
+          KeyProbe probe = new KeyProbe(key(String.format("k%02d", i)));
+          Assertions.assertEquals(
+              TreeOperations.get(this::load, before, probe),
+              TreeOperations.get(this::load, after, probe));
+        }
+
+        Assertions.assertNull(flusher.compact(after, pool));
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testRebaseReusesUnchangedSubtree() {
+    write("leaf0.ipc", new MutableTreeNode().addEntry(key("a"), "a0"));
+    write("leaf1.ipc", new MutableTreeNode().addEntry(key("m"), "m0"));
+    write("base.ipc", new MutableTreeNode().addChild("leaf0.ipc").addChild(key("m"), "leaf1.ipc"));
+
+    List<BufferMessage> messages =
+        Arrays.asList(BufferMessage.set(key("n"), "n0"), BufferMessage.set(key("o"), "o0"));
+    long bufferSizeBytes = messages.get(0).sizeInBytes();
+    TreeUpdate update = apply("base.ipc", bufferSizeBytes, messages);
+    update.writeNewNodes(this::write, ForkJoinPool.commonPool());
+    String rewritten = update.root().children().get(1);
+
+    // a concurrent commit only added a message for the key range of the other child
+    write(
+        "concurrent.ipc",
+        new MutableTreeNode()
+            .addChild("leaf0.ipc")
+            .addChild(key("m"), "leaf1.ipc")
+            .addMessage(BufferMessage.set(key("b"), "b0")));
+    TreeUpdate rebased = rebase(update, "concurrent.ipc", bufferSizeBytes, messages);
+    Assertions.assertTrue(rebased.newNodes().isEmpty());
+    Assertions.assertEquals(Arrays.asList("leaf0.ipc", rewritten), rebased.root().children());
+    Assertions.assertEquals(1, rebased.root().buffer().size());
+
+    // a concurrent commit changed a key in the range of the rewritten child
+    write(
+        "conflict.ipc",
+        new MutableTreeNode()
+            .addChild("leaf0.ipc")
+            .addChild(key("m"), "leaf1.ipc")
+            .addMessage(BufferMessage.set(key("n"), "n1")));
+    rebased = rebase(update, "conflict.ipc", bufferSizeBytes, messages);
+    Assertions.assertEquals(1, rebased.newNodes().size());
+    MutableTreeNode flushed = rebased.newNodes().get(rebased.root().children().get(1));
+    Assertions.assertEquals(Arrays.asList("m0", "n0", "o0"), flushed.values());
+  }
+
+  @Test
+  public void testRebaseDetectsOverwrittenMessage() {
+    write("leaf0.ipc", new MutableTreeNode().addEntry(key("a"), "a0"));
+    write("leaf1.ipc", new MutableTreeNode().addEntry(key("m"), "m0"));
+    write(
+        "base.ipc",
+        new MutableTreeNode()
+            .addChild("leaf0.ipc")
+            .addChild(key("m"), "leaf1.ipc")
+            .addMessage(BufferMessage.set(key("n"), "n0")));
+
+    List<BufferMessage> messages = Collections.singletonList(BufferMessage.set(key("o"), "o0"));
+    long bufferSizeBytes = messages.get(0).sizeInBytes();
+    TreeUpdate update = apply("base.ipc", bufferSizeBytes, messages);
+    update.writeNewNodes(this::write, ForkJoinPool.commonPool());
+
+    // a concurrent commit overwrote the buffered message, which keeps the number of messages
+    write(
+        "concurrent.ipc",
+        new MutableTreeNode()
+            .addChild("leaf0.ipc")
+            .addChild(key("m"), "leaf1.ipc")
+            .addMessage(BufferMessage.set(key("n"), "n1")));
+    TreeUpdate rebased = rebase(update, "concurrent.ipc", bufferSizeBytes, messages);
+    Assertions.assertEquals(1, rebased.newNodes().size());
+    MutableTreeNode flushed = rebased.newNodes().get(rebased.root().children().get(1));
+    Assertions.assertEquals(Arrays.asList("m0", "n1", "o0"), flushed.values());
+  }
+
+  /** Number of messages in the write buffers of all the nodes of a tree. */
+  private int countMessages(TreeNode node) {
+    if (node.isLeaf()) {
+      return 0;
+    }
+
+    int count = node.numMessages();
+    for (int child = 0; child < node.numChildren(); child++) {
+      try (TreeNode childNode = load(node.child(child))) {
+        count += countMessages(childNode);
+      }
+    }
+
+    return count;
+  }
+
+  private TreeUpdate apply(String rootLocation, long bufferSizeBytes, BufferMessage... messages) {
+    return apply(rootLocation, bufferSizeBytes, Arrays.asList(messages));
+  }
+
+  private TreeUpdate apply(
+      String rootLocation, long bufferSizeBytes, List<BufferMessage> messages) {
+    BufferFlusher flusher =
+        new BufferFlusher(this::load, ORDER, bufferSizeBytes, FileLocations::newNodeFilePath);
+    try (TreeNode root = load(rootLocation)) {
+      return flusher.apply(root, messages);
+    }
+  }
+
+  private TreeUpdate rebase(
+      TreeUpdate previous,
+      String rootLocation,
+      long bufferSizeBytes,
+      List<BufferMessage> messages) {
+    BufferFlusher flusher =
+        new BufferFlusher(this::load, ORDER, bufferSizeBytes, FileLocations::newNodeFilePath);
+    try (TreeNode root = load(rootLocation)) {
+      return flusher.rebase(previous, root, messages);
+    }
+  }
+
+  private void write(String location, MutableTreeNode node) {
+    try (WritableByteChannel channel = storage.create(location)) {
+      new NodeFileWriter(allocator, ORDER).write(node, channel);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private TreeNode load(String location) {
+    try (SeekableByteChannel channel = storage.openRead(location)) {
+      return new NodeFileReader(allocator, ORDER).read(channel);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static byte[] key(String name) {
+    return (" " + name).getBytes(StandardCharsets.UTF_8);
+  }
+}
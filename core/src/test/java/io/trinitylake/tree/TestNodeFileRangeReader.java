@@ -0,0 +1,142 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.tree;
+
+import io.trinitylake.storage.LocalStorage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestNodeFileRangeReader {
+
+  private static final int ORDER = 4;
+  private static final int TAIL_READ_SIZE = 1024;
+  private static final String PATH = "node.ipc";
+
+  @TempDir private Path tempDir;
+
+  private BufferAllocator allocator;
+  private CountingStorage storage;
+
+  @BeforeEach
+  public void before() {
+    allocator = new RootAllocator();
+    storage = new CountingStorage(tempDir);
+  }
+
+  @AfterEach
+  public void after() {
+    // fails if any node buffer is leaked
+    allocator.close();
+  }
+
+  @Test
+  public void testReadOnlyKeysOfWriteBuffer() throws IOException {
+    MutableTreeNode node =
+        new MutableTreeNode().addChild("n0.ipc").addChild(key(" m"), "n1.ipc");
+    for (int i = 0; i < 200; i++) {
+      node.addMessage(BufferMessage.set(key(" k" + i), longLocation(i)));
+    }
+
+    write(node);
+    long fileSize = storage.length(PATH);
+    try (TreeNode treeNode =
+        new NodeFileRangeReader(allocator, ORDER, TAIL_READ_SIZE).read(storage, PATH)) {
+      Assertions.assertEquals(fileSize, treeNode.sizeInBytes());
+      Assertions.assertEquals("n1.ipc", treeNode.child(treeNode.childIndex(key(" n"))));
+      Assertions.assertEquals(200, treeNode.numMessages());
+      Assertions.assertEquals(-1, treeNode.findMessage(key(" x")));
+      Assertions.assertEquals(3, storage.numReads);
+      Assertions.assertTrue(
+          storage.bytesRead < fileSize / 4,
+          "Should only read the footer, pointers and buffer keys, but read " + storage.bytesRead);
+
+      int index = treeNode.findMessage(key(" k42"));
+      Assertions.assertEquals(longLocation(42), treeNode.message(index).value());
+      Assertions.assertEquals(4, storage.numReads);
+    }
+  }
+
+  @Test
+  public void testFooterLargerThanTailReadSize() throws IOException {
+    MutableTreeNode node = new MutableTreeNode().addEntry(key(" a"), longLocation(0));
+    write(node);
+
+    int tailReadSize = NodeFileReader.FOOTER_TAIL_SIZE + 1;
+    try (TreeNode treeNode =
+        new NodeFileRangeReader(allocator, ORDER, tailReadSize).read(storage, PATH)) {
+      Assertions.assertTrue(treeNode.isLeaf());
+      Assertions.assertEquals(longLocation(0), treeNode.value(treeNode.findEntry(key(" a"))));
+    }
+  }
+
+  @Test
+  public void testReadSmallFileWhole() throws IOException {
+    MutableTreeNode node =
+        new MutableTreeNode()
+            .addEntry(key(" a"), "a.binpb")
+            .addMessage(BufferMessage.delete(key(" a")));
+    write(node);
+
+    try (TreeNode treeNode =
+        new NodeFileRangeReader(allocator, ORDER, Integer.MAX_VALUE).read(storage, PATH)) {
+      Assertions.assertEquals(1, storage.numReads);
+      Assertions.assertTrue(treeNode.message(treeNode.findMessage(key(" a"))).isDelete());
+    }
+  }
+
+  private void write(MutableTreeNode node) throws IOException {
+    try (WritableByteChannel channel = storage.create(PATH)) {
+      new NodeFileWriter(allocator, ORDER).write(node, channel);
+    }
+  }
+
+  private static String longLocation(int index) {
+    StringBuilder location = new StringBuilder("s3://bucket/warehouse/ns/table/metadata/");
+    for (int i = 0; i < 8; i++) {
+      location.append(index).append('-');
+    }
+
+    return location.append(".binpb").toString();
+  }
+
+  private static byte[] key(String key) {
+    return key.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static class CountingStorage extends LocalStorage {
+    private int numReads = 0;
+    private long bytesRead = 0;
+
+    CountingStorage(Path rootPath) {
+      super(rootPath);
+    }
+
+    @Override
+    public void readFully(String path, long position, ByteBuffer buffer) {
+      numReads += 1;
+      bytesRead += buffer.remaining();
+      super.readFully(path, position, buffer);
+    }
+  }
+}
@@ -0,0 +1,320 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.tree;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestNodeFileReader {
+
+  private static final int ORDER = 4;
+
+  @TempDir private Path tempDir;
+
+  private BufferAllocator allocator;
+
+  @BeforeEach
+  public void before() {
+    allocator = new RootAllocator();
+  }
+
+  @AfterEach
+  public void after() {
+    // fails if any node buffer is leaked
+    allocator.close();
+  }
+
+  @Test
+  public void testReadLeafNode() throws IOException {
+    MutableTreeNode node =
+        new MutableTreeNode()
+            .putSystemValue("lakehouse", "lakehouse_def.binpb")
+            .addEntry(key(" a"), "a.binpb")
+            .addEntry(key(" c"), "c.binpb")
+            .addEntry(key(" e"), "e.binpb");
+
+    try (TreeNode treeNode = writeAndRead(node)) {
+      Assertions.assertTrue(treeNode.isLeaf());
+      Assertions.assertEquals(1, treeNode.numSystemRows());
+      Assertions.assertEquals("lakehouse_def.binpb", treeNode.systemValue("lakehouse"));
+      Assertions.assertNull(treeNode.systemValue("unknown"));
+      Assertions.assertEquals(3, treeNode.numKeys());
+      Assertions.assertEquals(0, treeNode.numMessages());
+
+      Assertions.assertEquals(0, treeNode.findEntry(key(" a")));
+      Assertions.assertEquals(2, treeNode.findEntry(key(" e")));
+      Assertions.assertEquals("c.binpb", treeNode.value(treeNode.findEntry(key(" c"))));
+      Assertions.assertEquals(-1, treeNode.findEntry(key(" b")));
+      Assertions.assertEquals(-1, treeNode.findEntry(key(" f")));
+      // the allocator can round up the buffer, the node is weighed by the file size
+      Assertions.assertEquals(Files.size(tempDir.resolve("node.ipc")), treeNode.sizeInBytes());
+    }
+  }
+
+  @Test
+  public void testReadInternalNodeWithWriteBuffer() throws IOException {
+    MutableTreeNode node =
+        new MutableTreeNode()
+            .addChild("n0.ipc")
+            .addChild(key(" m"), "n1.ipc")
+            .addChild(key(" t"), "n2.ipc")
+            .addMessage(BufferMessage.set(key(" b"), "b1.binpb"))
+            .addMessage(BufferMessage.set(key(" x"), "x.binpb"))
+            .addMessage(BufferMessage.delete(key(" b")));
+
+    try (TreeNode treeNode = writeAndRead(node)) {
+      Assertions.assertFalse(treeNode.isLeaf());
+      Assertions.assertEquals(0, treeNode.numSystemRows());
+      Assertions.assertEquals(3, treeNode.numChildren());
+      Assertions.assertEquals("n0.ipc", treeNode.child(treeNode.childIndex(key(" a"))));
+      Assertions.assertEquals("n1.ipc", treeNode.child(treeNode.childIndex(key(" m"))));
+      Assertions.assertEquals("n1.ipc", treeNode.child(treeNode.childIndex(key(" s"))));
+      Assertions.assertEquals("n2.ipc", treeNode.child(treeNode.childIndex(key(" z"))));
+
+      // sorted by key, keeping the latest message of each key
+      Assertions.assertTrue(treeNode.isBufferSorted());
+      Assertions.assertEquals(2, treeNode.numMessages());
+      Assertions.assertEquals(0, treeNode.findMessage(key(" b")));
+      Assertions.assertEquals(1, treeNode.findMessage(key(" x")));
+      Assertions.assertTrue(treeNode.message(treeNode.findMessage(key(" b"))).isDelete());
+      Assertions.assertEquals("x.binpb", treeNode.message(treeNode.findMessage(key(" x"))).value());
+      Assertions.assertEquals(-1, treeNode.findMessage(key(" c")));
+    }
+  }
+
+  @Test
+  public void testWriteBufferBloomFilter() throws IOException {
+    MutableTreeNode node = new MutableTreeNode().addChild("n0.ipc");
+    for (int i = 0; i < 100; i++) {
+      node.addMessage(BufferMessage.set(key(" k" + i), i + ".binpb"));
+    }
+
+    try (TreeNode treeNode = writeAndRead(node)) {
+      Assertions.assertTrue(treeNode.hasBufferFilter());
+      for (int i = 0; i < 100; i++) {
+        int index = treeNode.findMessage(key(" k" + i));
+        Assertions.assertEquals(i + ".binpb", treeNode.message(index).value());
+      }
+
+      Assertions.assertEquals(-1, treeNode.findMessage(key(" other")));
+    }
+
+    Path path = tempDir.resolve("node.ipc");
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+      channel.truncate(0);
+      new NodeFileWriter(allocator, ORDER, 0).write(node, channel);
+    }
+
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        TreeNode treeNode = new NodeFileReader(allocator, ORDER).read(channel)) {
+      Assertions.assertFalse(treeNode.hasBufferFilter());
+      Assertions.assertEquals(
+          "42.binpb", treeNode.message(treeNode.findMessage(key(" k42"))).value());
+    }
+  }
+
+  @Test
+  public void testKeyPrefixCompression() throws IOException {
+    MutableTreeNode node = new MutableTreeNode().putSystemValue("lakehouse", "def.binpb");
+    for (String name : new String[] {"ns1 t1", "ns1 t2", "ns1 t3"}) {
+      node.addEntry(key(" " + name + "  Aw=="), name + ".binpb");
+    }
+
+    node.addMessage(BufferMessage.set(key(" ns1 t4  Aw=="), "t4.binpb"))
+        .addMessage(BufferMessage.delete(key(" ns1 t2  Aw==")));
+
+    Path path = tempDir.resolve("node.ipc");
+    try (FileChannel channel =
+        FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+      new NodeFileWriter(allocator, ORDER, 0.01, true).write(node, channel);
+    }
+
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        TreeNode treeNode = new NodeFileReader(allocator, ORDER).read(channel)) {
+      Assertions.assertEquals("def.binpb", treeNode.systemValue("lakehouse"));
+      Assertions.assertEquals(3, treeNode.numKeys());
+      Assertions.assertArrayEquals(key(" ns1 t2  Aw=="), treeNode.key(1));
+      Assertions.assertEquals("t3.binpb", treeNode.value(treeNode.findEntry(key(" ns1 t3  Aw=="))));
+      Assertions.assertEquals(-1, treeNode.findEntry(key(" ns1 t5  Aw==")));
+      Assertions.assertEquals(-1, treeNode.findEntry(key(" ns0 t1  Aw==")));
+      Assertions.assertEquals(0, treeNode.lowerBound(new KeyProbe(key(" ns0"))));
+      Assertions.assertEquals(1, treeNode.lowerBound(new KeyProbe(key(" ns1 t2"))));
+      Assertions.assertEquals(3, treeNode.lowerBound(new KeyProbe(key(" ns2"))));
+      Assertions.assertEquals(3, treeNode.lowerBound(new KeyProbe(key(" ns1 z"))));
+
+      int index = treeNode.findMessage(key(" ns1 t2  Aw=="));
+      Assertions.assertTrue(treeNode.message(index).isDelete());
+      Assertions.assertArrayEquals(key(" ns1 t4  Aw=="), treeNode.messageKey(1));
+      Assertions.assertEquals(2, treeNode.messageLowerBound(new KeyProbe(key(" ns2"))));
+      Assertions.assertEquals(-1, treeNode.findMessage(key(" ns0 t4  Aw==")));
+      Assertions.assertArrayEquals(key(" ns1 t1  Aw=="), treeNode.toMutable().keys().get(0));
+    }
+  }
+
+  @Test
+  public void testToMutableRoundTrip() throws IOException {
+    MutableTreeNode node =
+        new MutableTreeNode()
+            .putSystemValue("lakehouse", "def.binpb")
+            .addChild("n0.ipc")
+            .addChild(key(" k"), "n1.ipc")
+            .addMessage(BufferMessage.set(key(" z"), "z.binpb"));
+
+    try (TreeNode treeNode = writeAndRead(node)) {
+      MutableTreeNode copy = treeNode.toMutable();
+      Assertions.assertEquals(node.systemValues(), copy.systemValues());
+      Assertions.assertEquals(node.children(), copy.children());
+      Assertions.assertArrayEquals(key(" k"), copy.keys().get(0));
+      Assertions.assertEquals(1, copy.buffer().size());
+      Assertions.assertEquals("z.binpb", copy.buffer().get(0).value());
+    }
+  }
+
+  @Test
+  public void testFixedWidthKeySearch() throws IOException {
+    // padded keys longer than a long word, with non-ASCII bytes that are negative as signed bytes
+    String[] names = {"a", "b", "ba", "bé", "c", "é", "éa", "z"};
+    MutableTreeNode node = new MutableTreeNode();
+    for (String name : names) {
+      node.addEntry(paddedKey(name), name + ".binpb");
+    }
+
+    try (TreeNode treeNode = writeAndRead(node, 16)) {
+      for (int i = 0; i < names.length; i++) {
+        Assertions.assertEquals(i, treeNode.findEntry(paddedKey(names[i])));
+      }
+
+      Assertions.assertEquals(-1, treeNode.findEntry(paddedKey("bb")));
+      Assertions.assertEquals(-1, treeNode.findEntry(paddedKey("ÿ")));
+      Assertions.assertEquals(-1, treeNode.findEntry(key(" a")));
+    }
+
+    MutableTreeNode internal = new MutableTreeNode().addChild("n0.ipc");
+    for (int i = 0; i < names.length; i++) {
+      internal.addChild(paddedKey(names[i]), "n" + (i + 1) + ".ipc");
+    }
+
+    try (TreeNode treeNode = writeAndRead(internal, 16)) {
+      Assertions.assertEquals(0, treeNode.childIndex(paddedKey("0")));
+      Assertions.assertEquals(1, treeNode.childIndex(paddedKey("a")));
+      Assertions.assertEquals(3, treeNode.childIndex(paddedKey("bb")));
+      Assertions.assertEquals(5, treeNode.childIndex(paddedKey("d")));
+      Assertions.assertEquals(7, treeNode.childIndex(paddedKey("éa")));
+      Assertions.assertEquals(8, treeNode.childIndex(paddedKey("ÿ")));
+    }
+  }
+
+  @Test
+  public void testTruncatedSeparatorSearch() throws IOException {
+    // separators of different lengths, shorter than the padded probes, some longer than a word
+    String[] separators = {" b", " namespace1 t", " namespace1 té", " namespace2", " é"};
+    MutableTreeNode internal = new MutableTreeNode().addChild("n0.ipc");
+    for (int i = 0; i < separators.length; i++) {
+      internal.addChild(key(separators[i]), "n" + (i + 1) + ".ipc");
+    }
+
+    try (TreeNode treeNode = writeAndRead(internal, 16)) {
+      Assertions.assertEquals(0, treeNode.childIndex(paddedKey("a")));
+      Assertions.assertEquals(1, treeNode.childIndex(paddedKey("namespace1")));
+      Assertions.assertEquals(2, treeNode.childIndex(key(" namespace1 table1 Aw==")));
+      Assertions.assertEquals(3, treeNode.childIndex(key(" namespace1 té   Aw==")));
+      Assertions.assertEquals(3, treeNode.childIndex(key(" namespace1 ü    Aw==")));
+      Assertions.assertEquals(4, treeNode.childIndex(paddedKey("namespace2")));
+      Assertions.assertEquals(5, treeNode.childIndex(paddedKey("éa")));
+      Assertions.assertEquals(2, treeNode.lowerBound(new KeyProbe(key(" namespace1 té"))));
+    }
+  }
+
+  @Test
+  public void testMapNodeFile() throws IOException {
+    MutableTreeNode node =
+        new MutableTreeNode()
+            .addChild("n0.ipc")
+            .addChild(key(" m"), "n1.ipc")
+            .addMessage(BufferMessage.set(key(" b"), "b.binpb"));
+    Path path = write(node, ORDER);
+
+    TreeNode treeNode;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      treeNode = new NodeFileReader(allocator, ORDER).map(channel);
+    }
+
+    // the mapping stays valid after the channel is closed
+    try (TreeNode mapped = treeNode) {
+      Assertions.assertEquals(2, mapped.numChildren());
+      Assertions.assertEquals("n1.ipc", mapped.child(mapped.childIndex(key(" n"))));
+      Assertions.assertEquals("b.binpb", mapped.message(mapped.findMessage(key(" b"))).value());
+      Assertions.assertTrue(allocator.getAllocatedMemory() >= Files.size(path));
+    }
+  }
+
+  @Test
+  public void testRejectTooManyPointers() {
+    MutableTreeNode node = new MutableTreeNode();
+    for (int i = 0; i < ORDER; i++) {
+      node.addEntry(key(" " + i), i + ".binpb");
+    }
+
+    Assertions.assertThrows(IllegalArgumentException.class, () -> writeAndRead(node));
+  }
+
+  private TreeNode writeAndRead(MutableTreeNode node) throws IOException {
+    return writeAndRead(node, ORDER);
+  }
+
+  private TreeNode writeAndRead(MutableTreeNode node, int order) throws IOException {
+    Path path = write(node, order);
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      return new NodeFileReader(allocator, order).read(channel);
+    }
+  }
+
+  private Path write(MutableTreeNode node, int order) throws IOException {
+    Path path = tempDir.resolve("node.ipc");
+    try (FileChannel channel =
+        FileChannel.open(
+            path,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE)) {
+      new NodeFileWriter(allocator, order).write(node, channel);
+    }
+
+    return path;
+  }
+
+  private static byte[] paddedKey(String name) {
+    byte[] key = new byte[21];
+    Arrays.fill(key, (byte) ' ');
+    byte[] nameBytes = key(name);
+    System.arraycopy(nameBytes, 0, key, 1, nameBytes.length);
+    return key;
+  }
+
+  private static byte[] key(String key) {
+    return key.getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.tree;
+
+import io.trinitylake.FileLocations;
+import io.trinitylake.util.ByteArrayUtil;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TestTreeBuilder {
+
+  private static final int ORDER = 4;
+
+  private final Map<String, MutableTreeNode> written = new ConcurrentHashMap<>();
+  private ExecutorService executor;
+
+  @BeforeEach
+  public void before() {
+    executor = Executors.newFixedThreadPool(4);
+  }
+
+  @AfterEach
+  public void after() {
+    executor.shutdown();
+  }
+
+  @Test
+  public void testBuildFullLeavesAndParents() {
+    List<TreeEntry> entries = new ArrayList<>();
+    for (int i = 0; i < 40; i++) {
+      entries.add(new TreeEntry(key(String.format("k%02d", i)), "v" + i));
+    }
+
+    MutableTreeNode root = builder().build(entries.iterator());
+
+    // 14 leaves of up to 3 entries, 4 parents of up to 4 children, and the root
+    Assertions.assertEquals(18, written.size());
+    Assertions.assertEquals(4, root.children().size());
+    Assertions.assertTrue(root.buffer().isEmpty());
+
+    List<String> values = new ArrayList<>();
+    collectValues(root, values);
+    Assertions.assertEquals(40, values.size());
+    Assertions.assertEquals("v0", values.get(0));
+    Assertions.assertEquals("v39", values.get(39));
+  }
+
+  @Test
+  public void testTruncateSeparators() {
+    List<TreeEntry> entries = new ArrayList<>();
+    for (int i = 0; i < 40; i++) {
+      // padded like a table key, which only differs from its neighbours in the table name
+      entries.add(new TreeEntry(key(String.format("ns1      t%02d      Aw==", i)), "v" + i));
+    }
+
+    MutableTreeNode root = builder().build(entries.iterator());
+    for (byte[] separator : root.keys()) {
+      Assertions.assertEquals(" ns1      t00".length(), separator.length);
+    }
+
+    checkSeparators(root, null, null);
+  }
+
+  @Test
+  public void testBuildSingleLeaf() {
+    MutableTreeNode root =
+        builder()
+            .build(
+                Arrays.asList(new TreeEntry(key("a"), "a0"), new TreeEntry(key("b"), "b0"))
+                    .iterator());
+    Assertions.assertTrue(root.isLeaf());
+    Assertions.assertEquals(Arrays.asList("a0", "b0"), root.values());
+    Assertions.assertTrue(written.isEmpty());
+  }
+
+  @Test
+  public void testRejectUnsortedEntries() {
+    List<TreeEntry> entries =
+        Arrays.asList(new TreeEntry(key("b"), "b0"), new TreeEntry(key("a"), "a0"));
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> builder().build(entries.iterator()));
+  }
+
+  private TreeBuilder builder() {
+    return new TreeBuilder(ORDER, written::put, executor, FileLocations::newNodeFilePath, 2);
+  }
+
+  private void collectValues(MutableTreeNode node, List<String> values) {
+    if (node.isLeaf()) {
+      Assertions.assertTrue(node.keys().size() <= ORDER - 1);
+      values.addAll(node.values());
+      return;
+    }
+
+    for (String child : node.children()) {
+      collectValues(written.get(child), values);
+    }
+  }
+
+  /** Checks that all keys under a node are within the separators of its parents. */
+  private void checkSeparators(MutableTreeNode node, byte[] lower, byte[] upper) {
+    if (node.isLeaf()) {
+      for (byte[] key : node.keys()) {
+        Assertions.assertTrue(lower == null || ByteArrayUtil.compare(lower, key) <= 0);
+        Assertions.assertTrue(upper == null || ByteArrayUtil.compare(key, upper) < 0);
+      }
+
+      return;
+    }
+
+    for (int i = 0; i < node.children().size(); i++) {
+      byte[] childLower = i == 0 ? lower : node.keys().get(i - 1);
+      byte[] childUpper = i == node.keys().size() ? upper : node.keys().get(i);
+      checkSeparators(written.get(node.children().get(i)), childLower, childUpper);
+    }
+  }
+
+  private static byte[] key(String name) {
+    return (" " + name).getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.util;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestBloomFilter {
+
+  @Test
+  public void testMurmur3Hash() {
+    // reference value of MurmurHash3_x64_128 with seed 0
+    long[] hash = BloomFilter.hash(bytes("The quick brown fox jumps over the lazy dog"));
+    Assertions.assertEquals(0xe34bbc7bbc071b6cL, hash[0]);
+    Assertions.assertEquals(0x7a433ca9c49a9347L, hash[1]);
+    Assertions.assertArrayEquals(new long[] {0, 0}, BloomFilter.hash(new byte[0]));
+  }
+
+  @Test
+  public void testNoFalseNegatives() {
+    BloomFilter filter = BloomFilter.create(1000, 0.01);
+    for (int i = 0; i < 1000; i++) {
+      filter.put(bytes(" key" + i));
+    }
+
+    for (int i = 0; i < 1000; i++) {
+      Assertions.assertTrue(filter.mightContain(bytes(" key" + i)));
+    }
+
+    int falsePositives = 0;
+    for (int i = 0; i < 10000; i++) {
+      if (filter.mightContain(bytes(" other" + i))) {
+        falsePositives++;
+      }
+    }
+
+    Assertions.assertTrue(falsePositives < 300, "Too many false positives: " + falsePositives);
+  }
+
+  @Test
+  public void testBase64RoundTrip() {
+    BloomFilter filter = BloomFilter.create(10, 0.01);
+    filter.put(bytes(" a"));
+    filter.put(bytes(" b"));
+
+    BloomFilter copy = BloomFilter.fromBase64(filter.toBase64(), filter.numHashFunctions());
+    Assertions.assertEquals(filter.numBits(), copy.numBits());
+    Assertions.assertEquals(filter.toBase64(), copy.toBase64());
+    Assertions.assertTrue(copy.mightContain(bytes(" a")));
+    Assertions.assertTrue(copy.mightContain(BloomFilter.hash(bytes(" b"))));
+
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> BloomFilter.fromBase64("AAAA", 1));
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> BloomFilter.fromBase64(filter.toBase64(), 0));
+  }
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,43 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.util;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestByteArrayUtil {
+
+  @Test
+  public void testShortestSeparator() {
+    Assertions.assertArrayEquals(
+        bytes(" ns1   t2"),
+        ByteArrayUtil.shortestSeparator(bytes(" ns1   t1  Aw=="), bytes(" ns1   t2  Aw==")));
+    Assertions.assertArrayEquals(
+        bytes(" ab"), ByteArrayUtil.shortestSeparator(bytes(" a"), bytes(" abc")));
+    Assertions.assertArrayEquals(
+        new byte[] {' ', (byte) 0xC3},
+        ByteArrayUtil.shortestSeparator(bytes(" z"), new byte[] {' ', (byte) 0xC3, (byte) 0xA9}));
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> ByteArrayUtil.shortestSeparator(bytes(" b"), bytes(" a")));
+    Assertions.assertThrows(
+        IllegalArgumentException.class,
+        () -> ByteArrayUtil.shortestSeparator(bytes(" a"), bytes(" a")));
+  }
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+}
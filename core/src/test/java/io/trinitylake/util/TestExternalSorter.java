@@ -0,0 +1,140 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestExternalSorter {
+
+  @TempDir private Path tempDir;
+
+  @Test
+  public void testSortWithSpilledRuns() throws IOException {
+    List<String> expected = new ArrayList<>();
+    Random random = new Random(42);
+    try (ExternalSorter sorter = new ExternalSorter(1024, 4, tempDir)) {
+      for (int i = 0; i < 1000; i++) {
+        String key = String.format(" k%05d", random.nextInt(100000));
+        sorter.add(bytes(key), bytes("v" + i));
+        expected.add(key);
+      }
+
+      Assertions.assertTrue(sorter.numSpilledRuns() > 10);
+      expected.sort(null);
+      List<String> actual = new ArrayList<>();
+      try (CloseableIterator<ExternalSorter.Record> records = sorter.sorted()) {
+        records.forEachRemaining(record -> actual.add(string(record.key())));
+      }
+
+      Assertions.assertEquals(expected, actual);
+      Assertions.assertEquals(0, numFiles());
+    }
+  }
+
+  @Test
+  public void testEqualKeysKeepAddedOrder() {
+    try (ExternalSorter sorter = new ExternalSorter(64, 4, tempDir)) {
+      for (int i = 0; i < 10; i++) {
+        sorter.add(bytes(" b"), bytes("b" + i)).add(bytes(" a"), bytes("a" + i));
+      }
+
+      List<String> values = new ArrayList<>();
+      try (CloseableIterator<ExternalSorter.Record> records = sorter.sorted()) {
+        records.forEachRemaining(record -> values.add(string(record.value())));
+      }
+
+      Assertions.assertEquals(20, values.size());
+      for (int i = 0; i < 10; i++) {
+        Assertions.assertEquals("a" + i, values.get(i));
+        Assertions.assertEquals("b" + i, values.get(10 + i));
+      }
+    }
+  }
+
+  @Test
+  public void testUnsignedKeyOrder() {
+    try (ExternalSorter sorter = new ExternalSorter(1024, 4, tempDir)) {
+      sorter.add(new byte[] {(byte) 0xC3}, new byte[0]).add(new byte[] {'z'}, new byte[0]);
+      try (CloseableIterator<ExternalSorter.Record> records = sorter.sorted()) {
+        Assertions.assertArrayEquals(new byte[] {'z'}, records.next().key());
+        Assertions.assertArrayEquals(new byte[] {(byte) 0xC3}, records.next().key());
+        Assertions.assertFalse(records.hasNext());
+      }
+    }
+  }
+
+  @Test
+  public void testMergeRunsInPasses() throws IOException {
+    List<String> expected = new ArrayList<>();
+    try (ExternalSorter sorter = new ExternalSorter(64, 3, tempDir)) {
+      for (int i = 0; i < 100; i++) {
+        String key = String.format(" k%02d", (i * 37) % 10);
+        sorter.add(bytes(key), bytes(String.format("v%02d", i)));
+        expected.add(key + String.format("v%02d", i));
+      }
+
+      Assertions.assertTrue(sorter.numSpilledRuns() > 9);
+      expected.sort(null);
+      List<String> actual = new ArrayList<>();
+      try (CloseableIterator<ExternalSorter.Record> records = sorter.sorted()) {
+        // run files were merged until they fit in the fan-in with the buffered records
+        Assertions.assertTrue(sorter.numSpilledRuns() < 3);
+        Assertions.assertEquals(sorter.numSpilledRuns(), numFiles());
+        records.forEachRemaining(
+            record -> actual.add(string(record.key()) + string(record.value())));
+      }
+
+      Assertions.assertEquals(expected, actual);
+      Assertions.assertEquals(0, numFiles());
+    }
+  }
+
+  @Test
+  public void testCloseDeletesRunFiles() throws IOException {
+    ExternalSorter sorter = new ExternalSorter(32, 4, tempDir);
+    for (int i = 0; i < 10; i++) {
+      sorter.add(bytes(" key" + i), bytes("value"));
+    }
+
+    Assertions.assertEquals(sorter.numSpilledRuns(), numFiles());
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> sorter.add(bytes(" key"), new byte[32]));
+    sorter.close();
+    Assertions.assertEquals(0, numFiles());
+  }
+
+  private long numFiles() throws IOException {
+    try (Stream<Path> files = Files.list(tempDir)) {
+      return files.count();
+    }
+  }
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static String string(byte[] value) {
+    return new String(value, StandardCharsets.UTF_8);
+  }
+}
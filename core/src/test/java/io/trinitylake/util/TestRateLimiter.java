@@ -0,0 +1,72 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TestRateLimiter {
+
+  @Test
+  public void testRefillOverTime() {
+    AtomicLong clock = new AtomicLong();
+    RateLimiter limiter = new RateLimiter(2, 1, TimeUnit.MINUTES, clock::get);
+    Assertions.assertTrue(limiter.tryAcquire(1));
+    Assertions.assertTrue(limiter.tryAcquire(1));
+    Assertions.assertFalse(limiter.tryAcquire(1));
+
+    clock.addAndGet(TimeUnit.SECONDS.toNanos(29));
+    Assertions.assertFalse(limiter.tryAcquire(1));
+    clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+    Assertions.assertTrue(limiter.tryAcquire(1));
+
+    // the bucket does not grow beyond one period of permits
+    clock.addAndGet(TimeUnit.MINUTES.toNanos(10));
+    Assertions.assertTrue(limiter.tryAcquire(2));
+    Assertions.assertFalse(limiter.tryAcquire(1));
+  }
+
+  @Test
+  public void testLargeAcquisitionGoesIntoDebt() {
+    AtomicLong clock = new AtomicLong();
+    RateLimiter limiter = new RateLimiter(100, 1, TimeUnit.SECONDS, clock::get);
+    Assertions.assertTrue(limiter.tryAcquire(300));
+    Assertions.assertFalse(limiter.tryAcquire(1));
+
+    clock.addAndGet(TimeUnit.SECONDS.toNanos(2));
+    Assertions.assertFalse(limiter.tryAcquire(1));
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(10));
+    Assertions.assertTrue(limiter.tryAcquire(1));
+
+    Assertions.assertThrows(
+        IllegalArgumentException.class, () -> new RateLimiter(0, 1, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testReleaseUnusedPermits() {
+    AtomicLong clock = new AtomicLong();
+    RateLimiter limiter = new RateLimiter(100, 1, TimeUnit.SECONDS, clock::get);
+    Assertions.assertTrue(limiter.tryAcquire(300));
+    limiter.release(300);
+    Assertions.assertTrue(limiter.tryAcquire(100));
+    Assertions.assertFalse(limiter.tryAcquire(1));
+
+    // released permits do not grow the bucket beyond one period of permits
+    limiter.release(500);
+    Assertions.assertTrue(limiter.tryAcquire(100));
+    Assertions.assertFalse(limiter.tryAcquire(1));
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.trinitylake.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TestSegmentedLruCache {
+
+  private SegmentedLruCache<String, Value> cache;
+
+  @BeforeEach
+  public void before() {
+    cache = new SegmentedLruCache<>(100, 0.5, value -> value.weight, Value::retain, Value::release);
+  }
+
+  @Test
+  public void testGetAndPut() {
+    Assertions.assertNull(cache.get("a"));
+    Value a = new Value(10);
+    Assertions.assertSame(a, cache.putIfAbsent("a", a));
+    Assertions.assertSame(a, cache.get("a"));
+    Assertions.assertEquals(3, a.refs, "Expect references of the cache and two callers");
+    Assertions.assertEquals(1, cache.hitCount());
+    Assertions.assertEquals(1, cache.missCount());
+    Assertions.assertEquals(10, cache.weight());
+  }
+
+  @Test
+  public void testPutExistingKey() {
+    Value first = new Value(10);
+    Value second = new Value(10);
+    cache.putIfAbsent("a", first);
+    Assertions.assertSame(first, cache.putIfAbsent("a", second));
+    Assertions.assertEquals(0, second.refs, "Expect the duplicate value to be released");
+    Assertions.assertEquals(3, first.refs);
+    Assertions.assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void testEvictByWeight() {
+    Value[] values = new Value[5];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = new Value(30);
+      cache.putIfAbsent("k" + i, values[i]).release();
+    }
+
+    Assertions.assertEquals(90, cache.weight());
+    Assertions.assertEquals(2, cache.evictionCount());
+    Assertions.assertEquals(0, values[0].refs);
+    Assertions.assertEquals(0, values[1].refs);
+    Assertions.assertNull(cache.get("k0"));
+    Assertions.assertNotNull(cache.get("k4"));
+  }
+
+  @Test
+  public void testProtectedEntriesSurviveScan() {
+    Value hot = new Value(30);
+    cache.putIfAbsent("hot", hot).release();
+    cache.get("hot").release();
+
+    for (int i = 0; i < 10; i++) {
+      cache.putIfAbsent("scan" + i, new Value(30)).release();
+    }
+
+    Value cached = cache.get("hot");
+    Assertions.assertSame(hot, cached);
+    cached.release();
+    Assertions.assertEquals(1, hot.refs);
+  }
+
+  @Test
+  public void testAdmitWhenProtectedSegmentIsFull() {
+    cache = new SegmentedLruCache<>(100, 0.8, value -> value.weight, Value::retain, Value::release);
+    Value a = new Value(40);
+    Value b = new Value(40);
+    cache.putIfAbsent("a", a).release();
+    cache.get("a").release();
+    cache.putIfAbsent("b", b).release();
+    cache.get("b").release();
+
+    Value c = new Value(40);
+    Assertions.assertSame(c, cache.putIfAbsent("c", c));
+    Assertions.assertEquals(2, c.refs, "Expect references of the cache and the caller");
+    Assertions.assertEquals(0, a.refs, "Expect the least recently used protected value evicted");
+    Assertions.assertEquals(80, cache.weight());
+    Assertions.assertNotNull(cache.get("c"));
+  }
+
+  @Test
+  public void testValueTooLarge() {
+    Value large = new Value(101);
+    Assertions.assertSame(large, cache.putIfAbsent("large", large));
+    Assertions.assertEquals(1, large.refs, "Expect the caller to own the only reference");
+    Assertions.assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testInvalidateAll() {
+    Value a = new Value(10);
+    cache.putIfAbsent("a", a).release();
+    cache.invalidateAll();
+    Assertions.assertEquals(0, a.refs);
+    Assertions.assertEquals(0, cache.weight());
+    Assertions.assertNull(cache.get("a"));
+  }
+
+  private static class Value {
+    private final long weight;
+    private int refs = 1;
+
+    Value(long weight) {
+      this.weight = weight;
+    }
+
+    Value retain() {
+      Assertions.assertTrue(refs > 0, "Retain of released value");
+      refs++;
+      return this;
+    }
+
+    void release() {
+      Assertions.assertTrue(refs > 0, "Value is already released");
+      refs--;
+    }
+  }
+}